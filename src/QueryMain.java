@@ -11,14 +11,17 @@ import qp.parser.*;
 public class QueryMain {
 
     static PrintWriter out;
-    static int numAtts;
 
     public static void main(String[] args) {
 
-        if (args.length != 2) {
-            System.out.println("usage: java QueryMain <queryfilename> <resultfile>");
+        if (args.length != 2 && args.length != 3) {
+            System.out.println("usage: java QueryMain <queryfilename> <resultfile> [buffer pool frames]");
             System.exit(1);
         }
+        if (args.length == 3) {
+            /* the pool caches the pages read, on top of the buffers of the operators */
+            BufferPool.setNumFrames(Integer.parseInt(args[2]));
+        }
 
         BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
         getNumBytesPerPage(in);
@@ -29,24 +32,27 @@ public class QueryMain {
 
         int numJoin = sqlquery.getNumJoin();
 
-        //orderBy indicated that there is an orderby operation
-        boolean orderBy = sqlquery.getNumOrderBy() > 0;
+        //orderBy indicated that there is an orderby or a distinct operation
+        boolean orderBy = sqlquery.getNumOrderBy() > 0 || sqlquery.isDistinct();
         BufferManager bm = setNumBuffers(in, numJoin, orderBy);
         boolean runRandomized = false;
-        Operator root;
-        if (runRandomized) {
-            RandomOptimizer ro = new RandomOptimizer(sqlquery);
-            Operator logicalroot = ro.getOptimizedPlan();
+        boolean bushyTrees = false;  // whether the DP optimizer also considers bushy trees
+        int randomSearch = RandomOptimizer.ITERATIVE_IMPROVEMENT;  // search strategy of the randomized optimizer
+        int optimizerTrace = OptimizerTrace.OFF;  // SUMMARY or PLANS to dump the plans explored to <resultfile>.trace.json
+        OptimizerTrace.setLevel(optimizerTrace);
+        Operator root = getExecPlan(sqlquery, runRandomized, bushyTrees, randomSearch);
+        if (root == null) {
+            System.out.println("root is null");
+            System.exit(1);
+        }
 
-            if (logicalroot == null) {
-                System.out.println("root is null");
-                System.exit(1);
+        if (OptimizerTrace.enabled(OptimizerTrace.SUMMARY)) {
+            try {
+                OptimizerTrace.writeJson(resultfile + ".trace.json");
+                System.out.println("Optimizer trace written to " + resultfile + ".trace.json");
+            } catch (IOException io) {
+                System.out.println("QueryMain: error in writing the optimizer trace");
             }
-
-            root = RandomOptimizer.makeExecPlan(logicalroot);
-        } else {
-            DPoptimizer dp = new DPoptimizer(sqlquery);
-            root = DPoptimizer.makeExecPlan(dp.getBestPlan());
         }
 
         Debug.printWithLines(true,"Execution Plan");
@@ -69,7 +75,7 @@ public class QueryMain {
             System.exit(1);
         }
 
-        writeResultToFile(root);
+        writeResultToFile(root, sqlquery.getLimit());
 
         out.close();
 
@@ -78,19 +84,69 @@ public class QueryMain {
         System.out.println("Execution time = " + executiontime);
     }
 
-    private static void writeResultToFile(Operator root) {
+    /**
+     * Plans the query with the buffers of the BufferManager, reusing the plan chosen before for the same
+     * query if the PlanCache still has it, and allocates the buffers among the operators of the plan
+     * @return the execution plan, null if the optimizer found none
+     */
+    static Operator getExecPlan(SQLQuery sqlquery, boolean runRandomized, boolean bushyTrees, int randomSearch) {
+        String optimizer = runRandomized ? "random " + randomSearch : (bushyTrees ? "dp bushy" : "dp left-deep");
+        Operator logicalroot = PlanCache.get(sqlquery, optimizer);
+        if (logicalroot == null) {
+            if (runRandomized) {
+                RandomOptimizer ro = new RandomOptimizer(sqlquery, randomSearch);
+                logicalroot = ro.getOptimizedPlan();
+            } else {
+                DPoptimizer dp = new DPoptimizer(sqlquery, bushyTrees);
+                logicalroot = dp.getBestPlan();
+            }
+
+            if (logicalroot == null) {
+                return null;
+            }
+            PlanCache.put(sqlquery, optimizer, logicalroot);
+        }
+
+        Operator root;
+        if (runRandomized) {
+            root = RandomOptimizer.makeExecPlan(logicalroot);
+        } else {
+            root = DPoptimizer.makeExecPlan(logicalroot);
+        }
+        BufferManager.allocate(root);
+        return root;
+    }
+
+    /**
+     * @param limit maximum number of tuples to output, -1 for no limit. With an ORDER BY the plan
+     *              already stops after limit tuples, without one the rest of the result is not read.
+     */
+    private static void writeResultToFile(Operator root, int limit) {
+        writeResult(out, root, limit);
+        root.close();
+    }
+
+    /**
+     * Writes the schema and the tuples of the result to out, flushing it after each batch. The caller closes root.
+     * @return the number of tuples written
+     */
+    static long writeResult(PrintWriter out, Operator root, int limit) {
         Schema schema = root.getSchema();
-        numAtts = schema.getNumCols();
-        printSchema(schema);
-        Batch resultbatch;
+        int numAtts = schema.getNumCols();
+        printSchema(out, schema, numAtts);
+        ColumnBatch resultbatch;
+        long remaining = limit < 0 ? Long.MAX_VALUE : limit;
+        long written = 0;
 
         /* print each tuple in the result */
-        while ((resultbatch = root.next()) != null) {
-            for (int i = 0; i < resultbatch.size(); i++) {
-                printTuple(resultbatch.elementAt(i));
+        while (remaining > 0 && (resultbatch = root.nextColumns()) != null) {
+            for (int i = 0; i < resultbatch.size() && remaining > 0; i++, remaining--) {
+                printTuple(out, resultbatch.tupleAt(i), numAtts);
+                written++;
             }
+            out.flush();
         }
-        root.close();
+        return written;
     }
 
     private static BufferManager setNumBuffers(BufferedReader in, int numJoin, boolean orderBy) {
@@ -119,7 +175,18 @@ public class QueryMain {
 
     public static SQLQuery getSqlQuery(String queryfile) {
         FileInputStream source = ReadQueryFile(queryfile);
+        SQLQuery sqlquery = parseSqlQuery(source);
+        if (sqlquery == null) {
+            System.out.println("Exception occurred while parsing");
+            System.exit(1);
+        }
+        return sqlquery;
+    }
 
+    /**
+     * @return the query read from source, null if it cannot be parsed
+     */
+    public static SQLQuery parseSqlQuery(InputStream source) {
         Scaner sc = new Scaner(source);
         parser p = new parser();
         p.setScanner(sc);
@@ -127,8 +194,11 @@ public class QueryMain {
         try {
             p.parse();
         } catch (Exception e) {
-            System.out.println("Exception occurred while parsing");
-            System.exit(1);
+            return null;
+        } catch (Error e) {
+            /* the scaner reports unmatched input with an Error */
+            System.err.println(e.getMessage());
+            return null;
         }
 
         /* SQLQuery is the result of the parsing */
@@ -176,7 +246,7 @@ public class QueryMain {
      * outputs a tuple in the result query into file
      * @param t tuple
      */
-    protected static void printTuple(Tuple t) {
+    protected static void printTuple(PrintWriter out, Tuple t, int numAtts) {
         for (int i = 0; i < numAtts; i++) {
             Object data = t.dataAt(i);
             if (data instanceof Integer) {
@@ -196,7 +266,7 @@ public class QueryMain {
      * outputs the table name and column names in the result query into file
      * @param schema the table schema
      */
-    protected static void printSchema(Schema schema) {
+    protected static void printSchema(PrintWriter out, Schema schema, int numAtts) {
         for (int i = 0; i < numAtts; i++) {
             Attribute attr = schema.getAttribute(i);
             out.print(attr.getTabName() + "." + attr.getColName() + "  ");
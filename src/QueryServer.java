@@ -0,0 +1,197 @@
+/* Long-running query processor: the queries are read from a local socket or from the standard input, and their
+   results are streamed back. Unlike QueryMain, the JVM, the statistics of the tables and the plans chosen
+   before stay in memory from one query to the next. */
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Semaphore;
+
+import qp.utils.*;
+import qp.operators.*;
+import qp.optimizer.*;
+
+/**
+ * Protocol: a query is sent as its lines, followed by an empty line, and QUIT ends the session. The answer is
+ * either a line "ERROR <message>", or a line "OK", the result in the format of the result files of QueryMain
+ * (a line with the column names, then one line per tuple, each value followed by a tab), and a line
+ * "END <number of tuples> <execution time in seconds>". A query that fails after "OK" is ended by a line
+ * "ERROR <message>" instead of "END".
+ *
+ * The queries of different connections are executed at the same time. Each query is granted buffers from a
+ * budget shared by all the queries, and waits until enough of them are released by the other queries. The
+ * frames of the BufferPool, if any, are taken out of that budget.
+ */
+public class QueryServer {
+
+    private final int queryBuffers;     // Buffers granted to a query, more if its joins need more
+    private final int totalBuffers;     // Buffers shared by the queries executing at the same time, without the pool
+    private final Semaphore buffers;    // Buffers not granted to a query
+
+    /* BufferManager holds the buffers of the query being planned, so the queries are planned one at a time */
+    private final Object planning = new Object();
+
+    public QueryServer(int queryBuffers, int totalBuffers) {
+        this(queryBuffers, totalBuffers, 0);
+    }
+
+    /**
+     * @param poolFrames, the number of frames of the BufferPool, out of the total buffers
+     */
+    public QueryServer(int queryBuffers, int totalBuffers, int poolFrames) {
+        if (poolFrames < 0 || poolFrames > totalBuffers) {
+            throw new IllegalArgumentException("QueryServer: " + poolFrames + " pool frames out of "
+                    + totalBuffers + " buffers");
+        }
+        BufferPool.setNumFrames(poolFrames);
+        this.queryBuffers = queryBuffers;
+        this.totalBuffers = totalBuffers - poolFrames;
+        buffers = new Semaphore(this.totalBuffers, true);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3 || args.length > 5) {
+            System.out.println("usage: java QueryServer <pagesize> <buffers per query> <total buffers> "
+                    + "[buffer pool frames [port]]");
+            System.exit(1);
+        }
+        Batch.setPageSize(Integer.parseInt(args[0]));
+        int poolFrames = args.length >= 4 ? Integer.parseInt(args[3]) : 0;
+        QueryServer server = new QueryServer(Integer.parseInt(args[1]), Integer.parseInt(args[2]), poolFrames);
+        if (args.length == 5) {
+            server.listen(Integer.parseInt(args[4]));
+        } else {
+            server.serve(System.in, System.out);
+        }
+    }
+
+    /**
+     * Accepts connections on the port of the loopback interface, each one being served by its own thread
+     */
+    public void listen(int port) {
+        try (ServerSocket socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("QueryServer: listening on port " + socket.getLocalPort());
+            while (true) {
+                Socket client = socket.accept();
+                Thread session = new Thread(() -> {
+                    try (Socket s = client) {
+                        serve(s.getInputStream(), s.getOutputStream());
+                    } catch (IOException io) {
+                        System.out.println("QueryServer: connection error");
+                    }
+                });
+                session.setDaemon(true);
+                session.start();
+            }
+        } catch (IOException io) {
+            System.out.println("QueryServer: cannot listen on port " + port);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Executes the queries read from in one after the other, until QUIT or the end of the input
+     */
+    public void serve(InputStream in, OutputStream outStream) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(outStream)));
+        StringBuilder query = new StringBuilder();
+        try {
+            String line;
+            while ((line = reader.readLine()) != null && !line.trim().equalsIgnoreCase("QUIT")) {
+                if (!line.trim().isEmpty()) {
+                    query.append(line).append('\n');
+                } else if (query.length() > 0) {
+                    execute(query.toString(), out);
+                    query.setLength(0);
+                }
+            }
+            if (query.length() > 0) {
+                execute(query.toString(), out);
+            }
+        } catch (IOException io) {
+            System.out.println("QueryServer: error in reading the queries");
+        }
+        out.flush();
+    }
+
+    /**
+     * Plans and executes a query, and writes its result to out
+     */
+    private void execute(String text, PrintWriter out) {
+        SQLQuery sqlquery = QueryMain.parseSqlQuery(new ByteArrayInputStream(text.getBytes()));
+        if (sqlquery == null) {
+            error(out, "the query cannot be parsed");
+            return;
+        }
+        for (Object tabname : sqlquery.getFromList()) {
+            if (!new File(tabname + ".md").exists() || !new File(tabname + ".stat").exists()) {
+                error(out, "unknown table " + tabname);
+                return;
+            }
+        }
+
+        int numJoin = sqlquery.getNumJoin();
+        int numSorts = (sqlquery.getNumOrderBy() > 0 ? 1 : 0) + (sqlquery.isDistinct() ? 1 : 0);
+        int numBuff = 0;
+        if (numJoin != 0 || numSorts != 0) {
+            /* Minimum 3 buffers are required per join, order by and distinct operator */
+            numBuff = Math.max(queryBuffers, 3 * (numJoin + numSorts));
+        }
+        if (numBuff > totalBuffers) {
+            error(out, numBuff + " buffers are required, " + totalBuffers + " are available");
+            return;
+        }
+
+        buffers.acquireUninterruptibly(numBuff);
+        Operator root = null;
+        try {
+            synchronized (planning) {
+                new BufferManager(numBuff, numJoin);
+                root = QueryMain.getExecPlan(sqlquery, false, false, RandomOptimizer.ITERATIVE_IMPROVEMENT);
+            }
+            if (root == null) {
+                error(out, "the join conditions do not connect all the tables");
+                return;
+            }
+
+            long starttime = System.currentTimeMillis();
+            if (!root.open()) {
+                error(out, "error in opening of root");
+                return;
+            }
+            out.println("OK");
+            long numTuples = QueryMain.writeResult(out, root, sqlquery.getLimit());
+            double executiontime = (System.currentTimeMillis() - starttime) / 1000.0;
+            out.println("END " + numTuples + " " + executiontime);
+            out.flush();
+        } catch (RuntimeException e) {
+            /* e.g. an attribute that is not in its table, or a table file that cannot be read: the other queries
+               go on */
+            error(out, "the query failed: " + e);
+        } finally {
+            /* the temporary files and the buffers of the operators are released even if the query failed */
+            if (root != null) {
+                close(root);
+            }
+            buffers.release(numBuff);
+        }
+    }
+
+    /**
+     * Closes the operators of the plan, some of which may not have been opened if the query failed
+     */
+    private static void close(Operator root) {
+        try {
+            root.close();
+        } catch (RuntimeException e) {
+            System.err.println("QueryServer: error in closing the plan: " + e);
+        }
+    }
+
+    private static void error(PrintWriter out, String message) {
+        out.println("ERROR " + message);
+        out.flush();
+    }
+}
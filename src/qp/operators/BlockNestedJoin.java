@@ -7,6 +7,7 @@ import qp.utils.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.lang.*;
 
 public class BlockNestedJoin extends Join {
@@ -18,15 +19,20 @@ public class BlockNestedJoin extends Join {
 
     String rfname;    // The file name where the right table is materialize
 
-    static int filenum = 0;   // To get unique filenum for this operation
+    static final AtomicInteger filenum = new AtomicInteger();   // To get unique filenum for this operation
 
     Batch outbatch;   // Output buffer
     Batch leftBlock;  // Buffer for left input stream
+    HashMap<Object, ArrayList<Tuple>> table;  // Tuples of leftBlock by value of the join attribute
     Batch rightbatch;  // Buffer for right input stream
-    ObjectInputStream in; // File pointer to the right hand materialized file
+    PageReader in;  // File pointer to the right hand materialized file
+    BloomFilter filter;  // Join values of the right table, null without a filter
+    Operator outer;  // Left input, without the tuples whose join value is not in filter
 
-    int lcurs;    // Cursor for left side buffer
     int rcurs;    // Cursor for right side buffer
+    Tuple righttuple;  // Right tuple being joined
+    ArrayList<Tuple> matches;  // Tuples of leftBlock matching righttuple
+    int mcurs;    // Cursor in matches
     boolean eosl;  // Whether end of stream (left table) is reached
     boolean eosr;  // End of stream (right table)
 //    private int count = 0;
@@ -37,6 +43,7 @@ public class BlockNestedJoin extends Join {
         schema = jn.getSchema();
         jointype = jn.getJoinType();
         numBuff = jn.getNumBuff();
+        filterBits = jn.getFilterBits();
     }
 
     /**
@@ -50,16 +57,27 @@ public class BlockNestedJoin extends Join {
         getJoinAttrIndex();
 
         /* initialize the cursors of input buffers **/
-        lcurs = 0;
         rcurs = 0;
+        rightbatch = null;
+        matches = null;
+        table = new HashMap<>();
         eosl = false;
 
         /* because right stream is to be repetitively scanned if it reached end, we have to start new scan */
         eosr = true;
 
+        filter = (filterBits > 0) ? new BloomFilter(filterBits) : null;
         if (!materializeTable()) return false;
 
-        return (left.open());
+        /* the operators of the right input are done, their buffers may enlarge the blocks */
+        if (grant != null) {
+            growBuffers(grant.getUseful());
+        }
+
+        /* the left tuples that cannot join are dropped before they are put in a block, so that
+           the materialized right table is scanned once per block of joining tuples only */
+        outer = (filter != null) ? SemiJoinFilter.probing(left, leftindex, filter) : left;
+        return (outer.open());
     }
 
     /**
@@ -71,16 +89,18 @@ public class BlockNestedJoin extends Join {
             return false;
         }
 
-        filenum++;
-        rfname = "NJtemp-" + String.valueOf(filenum);
+        rfname = "BNJtemp-" + String.valueOf(filenum.incrementAndGet());
         try {
-            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(rfname));
+            PageWriter out = new PageWriter(rfname, right.getSchema());
             while ((rightpage = right.next()) != null) {
-                out.writeObject(rightpage);
+                out.add(rightpage);
+                for (int i = 0; filter != null && i < rightpage.size(); i++) {
+                    filter.add(rightpage.elementAt(i).dataAt(rightindex));
+                }
             }
             out.close();
         } catch (IOException io) {
-            System.out.println("NestedJoin: writing the temporary file error");
+            System.err.println("NestedJoin: writing the temporary file error");
             return false;
         }
         if (!right.close())
@@ -98,9 +118,10 @@ public class BlockNestedJoin extends Join {
 
     /**
      * from input buffers select the tuples satisfying join condition. And returns a page of output tuples
+     * Every right tuple is probed against a hash table over the left block, instead of being compared
+     * with every tuple of the block.
      **/
     public Batch next() {
-        int i, j;
         if (eosl) {
             close();
             return null;
@@ -108,89 +129,65 @@ public class BlockNestedJoin extends Join {
         outbatch = new Batch(batchsize);
 
         while (!outbatch.isFull()) {
+            if (matches != null && mcurs < matches.size()) {
+                outbatch.add(matches.get(mcurs).joinWith(righttuple));
+                mcurs++;
+                continue;
+            }
+            matches = null;
 
-            if (lcurs == 0 && eosr) {
+            if (eosr) {
                 leftBlock = fetchNextBlock();
                 if (leftBlock == null) {
                     eosl = true;
                     return outbatch;
                 }
+                buildTable(leftBlock);
                 openRightTableFile();
             }
 
-            while (!eosr) {
+            if (rightbatch == null || rcurs == rightbatch.size()) {
                 try {
-                    if (rcurs == 0 && lcurs == 0) {
-                        rightbatch = (Batch) in.readObject();
-//                        rightbatch = (Batch) in.readUnshared();
-//                        try {
-//                            Thread.sleep(10); // imitate a penalty for I/O request.
-//                        } catch(Exception en) {
-//
-//                        }
-                    }
-
-                    for (i = lcurs; i < leftBlock.size(); i++) {
-                        for (j = rcurs; j < rightbatch.size(); j++) {
-//                            iterCount++;
-//                            if (iterCount % 10000000 == 0)
-//                                Debug.printRed("itercount = " + iterCount + "\n");
-                            Tuple lefttuple = leftBlock.elementAt(i);
-                            Tuple righttuple = rightbatch.elementAt(j);
-                            if (lefttuple.checkJoin(righttuple, leftindex, rightindex)) {
-                                Tuple outtuple = lefttuple.joinWith(righttuple);
-
-                                outbatch.add(outtuple);
-                                if (outbatch.isFull()) {
-                                    if (i == leftBlock.size() - 1 && j == rightbatch.size() - 1) {//case 1
-                                        lcurs = 0;
-                                        rcurs = 0;
-                                    } else if (i != leftBlock.size() - 1 && j == rightbatch.size() - 1) {//case 2
-                                        lcurs = i + 1;
-                                        rcurs = 0;
-                                    } else if (i == leftBlock.size() - 1 && j != rightbatch.size() - 1) {//case 3
-                                        lcurs = i;
-                                        rcurs = j + 1;
-                                    } else {
-                                        lcurs = i;
-                                        rcurs = j + 1;
-                                    }
-                                    return outbatch;
-                                }
-                            }
-                        }
-                        rcurs = 0;
-                    }
-                    lcurs = 0;
+                    rightbatch = in.readBatch(Batch.getPageSize() / right.getSchema().getTupleSize());
                 } catch (EOFException e) {
                     try {
-//                        count += 10;
-//                        if (count % 10 == 0) {
-//                            System.out.println("closing right " + count);
-//                            try {
-//                                Thread.sleep(5000);
-//                            } catch(Exception en) {
-//
-//                            }
-                            // this is clearly affected by the number of buffers available for the join
-//                        }
                         in.close();
                     } catch (IOException io) {
-                        System.out.println("BlockNestedJoin: Error in temporary file reading");
+                        System.err.println("BlockNestedJoin: Error in temporary file reading");
                     }
+                    rightbatch = null;
                     eosr = true;
-                } catch (ClassNotFoundException c) {
-                    System.out.println("BlockNestedJoin: Some error in deserialization");
-                    System.exit(1);
                 } catch (IOException io) {
-                    System.out.println("BlockNestedJoin: temporary file reading error");
-                    System.exit(1);
+                    throw new UncheckedIOException("BlockNestedJoin: temporary file reading error", io);
                 }
+                rcurs = 0;
+                continue;
             }
+
+            righttuple = rightbatch.elementAt(rcurs);
+            rcurs++;
+            matches = table.get(righttuple.dataAt(rightindex));
+            mcurs = 0;
         }
         return outbatch;
     }
 
+    /**
+     * Indexes the tuples of the left block on the join attribute. As checkJoin, keys are compared with equals().
+     */
+    private void buildTable(Batch block) {
+        table.clear();
+        for (int i = 0; i < block.size(); i++) {
+            Tuple t = block.elementAt(i);
+            ArrayList<Tuple> bucket = table.get(t.dataAt(leftindex));
+            if (bucket == null) {
+                bucket = new ArrayList<>(2);
+                table.put(t.dataAt(leftindex), bucket);
+            }
+            bucket.add(t);
+        }
+    }
+
     /**
      * opens the materialized inner table for scanning (again).
      */
@@ -202,23 +199,23 @@ public class BlockNestedJoin extends Join {
 ////                System.out.println("sleeping " + count);
             // this is clearly affected by the number of buffers available for the join
 //            }
-            in = new ObjectInputStream(new FileInputStream(rfname));
+            in = new PageReader(rfname, right.getSchema());
             eosr = false;
         } catch (IOException io) {
-            System.err.println("BlockNestedJoin: error in reading the file");
-            System.exit(1);
+            throw new UncheckedIOException("BlockNestedJoin: error in reading the file", io);
         }
     }
 
     /**
-     * creates leftBatch whose size is at most numBuffers-2.
+     * creates leftBatch whose size is at most numBuffers-2, less the buffers of the filter.
      *
      * @return batch representing next block. Null if no batch was read.
      */
     public Batch fetchNextBlock() {
         ArrayList<Batch> nextBatches = new ArrayList<>();
-        for (int i = 0; i < numBuff - 2; i++) {
-            Batch next = left.next();
+        int blockPages = Math.max(1, numBuff - 2 - filterPages());
+        for (int i = 0; i < blockPages; i++) {
+            Batch next = outer.next();
             if (next == null)
                 break;
             nextBatches.add(next);
@@ -239,6 +236,7 @@ public class BlockNestedJoin extends Join {
     public boolean close() {
         File f = new File(rfname);
         f.delete();
+        releaseBuffers();
         return true;
     }
 }
@@ -2,6 +2,7 @@ package qp.operators;
 
 import qp.utils.*;
 
+import java.util.Vector;
 import java.util.HashSet;
 
 public class Debug {
@@ -92,6 +93,9 @@ public class Debug {
                 case JoinType.HASHJOIN:
                     System.out.print("HashJoin(");
                     break;
+                case JoinType.INDEXNESTED:
+                    System.out.print("IndexNested(");
+                    break;
             }
             PPrint(((Join) node).getLeft());
             System.out.print(" [");
@@ -104,7 +108,12 @@ public class Debug {
             System.out.print("Select(");
             PPrint(((Select) node).getBase());
             System.out.print("  '");
-            PPrint(((Select) node).getCondition());
+            Vector<Condition> conditions = ((Select) node).getConditions();
+            for (int i = 0; i < conditions.size(); i++) {
+                if (i > 0)
+                    System.out.print(" AND ");
+                PPrint(conditions.get(i));
+            }
             System.out.print("'  ");
             System.out.print(")");
 
@@ -113,8 +122,19 @@ public class Debug {
             PPrint(((Project) node).getBase());
             System.out.print(")");
 
+        } else if (optype == OpType.DISTINCT) {
+            System.out.print("Distinct(");
+            PPrint(((Distinct) node).getBase());
+            System.out.print(")");
+
         } else if (optype == OpType.SCAN) {
-            System.out.print(((Scan) node).getTabName());
+            if (node instanceof IndexScan) {
+                System.out.print("IndexScan(" + ((Scan) node).getTabName() + "  '");
+                PPrint(((IndexScan) node).getCondition());
+                System.out.print("'  )");
+            } else {
+                System.out.print(((Scan) node).getTabName());
+            }
         } else if (optype == OpType.ORDERBY) {
             System.out.print("Orderby( ");
             PPrint(((OrderBy) node).getBase());
@@ -122,6 +142,9 @@ public class Debug {
                 PPrint((Attribute) a);
                 System.out.print(" ");
             }
+            if (node instanceof TopKOrderBy) {
+                System.out.print("LIMIT " + ((TopKOrderBy) node).getLimit() + " ");
+            }
             System.out.print(")");
         }
     }
@@ -0,0 +1,310 @@
+/* Hash-based duplicate elimination */
+
+package qp.operators;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import qp.utils.Batch;
+import qp.utils.BufferBudget;
+import qp.utils.PageReader;
+import qp.utils.PageWriter;
+import qp.utils.Schema;
+import qp.utils.Tuple;
+
+public class Distinct extends Operator {
+
+    /* Maximum number of times tuples are re-partitioned, after that the hash set is allowed to outgrow memory */
+    private static final int MAXLEVEL = 3;
+
+    private static final AtomicInteger filenum = new AtomicInteger();   // To get unique filenum for this operation
+
+    private Operator base;                  // base operator
+    private int numBuff;                    // Number of buffers available to the operator
+    private BufferBudget.Grant grant;       // Buffers of the operator in the budget of the query, null if not allocated
+    private int batchsize;                  // Number of tuples per batch
+    private int memTuples;                  // Number of distinct tuples the hash set may hold
+    private int numSpill;                   // Number of partitions tuples are written to once the hash set is full
+
+    /* The following fields are required during execution of the distinct operator */
+    private HashSet<Vector> seen;           // Tuples already returned in the current pass
+    private PageReader in;                  // Partition read in the current pass, null while reading the base
+    private Partition current;              // Partition read in the current pass
+    private int level;                      // Number of times the tuples of the current pass were partitioned
+    private Partition[] spill;              // Partitions of the current pass, null as long as the hash set fits
+    private ArrayDeque<Partition> pending;  // Partitions that still have to be read
+    private Batch inbatch;                  // Current input page
+    private int start;                      // Cursor position in the input page
+    private boolean eos;                    // Whether all the distinct tuples were returned
+
+    public Distinct(Operator base, int type) {
+        super(type);
+        this.base = base;
+    }
+
+    public void setBase(Operator base) {
+        this.base = base;
+    }
+
+    public Operator getBase() {
+        return base;
+    }
+
+    public void setNumBuff(int numBuff) {
+        this.numBuff = numBuff;
+    }
+
+    public int getNumBuff() {
+        return numBuff;
+    }
+
+    public void setGrant(BufferBudget.Grant grant) {
+        this.grant = grant;
+    }
+
+    public BufferBudget.Grant getGrant() {
+        return grant;
+    }
+
+    /**
+     * Tuples are returned as soon as they are read for the first time. Once the hash set fills the
+     * buffers, the tuples that are not in it are hash-partitioned to disk, and each partition is
+     * then read back in its own pass with an empty hash set.
+     */
+    public boolean open() {
+        int tuplesize = schema.getTupleSize();
+        batchsize = Batch.getPageSize() / tuplesize;
+
+        /* 1 input buffer, 1 output buffer, 1 buffer per partition, the rest holds the hash set */
+        numSpill = Math.max(2, (numBuff - 2) / 2);
+        memTuples = Math.max(1, numBuff - 2 - numSpill) * batchsize;
+
+        seen = new HashSet<>();
+        in = null;
+        current = null;
+        level = 0;
+        spill = null;
+        pending = new ArrayDeque<>();
+        inbatch = null;
+        start = 0;
+        eos = false;
+        return base.open();
+    }
+
+    /**
+     * returns a batch of tuples of the base that were not returned before
+     **/
+    public Batch next() {
+        if (eos) {
+            close();
+            return null;
+        }
+
+        Batch outbatch = new Batch(batchsize);
+        try {
+            while (!outbatch.isFull()) {
+                if (inbatch == null || start == inbatch.size()) {
+                    inbatch = nextInputBatch();
+                    start = 0;
+                    if (inbatch == null && !nextPass()) {
+                        eos = true;
+                        break;
+                    }
+                    continue;
+                }
+                Tuple t = inbatch.elementAt(start++);
+                Vector key = t.data();
+                if (seen.contains(key)) {
+                    continue;
+                }
+                if (spill == null && (seen.size() < memTuples || level >= MAXLEVEL)) {
+                    seen.add(key);
+                    outbatch.add(t);
+                } else {
+                    /* a tuple that is not in the hash set cannot be a duplicate of a returned tuple */
+                    if (spill == null) {
+                        openSpill();
+                    }
+                    spill[partitionOf(key, level, numSpill)].add(t);
+                }
+            }
+        } catch (IOException io) {
+            throw new UncheckedIOException("Distinct: temporary file error", io);
+        }
+        return outbatch;
+    }
+
+    /**
+     * @return true once all the partition files are deleted
+     */
+    public boolean close() {
+        closeStream(in);
+        in = null;
+        if (current != null) {
+            current.delete();
+            current = null;
+        }
+        if (spill != null) {
+            for (Partition p : spill) {
+                p.closeQuietly();
+                p.delete();
+            }
+            spill = null;
+        }
+        if (pending != null) {
+            for (Partition p : pending) {
+                p.delete();
+            }
+            pending.clear();
+        }
+        seen = null;
+        if (grant != null) {
+            grant.release();
+        }
+        return true;
+    }
+
+    public Object clone() {
+        Operator newbase = (Operator) base.clone();
+        Distinct newdist = new Distinct(newbase, optype);
+        newdist.setSchema(newbase.getSchema());
+        newdist.setNumBuff(numBuff);
+        return newdist;
+    }
+
+    /**
+     * @return the next page of the current pass, null once it is exhausted
+     */
+    private Batch nextInputBatch() throws IOException {
+        if (in == null) {
+            return base.next();
+        }
+        try {
+            return in.readBatch(batchsize);
+        } catch (EOFException eof) {
+            return null;
+        }
+    }
+
+    /**
+     * Ends the current pass, queuing the partitions it wrote, and starts reading the next partition
+     * @return false if no partition is left
+     */
+    private boolean nextPass() throws IOException {
+        if (in == null && current == null) {
+            base.close();
+        }
+        closeStream(in);
+        in = null;
+        if (current != null) {
+            current.delete();
+            current = null;
+        }
+        if (spill != null) {
+            for (Partition p : spill) {
+                p.close();
+                if (p.numTuples > 0) {
+                    pending.add(p);
+                } else {
+                    p.delete();
+                }
+            }
+            spill = null;
+        }
+
+        seen = new HashSet<>();
+        current = pending.poll();
+        if (current == null) {
+            return false;
+        }
+        level = current.level;
+        in = new PageReader(current.fname, schema);
+        return true;
+    }
+
+    private void openSpill() throws IOException {
+        spill = new Partition[numSpill];
+        for (int p = 0; p < numSpill; p++) {
+            spill[p] = new Partition(level + 1);
+            spill[p].open(schema);
+        }
+    }
+
+    /**
+     * @return the partition of the tuple, a different hash function is used at every level
+     */
+    private static int partitionOf(Vector key, int level, int fanout) {
+        int h = key.hashCode() ^ (level * 0x9E3779B9);
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return (h & 0x7fffffff) % fanout;
+    }
+
+    private static String temporaryFileName() {
+        return "DTtemp-" + String.valueOf(filenum.incrementAndGet());
+    }
+
+    private static void closeStream(PageReader in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException io) {
+                System.err.println("Distinct: Error in temporary file closing");
+            }
+        }
+    }
+
+    /**
+     * A partition file, together with its writer while it is written
+     */
+    private static final class Partition {
+        final int level;        // Number of times the tuples were partitioned
+        String fname;
+        PageWriter out;
+        long numTuples;
+
+        Partition(int level) {
+            this.level = level;
+        }
+
+        void open(Schema schema) throws IOException {
+            fname = temporaryFileName();
+            out = new PageWriter(fname, schema);
+        }
+
+        void add(Tuple t) throws IOException {
+            out.add(t);
+            numTuples++;
+        }
+
+        void close() throws IOException {
+            out.close();
+            out = null;
+        }
+
+        void closeQuietly() {
+            if (out != null) {
+                try {
+                    close();
+                } catch (IOException io) {
+                    System.err.println("Distinct: Error in temporary file closing");
+                }
+            }
+        }
+
+        void delete() {
+            if (fname != null) {
+                new File(fname).delete();
+            }
+        }
+    }
+}
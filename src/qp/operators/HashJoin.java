@@ -0,0 +1,557 @@
+/* Hybrid (Grace) hash join algorithm */
+
+package qp.operators;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import qp.utils.Attribute;
+import qp.utils.Batch;
+import qp.utils.PageReader;
+import qp.utils.PageWriter;
+import qp.utils.Schema;
+import qp.utils.Tuple;
+
+public final class HashJoin extends Join {
+
+    /* Maximum number of times a partition is re-partitioned before falling back to a chunked build */
+    private static final int MAXLEVEL = 3;
+
+    private static final AtomicInteger filenum = new AtomicInteger();   // To get unique filenum for this operation
+
+    private int lbatchsize;                     // Number of left tuples per batch
+    private int rbatchsize;                     // Number of right tuples per batch
+    private int jbatchsize;                     // Number of joined tuples per batch
+
+    private int leftindex;                      // Index of the join attribute in left (build) table
+    private int rightindex;                     // Index of the join attribute in right (probe) table
+
+    private int numPartitions;                  // Number of partitions created in the first pass
+    private int numSpilled;                     // Number of partitions of the first pass written to disk
+    private int residentTuples;                 // Number of build tuples kept in memory in the first pass
+
+    private Partition[] partitions;             // Partitions of the first pass, null for those kept in memory
+    private ArrayList<HashMap<Object, ArrayList<Tuple>>> tables;   // Hash tables of the first pass, null for those on disk
+    private int[] memTuples;                    // Number of build tuples in each hash table of the first pass
+    private ArrayDeque<Partition> pending;      // Partition pairs that still have to be joined
+
+    private HashMap<Object, ArrayList<Tuple>> table;    // In-memory hash table over (a chunk of) the build side
+
+    private Partition current;                  // Partition pair currently being joined
+    private PageReader buildIn;                 // Build file of current, when it is loaded chunk by chunk
+    private PageReader probeIn;                 // Probe file of current
+    private boolean probeStream;                // Whether tuples are probed straight from the right operator
+
+    private Batch probeBatch;                   // Current probe page
+    private int pcurs;                          // Cursor in probeBatch
+    private Tuple probeTuple;                   // Current probe tuple
+    private ArrayList<Tuple> matches;           // Build tuples matching probeTuple
+    private int mcurs;                          // Cursor in matches
+
+    private boolean eos;                        // Whether the join is done
+
+    /* =============================== PUBLIC INTERFACE =============================== */
+
+    /**
+     * Creates a new Join that will perform a hybrid hash join, the left input is used as the build input
+     * @param jn
+     */
+    public HashJoin(Join jn) {
+        super(jn.getLeft(), jn.getRight(), jn.getCondition(), jn.getOpType());
+        schema = jn.getSchema();
+        jointype = jn.getJoinType();
+        numBuff = jn.getNumBuff();
+    }
+
+    /**
+     * Partitions the left table, keeping in memory the partitions that fit, and opens the right table
+     * for the probing phase.
+     * @return true if the left table was partitioned and the right operator opens
+     */
+    public boolean open() {
+        int jtuplesize = schema.getTupleSize();
+        jbatchsize = Batch.getPageSize() / jtuplesize;
+        int ltuplesize = left.schema.getTupleSize();
+        lbatchsize = Batch.getPageSize() / ltuplesize;
+        int rtuplesize = right.schema.getTupleSize();
+        rbatchsize = Batch.getPageSize() / rtuplesize;
+
+        getJoinAttrIndex();
+
+        /* 1 input buffer and 1 output buffer, the other buffers hold the partitions in memory, except for
+           1 output buffer per partition written to disk. If they all are, each one fits in memory. */
+        numPartitions = Math.max(2, numBuff - 2);
+        numSpilled = 0;
+        residentTuples = 0;
+        partitions = new Partition[numPartitions];
+        tables = new ArrayList<>(numPartitions);
+        for (int p = 0; p < numPartitions; p++) {
+            tables.add(new HashMap<>());
+        }
+        memTuples = new int[numPartitions];
+
+        pending = new ArrayDeque<>();
+        table = null;
+        eos = false;
+        matches = null;
+        probeBatch = null;
+        pcurs = 0;
+
+        try {
+            if (!partitionBuild()) {
+                return false;
+            }
+            for (int p = 0; p < numPartitions; p++) {
+                if (partitions[p] != null) {
+                    partitions[p].openRight(right.getSchema(), rbatchsize);
+                }
+            }
+        } catch (IOException io) {
+            System.err.println("HashJoin: writing the temporary file error");
+            return false;
+        }
+
+        probeStream = true;
+        return right.open();
+    }
+
+    /**
+     * from input buffers select the tuples satisfying join condition. And returns a page of output tuples
+     */
+    public Batch next() {
+        if (eos) {
+            close();
+            return null;
+        }
+
+        Batch outbatch = new Batch(jbatchsize);
+        try {
+            while (!outbatch.isFull()) {
+                if (matches != null && mcurs < matches.size()) {
+                    outbatch.add(matches.get(mcurs).joinWith(probeTuple));
+                    mcurs++;
+                    continue;
+                }
+                matches = null;
+                if (!nextProbeTuple()) {
+                    eos = true;
+                    break;
+                }
+                matches = table.get(probeTuple.dataAt(rightindex));
+                mcurs = 0;
+            }
+        } catch (IOException io) {
+            throw new UncheckedIOException("HashJoin: temporary file reading error", io);
+        }
+        return outbatch;
+    }
+
+    /**
+     * @return true once all the partition files are deleted
+     */
+    public boolean close() {
+        closeStream(buildIn);
+        closeStream(probeIn);
+        if (current != null) {
+            current.delete();
+            current = null;
+        }
+        if (partitions != null) {
+            for (Partition p : partitions) {
+                if (p != null) {
+                    p.delete();
+                }
+            }
+            partitions = null;
+        }
+        if (pending != null) {
+            for (Partition p : pending) {
+                p.delete();
+            }
+            pending.clear();
+        }
+        table = null;
+        tables = null;
+        releaseBuffers();
+        return true;
+    }
+
+    /* =============================== PRIVATE METHODS =============================== */
+
+    private void getJoinAttrIndex() {
+        Attribute leftattr = con.getLhs();
+        Attribute rightattr = (Attribute) con.getRhs();
+        leftindex = left.getSchema().indexOf(leftattr);
+        rightindex = right.getSchema().indexOf(rightattr);
+    }
+
+    /**
+     * @return the partition of the given join key, a different hash function is used at every level
+     */
+    private static int partitionOf(Object key, int level, int fanout) {
+        int h = key.hashCode() ^ (level * 0x9E3779B9);
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return (h & 0x7fffffff) % fanout;
+    }
+
+    private static String temporaryFileName() {
+        return "HJtemp-" + String.valueOf(filenum.incrementAndGet());
+    }
+
+    private static void closeStream(PageReader in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException io) {
+                System.err.println("HashJoin: Error in temporary file closing");
+            }
+        }
+    }
+
+    /**
+     * Reads the whole left table. The partitions are kept in memory until they outgrow the buffers, then
+     * the largest ones are written to disk, and so are the tuples of these partitions read afterwards.
+     * @return true if the left table was read and partitioned
+     */
+    private boolean partitionBuild() throws IOException {
+        if (!left.open()) {
+            return false;
+        }
+        Batch leftpage;
+        while ((leftpage = left.next()) != null) {
+            for (int i = 0; i < leftpage.size(); i++) {
+                Tuple t = leftpage.elementAt(i);
+                int p = partitionOf(t.dataAt(leftindex), 0, numPartitions);
+                if (partitions[p] != null) {
+                    partitions[p].addLeft(t);
+                    continue;
+                }
+                insert(tables.get(p), t);
+                memTuples[p]++;
+                residentTuples++;
+                while (residentTuples > (long) (numBuff - 2 - numSpilled) * lbatchsize) {
+                    if (!spillLargest()) {
+                        break;
+                    }
+                }
+            }
+        }
+        for (int p = 0; p < numPartitions; p++) {
+            if (partitions[p] != null) {
+                partitions[p].closeLeft();
+            }
+        }
+        return left.close();
+    }
+
+    /**
+     * The partitions in memory do not fit anymore, write out the largest one
+     * @return false if no partition in memory holds a tuple
+     */
+    private boolean spillLargest() throws IOException {
+        int largest = -1;
+        for (int p = 0; p < numPartitions; p++) {
+            if (partitions[p] == null && memTuples[p] > 0 && (largest < 0 || memTuples[p] > memTuples[largest])) {
+                largest = p;
+            }
+        }
+        if (largest < 0) {
+            return false;
+        }
+        Partition spill = new Partition(0);
+        spill.openLeft(left.getSchema(), lbatchsize);
+        for (ArrayList<Tuple> bucket : tables.get(largest).values()) {
+            for (Tuple t : bucket) {
+                spill.addLeft(t);
+            }
+        }
+        partitions[largest] = spill;
+        tables.set(largest, null);
+        residentTuples -= memTuples[largest];
+        memTuples[largest] = 0;
+        numSpilled++;
+        return true;
+    }
+
+    private void insert(HashMap<Object, ArrayList<Tuple>> hashtable, Tuple t) {
+        Object key = t.dataAt(leftindex);
+        ArrayList<Tuple> bucket = hashtable.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>(2);
+            hashtable.put(key, bucket);
+        }
+        bucket.add(t);
+    }
+
+    /**
+     * Advances probeTuple to the next tuple that has to be probed against the hash table,
+     * switching partitions (and partitioning the right input) whenever needed.
+     * @return false if there are no more tuples to probe
+     */
+    private boolean nextProbeTuple() throws IOException {
+        while (true) {
+            if (probeBatch != null && pcurs < probeBatch.size()) {
+                Tuple t = probeBatch.elementAt(pcurs++);
+                if (probeStream) {
+                    int p = partitionOf(t.dataAt(rightindex), 0, numPartitions);
+                    if (partitions[p] != null) {
+                        partitions[p].addRight(t);
+                        continue;
+                    }
+                    table = tables.get(p);
+                }
+                probeTuple = t;
+                return true;
+            }
+            pcurs = 0;
+            probeBatch = null;
+
+            if (probeStream) {
+                probeBatch = right.next();
+                if (probeBatch == null) {
+                    endProbeStream();
+                }
+            } else if (current != null) {
+                probeBatch = readBatch(probeIn, rbatchsize);
+                if (probeBatch == null) {
+                    closeStream(probeIn);
+                    probeIn = null;
+                    if (buildIn != null && loadChunk()) {
+                        probeIn = new PageReader(current.rfname, right.getSchema());
+                    } else {
+                        current.delete();
+                        current = null;
+                    }
+                }
+            } else if (!nextPartition()) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * The right input is fully read: the partitions written to disk are queued to be joined
+     */
+    private void endProbeStream() throws IOException {
+        probeStream = false;
+        right.close();
+        tables = null;
+        table = new HashMap<>();
+        int largest = 0;
+        for (int p = 0; p < numPartitions; p++) {
+            if (partitions[p] != null) {
+                partitions[p].closeRight();
+                if (partitions[p].lpages > 0 && partitions[p].rpages > 0) {
+                    pending.add(partitions[p]);
+                    largest = Math.max(largest, partitions[p].lpages);
+                } else {
+                    partitions[p].delete();
+                }
+            }
+        }
+        partitions = null;
+        /* both inputs are done, the spare buffers of the query may hold the largest partition at once */
+        if (largest > 0) {
+            growBuffers(largest + 2);
+        }
+    }
+
+    /**
+     * Loads the build side of the next pending partition pair into the hash table.
+     * Partitions that are too large are either re-partitioned, or joined chunk by chunk when
+     * re-partitioning does not help (e.g. heavily skewed join keys).
+     * @return false if no partition is left to be joined
+     */
+    private boolean nextPartition() throws IOException {
+        while (!pending.isEmpty()) {
+            Partition p = pending.poll();
+            if (p.lpages > numBuff - 2 && p.level < MAXLEVEL) {
+                repartition(p);
+                continue;
+            }
+            current = p;
+            buildIn = new PageReader(p.lfname, left.getSchema());
+            if (!loadChunk()) {
+                current.delete();
+                current = null;
+                continue;
+            }
+            probeIn = new PageReader(p.rfname, right.getSchema());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Loads the next (numBuff-2) pages of the current build file into the hash table
+     * @return false if the build file was already exhausted
+     */
+    private boolean loadChunk() throws IOException {
+        table.clear();
+        boolean loaded = false;
+        for (int i = 0; i < numBuff - 2; i++) {
+            Batch page = readBatch(buildIn, lbatchsize);
+            if (page == null) {
+                closeStream(buildIn);
+                buildIn = null;
+                break;
+            }
+            for (int j = 0; j < page.size(); j++) {
+                insert(table, page.elementAt(j));
+            }
+            loaded = true;
+        }
+        return loaded;
+    }
+
+    /**
+     * Splits a partition pair that does not fit in memory into (numBuff-1) smaller pairs. The left file is split
+     * first and then the right one, so that one input page and (numBuff-1) output pages are used at a time. The
+     * right tuples of a child whose left file is empty cannot join and are dropped.
+     */
+    private void repartition(Partition parent) throws IOException {
+        int fanout = numBuff - 1;
+        Partition[] children = new Partition[fanout];
+        for (int p = 0; p < fanout; p++) {
+            children[p] = new Partition(parent.level + 1);
+            children[p].openLeft(left.getSchema(), lbatchsize);
+        }
+
+        PageReader in = new PageReader(parent.lfname, left.getSchema());
+        Batch page;
+        while ((page = readBatch(in, lbatchsize)) != null) {
+            for (int i = 0; i < page.size(); i++) {
+                Tuple t = page.elementAt(i);
+                children[partitionOf(t.dataAt(leftindex), parent.level + 1, fanout)].addLeft(t);
+            }
+        }
+        in.close();
+        for (Partition child : children) {
+            child.closeLeft();
+            if (child.lpages > 0) {
+                child.openRight(right.getSchema(), rbatchsize);
+            }
+        }
+
+        in = new PageReader(parent.rfname, right.getSchema());
+        while ((page = readBatch(in, rbatchsize)) != null) {
+            for (int i = 0; i < page.size(); i++) {
+                Tuple t = page.elementAt(i);
+                Partition child = children[partitionOf(t.dataAt(rightindex), parent.level + 1, fanout)];
+                if (child.lpages > 0) {
+                    child.addRight(t);
+                }
+            }
+        }
+        in.close();
+        parent.delete();
+
+        for (Partition child : children) {
+            if (child.lpages > 0) {
+                child.closeRight();
+            }
+            if (child.lpages > 0 && child.rpages > 0) {
+                pending.add(child);
+            } else {
+                child.delete();
+            }
+        }
+    }
+
+    /**
+     * @return the next page of the file, null at the end of the file
+     */
+    private static Batch readBatch(PageReader in, int batchsize) throws IOException {
+        try {
+            return in.readBatch(batchsize);
+        } catch (EOFException eof) {
+            return null;
+        }
+    }
+
+    /**
+     * A pair of left/right partition files, together with their output buffers while they are written
+     */
+    private static final class Partition {
+        final int level;                    // Number of times the tuples were re-partitioned
+        String lfname;
+        String rfname;
+        int lpages;
+        int rpages;
+        PageWriter left;
+        PageWriter right;
+        Batch lbuffer;
+        Batch rbuffer;
+
+        Partition(int level) {
+            this.level = level;
+        }
+
+        void openLeft(Schema schema, int batchsize) throws IOException {
+            lfname = temporaryFileName();
+            left = new PageWriter(lfname, schema);
+            lbuffer = new Batch(batchsize);
+        }
+
+        void openRight(Schema schema, int batchsize) throws IOException {
+            rfname = temporaryFileName();
+            right = new PageWriter(rfname, schema);
+            rbuffer = new Batch(batchsize);
+        }
+
+        void addLeft(Tuple t) throws IOException {
+            lbuffer.add(t);
+            if (lbuffer.isFull()) {
+                left.add(lbuffer);
+                lbuffer = new Batch(lbuffer.capacity());
+                lpages++;
+            }
+        }
+
+        void addRight(Tuple t) throws IOException {
+            rbuffer.add(t);
+            if (rbuffer.isFull()) {
+                right.add(rbuffer);
+                rbuffer = new Batch(rbuffer.capacity());
+                rpages++;
+            }
+        }
+
+        void closeLeft() throws IOException {
+            if (!lbuffer.isEmpty()) {
+                left.add(lbuffer);
+                lpages++;
+            }
+            left.close();
+            lbuffer = null;
+        }
+
+        void closeRight() throws IOException {
+            if (!rbuffer.isEmpty()) {
+                right.add(rbuffer);
+                rpages++;
+            }
+            right.close();
+            rbuffer = null;
+        }
+
+        void delete() {
+            if (lfname != null) {
+                new File(lfname).delete();
+            }
+            if (rfname != null) {
+                new File(rfname).delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/* Index nested loop join: the right table is not scanned, its B+-tree index is probed for every left tuple */
+
+package qp.operators;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Vector;
+
+import qp.utils.*;
+
+public class IndexNestedJoin extends Join {
+
+    int batchsize;          // Number of tuples per out batch
+    int leftindex;          // Index of the join attribute in left table
+
+    Scan inner;             // Scan of the right table, below the selects of the right operator
+    Predicate[] filters;    // Conditions of the selects of the right operator
+    BPlusTree index;        // Index on the join attribute of the right table
+    PageReader in;          // Right table, read one tuple at a time
+
+    Batch outbatch;         // Output buffer
+    Batch leftbatch;        // Buffer for left input stream
+    int lcurs;              // Cursor for left side buffer
+    Tuple lefttuple;        // Left tuple being joined
+    BPlusTree.Cursor cursor;    // Entries of the index matching lefttuple
+    boolean eosl;           // Whether end of stream (left table) is reached
+
+    public IndexNestedJoin(Join jn) {
+        super(jn.getLeft(), jn.getRight(), jn.getCondition(), jn.getOpType());
+        schema = jn.getSchema();
+        jointype = jn.getJoinType();
+        numBuff = jn.getNumBuff();
+    }
+
+    /**
+     * @return the scan of the table of the right operator if it is a scan, or selects on top of a scan, null otherwise
+     */
+    public static Scan innerScan(Operator right) {
+        while (right.getOpType() == OpType.SELECT) {
+            right = ((Select) right).getBase();
+        }
+        return right.getOpType() == OpType.SCAN ? (Scan) right : null;
+    }
+
+    /**
+     * @return true if the right table of the join has an index on the join attribute
+     */
+    public static boolean canProbe(Join jn) {
+        Scan scan = innerScan(jn.getRight());
+        if (scan == null) {
+            return false;
+        }
+        Schema rightschema = scan.getSchema();
+        int rightindex = rightschema.indexOf((Attribute) jn.getCondition().getRhs());
+        if (rightindex < 0) {
+            return false;
+        }
+        Attribute rightattr = rightschema.getAttribute(rightindex);
+        return rightattr.isIndexed() && BPlusTree.isCurrent(scan.getTabName(), rightattr.getColName());
+    }
+
+    /**
+     * @return true if the index and the right table are opened and the left operator opens
+     */
+    public boolean open() {
+        int tuplesize = schema.getTupleSize();
+        batchsize = Batch.getPageSize() / tuplesize;
+
+        leftindex = left.getSchema().indexOf(con.getLhs());
+        inner = innerScan(right);
+        Schema rightschema = inner.getSchema();
+        Attribute rightattr = rightschema.getAttribute(rightschema.indexOf((Attribute) con.getRhs()));
+
+        /* the selects of the right operator are checked on the tuples fetched through the index */
+        Vector<Condition> conditions = new Vector<>();
+        for (Operator op = right; op.getOpType() == OpType.SELECT; op = ((Select) op).getBase()) {
+            conditions.addAll(((Select) op).getConditions());
+        }
+        if (inner instanceof IndexScan) {
+            conditions.add(((IndexScan) inner).getCondition());
+        }
+        filters = new Predicate[conditions.size()];
+        for (int i = 0; i < filters.length; i++) {
+            filters[i] = Predicate.bind(conditions.get(i), rightschema);
+        }
+
+        try {
+            index = new BPlusTree(BPlusTree.fileName(inner.getTabName(), rightattr.getColName()));
+            in = new PageReader(inner.getTabName() + ".tbl", rightschema, true);
+        } catch (IOException io) {
+            System.err.println("IndexNestedJoin: error in opening the index of " + inner.getTabName());
+            return false;
+        }
+
+        leftbatch = null;
+        lcurs = 0;
+        cursor = null;
+        eosl = false;
+        return left.open();
+    }
+
+    /**
+     * from input buffers select the tuples satisfying join condition. And returns a page of output tuples
+     **/
+    public Batch next() {
+        if (eosl) {
+            close();
+            return null;
+        }
+        outbatch = new Batch(batchsize);
+
+        try {
+            while (!outbatch.isFull()) {
+                if (cursor != null) {
+                    /* the entries of a key are consecutive in the leaves, and keys are compared with equals() as in checkJoin */
+                    if (cursor.next() && cursor.key().equals(lefttuple.dataAt(leftindex))) {
+                        Tuple righttuple = in.readTuple(cursor.page(), cursor.slot());
+                        if (passesFilters(righttuple)) {
+                            outbatch.add(lefttuple.joinWith(righttuple));
+                        }
+                        continue;
+                    }
+                    cursor = null;
+                }
+
+                if (leftbatch == null || lcurs == leftbatch.size()) {
+                    leftbatch = left.next();
+                    lcurs = 0;
+                    if (leftbatch == null) {
+                        eosl = true;
+                        break;
+                    }
+                    continue;
+                }
+                lefttuple = leftbatch.elementAt(lcurs);
+                lcurs++;
+                cursor = index.find(lefttuple.dataAt(leftindex));
+            }
+        } catch (IOException io) {
+            throw new UncheckedIOException("IndexNestedJoin: error in reading the index or the right table", io);
+        }
+        return outbatch;
+    }
+
+    public boolean close() {
+        try {
+            if (index != null) {
+                index.close();
+                index = null;
+            }
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+        } catch (IOException io) {
+            System.err.println("IndexNestedJoin: error in closing the index");
+            return false;
+        }
+        releaseBuffers();
+        return true;
+    }
+
+    private boolean passesFilters(Tuple t) {
+        for (Predicate p : filters) {
+            if (!p.eval(t))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * Scans the tuples of a base table satisfying a selection condition through a B+-tree index
+ **/
+package qp.operators;
+
+import qp.utils.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * Index scan for an EQUAL, LESSTHAN, GREATERTHAN, LTOE or GTOE condition on an indexed attribute.
+ * The entries of the index in the range of the condition give the pages holding matching tuples;
+ * only these pages are read, in the order of the file, and the condition is checked on their tuples.
+ * The condition is evaluated by this operator, so there is no select for it above the scan.
+ */
+
+public class IndexScan extends Scan {
+
+    Condition con;              // Selection condition answered with the index
+    Predicate predicate;        // The condition bound to the schema
+    BitSet pages;               // Pages of the table holding tuples in the range of the condition
+    int page;                   // Last page read
+    ArrayList<Tuple> tuples;    // Tuples of the last page read
+    int tcurs;                  // Cursor in tuples
+
+    public IndexScan(String tabname, Condition con, int type) {
+        super(tabname, type);
+        this.con = con;
+    }
+
+    public Condition getCondition() {
+        return con;
+    }
+
+    /**
+     * @return true if the condition can be answered by an index on the table of the scan
+     */
+    public static boolean canUse(Scan scan, Condition con) {
+        if (con.getOpType() != Condition.SELECT || con.getExprType() == Condition.NOTEQUAL) {
+            return false;
+        }
+        Schema schema = scan.getSchema();
+        int index = schema.indexOf(con.getLhs());
+        if (index < 0) {
+            return false;
+        }
+        Attribute attr = schema.getAttribute(index);
+        return attr.isIndexed() && BPlusTree.isCurrent(scan.getTabName(), attr.getColName());
+    }
+
+    /** Reads the entries of the index in the range of the condition, and maps the table file */
+    public boolean open() {
+        int tuplesize = schema.getTupleSize();
+        batchsize = Batch.getPageSize() / tuplesize;
+        eos = false;
+
+        predicate = Predicate.bind(con, schema);
+        int exprtype = con.getExprType();
+        Attribute attr = schema.getAttribute(schema.indexOf(con.getLhs()));
+        Object value = keyOf((String) con.getRhs(), attr.getType());
+        boolean fromValue = exprtype == Condition.EQUAL || exprtype == Condition.GREATERTHAN || exprtype == Condition.GTOE;
+
+        pages = new BitSet();
+        try {
+            BPlusTree index = new BPlusTree(BPlusTree.fileName(tabname, attr.getColName()));
+            BPlusTree.Cursor cursor = index.find(fromValue ? value : null);
+            while (cursor.next()) {
+                int flag = index.compareKeys(cursor.key(), value);
+                /* the keys are sorted, so the scan of the leaves stops at the upper bound of the range */
+                if (flag > 0 && (exprtype == Condition.EQUAL || exprtype == Condition.LTOE))
+                    break;
+                if (flag >= 0 && exprtype == Condition.LESSTHAN)
+                    break;
+                if (Predicate.holds(flag, exprtype))
+                    pages.set(cursor.page());
+            }
+            index.close();
+            reader = new PageReader(filename, schema, true);
+            in = null;
+        } catch (IOException e) {
+            System.err.println(" Error reading the index of " + filename);
+            return false;
+        }
+        page = -1;
+        tuples = null;
+        tcurs = 0;
+        return true;
+    }
+
+    /**
+     *  Next operator - get the matching tuples of the next pages given by the index
+     **/
+    public Batch next() {
+        if (eos) {
+            close();
+            return null;
+        }
+
+        Batch outbatch = new Batch(batchsize);
+        try {
+            while (!outbatch.isFull()) {
+                if (tuples == null || tcurs == tuples.size()) {
+                    page = pages.nextSetBit(page + 1);
+                    if (page < 0) {
+                        eos = true;
+                        break;
+                    }
+                    tuples = reader.readPage(page);
+                    tcurs = 0;
+                    continue;
+                }
+                Tuple t = tuples.get(tcurs++);
+                if (predicate.eval(t))
+                    outbatch.add(t);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("IndexScan:Error reading " + filename, e);
+        }
+        return outbatch;
+    }
+
+    /**
+     *  Next operator - the matching tuples are converted to columns
+     **/
+    public ColumnBatch nextColumns() {
+        Batch batch = next();
+        if (batch == null) {
+            return null;
+        }
+        return ColumnBatch.fromBatch(batch, schema);
+    }
+
+    public boolean close() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                System.err.println("IndexScan: Error closing " + filename);
+                return false;
+            }
+            reader = null;
+        }
+        return true;
+    }
+
+    public Object clone() {
+        IndexScan newscan = new IndexScan(tabname, (Condition) con.clone(), optype);
+        newscan.setSchema((Schema) schema.clone());
+        return newscan;
+    }
+
+    /**
+     * @return the constant of a select condition as a value of an attribute of the given type, as stored in
+     * the index and in the zone map
+     */
+    public static Object keyOf(String value, int type) {
+        switch (type) {
+            case Attribute.INT:
+                return Integer.parseInt(value);
+            case Attribute.REAL:
+                return Float.parseFloat(value);
+            case Attribute.TIME:
+                return Time.valueOf(value).getTime();
+            default:
+                return value;
+        }
+    }
+}
@@ -11,6 +11,8 @@ public class Join extends Operator {
     Operator right;   // right child
     Condition con;     //join condition
     int numBuff;    // Number of buffers available
+    BufferBudget.Grant grant;   // Buffers of the join in the budget of the query, null if not allocated
+    int filterBits;  // Bits of the Bloom filter of the semi-join reduction, out of numBuff, 0 for no filter
 
     int jointype;  // JoinType.NestedJoin/SortMerge/HashJoin
     int nodeIndex;   // Each join node is given a number
@@ -32,6 +34,49 @@ public class Join extends Operator {
         return numBuff;
     }
 
+    public void setGrant(BufferBudget.Grant grant) {
+        this.grant = grant;
+    }
+
+    public BufferBudget.Grant getGrant() {
+        return grant;
+    }
+
+    /* size of the Bloom filter of block nested loops and sort-merge joins, set with the buffers of the join */
+
+    public void setFilterBits(int bits) {
+        this.filterBits = bits;
+    }
+
+    public int getFilterBits() {
+        return filterBits;
+    }
+
+    /**
+     * @return the number of buffers taken by the Bloom filter
+     */
+    int filterPages() {
+        return filterBits == 0 ? 0 : BloomFilter.numPages(filterBits, Batch.getPageSize());
+    }
+
+    /**
+     * Takes spare buffers of the query, so that the join has up to wanted buffers
+     */
+    void growBuffers(int wanted) {
+        if (grant != null && wanted > numBuff) {
+            numBuff += grant.extend(wanted - numBuff);
+        }
+    }
+
+    /**
+     * Gives the buffers of the join back to the query, once it is done
+     */
+    void releaseBuffers() {
+        if (grant != null) {
+            grant.release();
+        }
+    }
+
     /* index of this node in query plan tree */
 
     public int getNodeIndex() {
@@ -87,6 +132,7 @@ public class Join extends Operator {
         jn.setJoinType(jointype);
         jn.setNodeIndex(nodeIndex);
         jn.setNumBuff(numBuff);
+        jn.setFilterBits(filterBits);
         return jn;
     }
 
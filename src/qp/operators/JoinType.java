@@ -11,7 +11,7 @@ public class JoinType {
     public static final int SORTMERGE = 2;
     public static final int HASHJOIN = 3;
     public static final int INDEXNESTED = 4;
-    public static int numJoinTypes = 3;
+    public static int numJoinTypes = 5;
 
     public static int numJoinTypes() {
         return numJoinTypes;
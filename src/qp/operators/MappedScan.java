@@ -0,0 +1,49 @@
+/**
+ * Scans a base table in the PageFile format by memory-mapping it
+ **/
+package qp.operators;
+
+import qp.utils.*;
+
+import java.io.IOException;
+
+/**
+ * Scan operator that memory-maps the table file and builds the batches directly from
+ * the mapped pages. Repeated scans of the same table are then served from the OS page
+ * cache, and the pages of the table do not take frames of the BufferPool.
+ * Tables that are not in the PageFile format are read like in Scan.
+ */
+
+public class MappedScan extends Scan {
+
+    public MappedScan(String tabname, int type) {
+        super(tabname, type);
+    }
+
+    /** Maps the table file, next() and close() are the ones of Scan */
+    public boolean open() {
+        if (!PageFile.isPageFile(filename)) {
+            return super.open();
+        }
+        int tuplesize = schema.getTupleSize();
+        batchsize = Batch.getPageSize() / tuplesize;
+        eos = false;
+
+        try {
+            reader = new PageReader(filename, schema, true);
+            in = null;
+            skipPages();
+        } catch (IOException e) {
+            System.err.println(" Error mapping " + filename);
+            return false;
+        }
+        return true;
+    }
+
+    public Object clone() {
+        MappedScan newscan = new MappedScan(tabname, optype);
+        newscan.setSchema((Schema) schema.clone());
+        newscan.setPushedConditions(pushed);
+        return newscan;
+    }
+}
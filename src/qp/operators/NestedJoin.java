@@ -7,6 +7,7 @@ import qp.utils.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.lang.*;
 
 public class NestedJoin extends Join {
@@ -18,12 +19,12 @@ public class NestedJoin extends Join {
 
     String rfname;    // The file name where the right table is materialize
 
-    static int filenum = 0;   // To get unique filenum for this operation
+    static final AtomicInteger filenum = new AtomicInteger();   // To get unique filenum for this operation
 
     Batch outbatch;   // Output buffer
     Batch leftbatch;  // Buffer for left input stream
     Batch rightbatch;  // Buffer for right input stream
-    ObjectInputStream in; // File pointer to the right hand materialized file
+    PageReader in;  // File pointer to the right hand materialized file
 
     int lcurs;    // Cursor for left side buffer
     int rcurs;    // Cursor for right side buffer
@@ -68,16 +69,15 @@ public class NestedJoin extends Join {
             return false;
         }
 
-        filenum++;
-        rfname = "NJtemp-" + String.valueOf(filenum);
+        rfname = "NJtemp-" + String.valueOf(filenum.incrementAndGet());
         try {
-            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(rfname));
+            PageWriter out = new PageWriter(rfname, right.getSchema());
             while ((rightpage = right.next()) != null) {
-                out.writeObject(rightpage);
+                out.add(rightpage);
             }
             out.close();
         } catch (IOException io) {
-            System.out.println("NestedJoin: writing the temporary file error");
+            System.err.println("NestedJoin: writing the temporary file error");
             return false;
         }
         if (!right.close())
@@ -115,11 +115,10 @@ public class NestedJoin extends Join {
                 }
                 /* Whenever a new left page came, we have to start the scanning of right table */
                 try {
-                    in = new ObjectInputStream(new FileInputStream(rfname));
+                    in = new PageReader(rfname, right.getSchema());
                     eosr = false;
                 } catch (IOException io) {
-                    System.err.println("NestedJoin:error in reading the file");
-                    System.exit(1);
+                    throw new UncheckedIOException("NestedJoin:error in reading the file", io);
                 }
 
             }
@@ -128,7 +127,7 @@ public class NestedJoin extends Join {
 
                 try {
                     if (rcurs == 0 && lcurs == 0) {
-                        rightbatch = (Batch) in.readObject();
+                        rightbatch = in.readBatch(Batch.getPageSize() / right.getSchema().getTupleSize());
                     }
 
                     for (i = lcurs; i < leftbatch.size(); i++) {
@@ -164,15 +163,11 @@ public class NestedJoin extends Join {
                     try {
                         in.close();
                     } catch (IOException io) {
-                        System.out.println("NestedJoin: Error in temporary file reading");
+                        System.err.println("NestedJoin: Error in temporary file reading");
                     }
                     eosr = true;
-                } catch (ClassNotFoundException c) {
-                    System.out.println("NestedJoin: Some error in deserialization ");
-                    System.exit(1);
                 } catch (IOException io) {
-                    System.out.println("NestedJoin: temporary file reading error");
-                    System.exit(1);
+                    throw new UncheckedIOException("NestedJoin: temporary file reading error", io);
                 }
             }
         }
@@ -182,6 +177,7 @@ public class NestedJoin extends Join {
     public boolean close() {
         File f = new File(rfname);
         f.delete();
+        releaseBuffers();
         return true;
     }
 }
\ No newline at end of file
@@ -9,4 +9,5 @@ public class OpType {
     public static final int JOIN = 3;
     public static final int SORT = 4;
     public static final int ORDERBY = 5;
+    public static final int DISTINCT = 6;
 }
@@ -36,10 +36,23 @@ public class Operator {
     }
 
     public Batch next() {
-        System.out.println("Operator:  ");
+        System.err.println("Operator:  ");
         return null;
     }
 
+    /**
+     * Column-oriented variant of next(). By default the batch returned by next() is converted,
+     * operators that can produce columns directly override it. An operator is consumed either
+     * with next() or with nextColumns(), never both.
+     **/
+    public ColumnBatch nextColumns() {
+        Batch batch = next();
+        if (batch == null) {
+            return null;
+        }
+        return ColumnBatch.fromBatch(batch, schema);
+    }
+
     public boolean close() {
         return true;
     }
@@ -2,9 +2,8 @@ package qp.operators;
 
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.io.UncheckedIOException;
 import java.util.Vector;
 
 import qp.utils.*;
@@ -17,10 +16,11 @@ public class OrderBy extends Operator{
     
 	private int batchSize;  // Number of tuples in outBatch
     private int numBuff;  // Number of buffers available for the sorting operation
+    private BufferBudget.Grant grant; // Buffers of the operator in the budget of the query, null if not allocated
     private Batch outBatch; // Output buffer
     
     private String fName; // Name of the file that will contain the sorted tuples from the base operator
-    private ObjectInputStream in; // Sorted base file being scanned
+    private PageReader in; // Sorted base file being scanned
     
     private boolean eosb; /* Represents whether or not we reached the end of the base file, which will contain  all tuples
                              from the base but sorted according to the attributes in attrSet */
@@ -40,6 +40,23 @@ public class OrderBy extends Operator{
     public int getNumBuff() {
         return numBuff;
     }
+
+    public void setGrant(BufferBudget.Grant grant) {
+        this.grant = grant;
+    }
+
+    public BufferBudget.Grant getGrant() {
+        return grant;
+    }
+
+    /**
+     * Gives the buffers of the operator back to the query, once they are no longer used
+     */
+    void releaseBuffers() {
+        if (grant != null) {
+            grant.release();
+        }
+    }
     
     public void setBase(Operator base){
     	this.base = base;
@@ -73,14 +90,16 @@ public class OrderBy extends Operator{
 		
 		// The base is sorted according to the attributes in attrSet for this orderby operation
 		Sorter sorter = new Sorter(base, numBuff, batchSize, (t1,t2) -> Tuple.compareTuplesWith(t1, t2, attrIndices));
+		sorter.setGrant(grant);
 		if(sorter.sortedFile()) {
+			releaseBuffers(); // the sorted file is read one page at a time
 			try {
 				fName = sorter.getSortedName();
-				in = new ObjectInputStream(new FileInputStream(fName));
+				in = new PageReader(fName, base.getSchema());
 				eosb = false;
 				return true;
 			} catch (IOException e) {
-				System.out.print("OrderBy: file opening error");
+				System.err.print("OrderBy: file opening error");
 				return false;
 			}
 		} else {
@@ -100,34 +119,42 @@ public class OrderBy extends Operator{
 	    // read and return a batch of tuples from the sorted base
 		outBatch = new Batch(batchSize);
 		try {
-			outBatch = (Batch) in.readObject();
+			outBatch = in.readBatch(batchSize);
 		} catch (EOFException e) {
 	        try {
 	            in.close();
 	        } catch (IOException io) {
-	            System.out.println("OrderBy: file closing error");
+	            System.err.println("OrderBy: file closing error");
 	        }
 	        eosb = true;
-	    } catch (ClassNotFoundException c) {
-	        System.out.println("OrderBy: deserialization error");
-	        System.exit(1);
 	    } catch (IOException io) {
-	        System.out.println("OrderBy: file reading error");
-	        System.exit(1);
+	        throw new UncheckedIOException("OrderBy: file reading error", io);
 	    }
 	
 		return outBatch;
     }
 
     public boolean close() {
+    	releaseBuffers();
     	try {
 			in.close();
 			File f = new File(fName);
     	    f.delete();
 		    return true;
 		} catch (IOException e) {
-			System.out.println("OrderBy: file closing error");
+			System.err.println("OrderBy: file closing error");
 			return false;
 		}
     }
+
+    public Object clone() {
+    	Operator newbase = (Operator) base.clone();
+    	Vector newattr = new Vector();
+    	for (int i = 0; i < attrSet.size(); i++)
+    		newattr.add((Attribute) ((Attribute) attrSet.elementAt(i)).clone());
+    	OrderBy newob = new OrderBy(newbase, newattr, optype);
+    	newob.setSchema(newbase.getSchema());
+    	newob.setNumBuff(numBuff);
+    	return newob;
+    }
 }
@@ -0,0 +1,266 @@
+/**
+ * Selection condition bound to a schema: the column index, its type and the constant are
+ * resolved once, so that evaluating the condition does not look anything up per tuple.
+ **/
+
+package qp.operators;
+
+import qp.utils.*;
+
+import java.sql.Time;
+import java.util.BitSet;
+
+public abstract class Predicate {
+
+    final Condition con;
+    final int index;        // Index of the attribute in the schema
+    final int exprtype;     // Comparison type of the condition
+
+    Predicate(Condition con, int index) {
+        this.con = con;
+        this.index = index;
+        this.exprtype = con.getExprType();
+    }
+
+    /**
+     * @return the predicate evaluating the select condition on tuples of the given schema
+     */
+    public static Predicate bind(Condition con, Schema schema) {
+        Attribute attr = con.getLhs();
+        int index = schema.indexOf(attr);
+        int datatype = schema.typeOf(attr);
+        String checkValue = (String) con.getRhs();
+
+        if (datatype == Attribute.INT) {
+            return new LongRange(con, index, Integer.parseInt(checkValue), false);
+        } else if (datatype == Attribute.TIME) {
+            return new LongRange(con, index, Time.valueOf(checkValue).getTime(), true);
+        } else if (datatype == Attribute.REAL) {
+            return new FloatRange(con, index, Float.parseFloat(checkValue));
+        } else {
+            return new StringCompare(con, index, checkValue);
+        }
+    }
+
+    public Condition getCondition() {
+        return con;
+    }
+
+    /**
+     * @return true if the tuple satisfies the condition
+     */
+    public abstract boolean eval(Tuple t);
+
+    /**
+     * Keeps in rows[0..count) the rows of the batch that satisfy the condition, in the same order
+     * @return the number of rows kept
+     */
+    public abstract int filter(ColumnBatch cols, int[] rows, int count);
+
+    /**
+     * Clears in sel the bits of the tuples of the batch that do not satisfy the condition
+     */
+    public void filter(Batch batch, BitSet sel) {
+        for (int i = sel.nextSetBit(0); i >= 0; i = sel.nextSetBit(i + 1)) {
+            if (!eval(batch.elementAt(i))) {
+                sel.clear(i);
+            }
+        }
+    }
+
+    /**
+     * @return true if a comparison result (as returned by compareTo) satisfies the comparison type
+     */
+    static boolean holds(int flag, int exprtype) {
+        switch (exprtype) {
+            case Condition.LESSTHAN:
+                return flag < 0;
+            case Condition.GREATERTHAN:
+                return flag > 0;
+            case Condition.LTOE:
+                return flag <= 0;
+            case Condition.GTOE:
+                return flag >= 0;
+            case Condition.EQUAL:
+                return flag == 0;
+            case Condition.NOTEQUAL:
+                return flag != 0;
+            default:
+                System.err.println("Predicate: Incorrect condition operator");
+                return false;
+        }
+    }
+
+    /**
+     * INT and TIME conditions, compiled into an inclusive range [lo, hi] that the value has to be in
+     * (or out of, for NOTEQUAL)
+     */
+    static final class LongRange extends Predicate {
+        final boolean time;     // TIME column, values are stored as Long
+        final long lo;
+        final long hi;
+        final boolean negate;
+
+        LongRange(Condition con, int index, long value, boolean time) {
+            super(con, index);
+            this.time = time;
+            long min = time ? Long.MIN_VALUE : Integer.MIN_VALUE;
+            long max = time ? Long.MAX_VALUE : Integer.MAX_VALUE;
+            long l = min;
+            long h = max;
+            switch (exprtype) {
+                case Condition.LESSTHAN:
+                    if (value == min) {
+                        l = 1;
+                        h = 0;
+                    } else {
+                        h = value - 1;
+                    }
+                    break;
+                case Condition.GREATERTHAN:
+                    if (value == max) {
+                        l = 1;
+                        h = 0;
+                    } else {
+                        l = value + 1;
+                    }
+                    break;
+                case Condition.LTOE:
+                    h = value;
+                    break;
+                case Condition.GTOE:
+                    l = value;
+                    break;
+                case Condition.EQUAL:
+                case Condition.NOTEQUAL:
+                    l = value;
+                    h = value;
+                    break;
+                default:
+                    System.err.println("Predicate: Incorrect condition operator");
+                    l = 1;
+                    h = 0;
+                    break;
+            }
+            lo = l;
+            hi = h;
+            negate = exprtype == Condition.NOTEQUAL;
+        }
+
+        public boolean eval(Tuple t) {
+            long v = time ? (Long) t.dataAt(index) : (Integer) t.dataAt(index);
+            return (v >= lo && v <= hi) != negate;
+        }
+
+        public int filter(ColumnBatch cols, int[] rows, int count) {
+            int kept = 0;
+            if (time) {
+                long[] col = cols.longColumn(index);
+                for (int i = 0; i < count; i++) {
+                    int r = rows[i];
+                    if ((col[r] >= lo && col[r] <= hi) != negate)
+                        rows[kept++] = r;
+                }
+            } else {
+                int[] col = cols.intColumn(index);
+                for (int i = 0; i < count; i++) {
+                    int r = rows[i];
+                    if ((col[r] >= lo && col[r] <= hi) != negate)
+                        rows[kept++] = r;
+                }
+            }
+            return kept;
+        }
+    }
+
+    /**
+     * REAL conditions, compiled into an inclusive range like LongRange. Strict bounds use the
+     * adjacent float value, NaN is in no range.
+     */
+    static final class FloatRange extends Predicate {
+        final float lo;
+        final float hi;
+        final boolean negate;
+
+        FloatRange(Condition con, int index, float value) {
+            super(con, index);
+            float l = Float.NEGATIVE_INFINITY;
+            float h = Float.POSITIVE_INFINITY;
+            switch (exprtype) {
+                case Condition.LESSTHAN:
+                    h = Math.nextDown(value);
+                    break;
+                case Condition.GREATERTHAN:
+                    l = Math.nextUp(value);
+                    break;
+                case Condition.LTOE:
+                    h = value;
+                    break;
+                case Condition.GTOE:
+                    l = value;
+                    break;
+                case Condition.EQUAL:
+                case Condition.NOTEQUAL:
+                    l = value;
+                    h = value;
+                    break;
+                default:
+                    System.err.println("Predicate: Incorrect condition operator");
+                    l = Float.NaN;
+                    break;
+            }
+            lo = l;
+            hi = h;
+            negate = exprtype == Condition.NOTEQUAL;
+        }
+
+        public boolean eval(Tuple t) {
+            float v = (Float) t.dataAt(index);
+            return (v >= lo && v <= hi) != negate;
+        }
+
+        public int filter(ColumnBatch cols, int[] rows, int count) {
+            float[] col = cols.floatColumn(index);
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int r = rows[i];
+                if ((col[r] >= lo && col[r] <= hi) != negate)
+                    rows[kept++] = r;
+            }
+            return kept;
+        }
+    }
+
+    /**
+     * STRING conditions. On column batches the condition is evaluated once per distinct
+     * string of the batch dictionary, and the rows are then filtered on their codes.
+     */
+    static final class StringCompare extends Predicate {
+        final String value;
+
+        StringCompare(Condition con, int index, String value) {
+            super(con, index);
+            this.value = value;
+        }
+
+        public boolean eval(Tuple t) {
+            return holds(((String) t.dataAt(index)).compareTo(value), exprtype);
+        }
+
+        public int filter(ColumnBatch cols, int[] rows, int count) {
+            ColumnBatch.Dictionary dict = cols.getDictionary(index);
+            boolean[] match = new boolean[dict.size()];
+            for (int code = 0; code < match.length; code++) {
+                match[code] = holds(dict.valueOf(code).compareTo(value), exprtype);
+            }
+            int[] codes = cols.intColumn(index);
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int r = rows[i];
+                if (match[codes[r]])
+                    rows[kept++] = r;
+            }
+            return kept;
+        }
+    }
+}
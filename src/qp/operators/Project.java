@@ -114,6 +114,17 @@ public class Project extends Operator{
     }
 
 
+    /** Read next batch of columns, the projected columns are shared with the base batch */
+
+    public ColumnBatch nextColumns(){
+	ColumnBatch incols = base.nextColumns();
+	if(incols == null){
+	    return null;
+	}
+	return incols.project(attrIndex, schema);
+    }
+
+
     /** Close the operator */
     public boolean close(){
 		return true;
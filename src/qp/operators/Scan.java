@@ -6,6 +6,7 @@ package qp.operators;
 import qp.utils.*;
 
 import java.io.*;
+import java.util.BitSet;
 import java.util.Vector;
 
 /** Scan operator - read data from a file */
@@ -17,10 +18,13 @@ public class Scan extends Operator {
 
     int batchsize; // Number of tuples per out batch;
 
-    ObjectInputStream in;      // Input file being scanned
+    ObjectInputStream in;      // Input file being scanned, for tables serialized with an ObjectOutputStream
+    PageReader reader;         // Input file being scanned, for tables in the PageFile format
 
     boolean eos;            // To indicate whether end of stream reached or not
 
+    Vector<Condition> pushed = new Vector<>();  // Select conditions on the table, used to skip pages with its zone map
+
     public Scan(String tabname, int type) {
         super(type);
         this.tabname = tabname;
@@ -31,6 +35,32 @@ public class Scan extends Operator {
         return tabname;
     }
 
+    /**
+     * Sets the select conditions evaluated above the scan. The tuples are still filtered by the selects,
+     * the scan only skips the pages that cannot hold matching tuples according to the zone map of the table.
+     */
+    public void setPushedConditions(Vector<Condition> conditions) {
+        pushed = conditions;
+    }
+
+    public Vector<Condition> getPushedConditions() {
+        return pushed;
+    }
+
+    /**
+     * @return the pages of the table that may hold tuples satisfying the pushed conditions
+     */
+    public BitSet candidatePages(ZoneMap zm) {
+        BitSet pages = new BitSet(zm.getNumPages());
+        pages.set(0, zm.getNumPages());
+        for (Condition cn : pushed) {
+            int index = schema.indexOf(cn.getLhs());
+            Object value = IndexScan.keyOf((String) cn.getRhs(), schema.typeOf(index));
+            pages.and(zm.pagesMatching(index, cn.getExprType(), value));
+        }
+        return pages;
+    }
+
     /** Open file prepare a stream pointer to read input file */
     public boolean open() {
         /** num of tuples per batch**/
@@ -41,7 +71,14 @@ public class Scan extends Operator {
         eos = false;
 
         try {
-            in = new ObjectInputStream(new FileInputStream(filename));
+            if (PageFile.isPageFile(filename)) {
+                reader = new PageReader(filename, schema);
+                in = null;
+                skipPages();
+            } else {
+                in = new ObjectInputStream(new FileInputStream(filename));
+                reader = null;
+            }
         } catch (Exception e) {
             System.err.println(" Error reading " + filename);
             return false;
@@ -61,6 +98,19 @@ public class Scan extends Operator {
             return null;
         }
 
+        if (reader != null) {
+            try {
+                Batch tuples = reader.readBatch(batchsize);
+                eos = !tuples.isFull();
+                return tuples;
+            } catch (EOFException EOF) {
+                eos = true;
+                return new Batch(batchsize);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Scan:Error reading " + filename, e);
+            }
+        }
+
         Batch tuples = new Batch(batchsize);
 
         while (!tuples.isFull()) {
@@ -68,8 +118,7 @@ public class Scan extends Operator {
                 Tuple data = (Tuple) in.readObject();
                 tuples.add(data);
             } catch (ClassNotFoundException cnf) {
-                System.err.println("Scan:Class not found for reading file  " + filename);
-                System.exit(1);
+                throw new IllegalStateException("Scan:Class not found for reading file  " + filename, cnf);
             } catch (EOFException EOF) {
                 /** At this point incomplete page is sent and at next call it considered
                  ** as end of file
@@ -77,16 +126,42 @@ public class Scan extends Operator {
                 eos = true;
                 return tuples;
             } catch (IOException e) {
-                System.err.println("Scan:Error reading " + filename);
-                System.exit(1);
+                throw new UncheckedIOException("Scan:Error reading " + filename, e);
             }
         }
         return tuples;
     }
 
+    /**
+     *  Next operator - decode the tuples of the file straight into columns
+     **/
+    public ColumnBatch nextColumns() {
+        if (reader == null) {
+            return super.nextColumns();
+        }
+        if (eos) {
+            close();
+            return null;
+        }
+        try {
+            ColumnBatch columns = reader.readColumns(batchsize);
+            eos = !columns.isFull();
+            return columns;
+        } catch (EOFException EOF) {
+            close();
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Scan:Error reading " + filename, e);
+        }
+    }
+
     public boolean close() {
         try {
-            in.close();
+            if (reader != null) {
+                reader.close();
+            } else {
+                in.close();
+            }
         } catch (IOException e) {
             System.err.println("Scan: Error closing " + filename);
             return false;
@@ -98,6 +173,21 @@ public class Scan extends Operator {
         String newtab = tabname;
         Scan newscan = new Scan(newtab, optype);
         newscan.setSchema((Schema) schema.clone());
+        newscan.setPushedConditions(pushed);
         return newscan;
     }
+
+    /**
+     * Restricts the reader to the candidate pages of the pushed conditions, if the table has an up to date zone map
+     */
+    void skipPages() {
+        if (pushed.isEmpty()) {
+            return;
+        }
+        ZoneMap zm = ZoneMap.read(tabname);
+        if (zm != null && zm.isCurrent(tabname + ".tbl")
+                && zm.getNumPages() == reader.getNumPages() && zm.getNumTuples() == reader.getNumTuples()) {
+            reader.setPageFilter(candidatePages(zm));
+        }
+    }
 }
@@ -2,19 +2,22 @@ package qp.operators;
 
 import qp.utils.*;
 
-import java.sql.Time;
+import java.util.BitSet;
 import java.util.Vector;
 
 public class Select extends Operator {
     Operator base;  // base operator
     Condition con; //select condition
+    Vector<Condition> fused = new Vector<>();  // conditions of the selects merged into this one by fuse()
     int batchsize;  // number of tuples per outbatch
 
     /* The following fields are required during execution of the select operator */
     boolean eos;  // Indiacate whether end of stream is reached or not
     Batch inbatch;   // This is the current input buffer
+    BitSet selected; // Tuples of the input buffer satisfying all the conditions
     Batch outbatch;  // This is the current output buffer
     int start;       // Cursor position in the input buffer
+    Predicate[] predicates;  // The conditions bound to the schema, set in open()
 
     public Select(Operator base, Condition con, int type) {
         super(type);
@@ -38,6 +41,25 @@ public class Select extends Operator {
         return con;
     }
 
+    /**
+     * @return the condition of this select, followed by the conditions of the fused selects
+     */
+    public Vector<Condition> getConditions() {
+        Vector<Condition> conditions = new Vector<>();
+        conditions.add(con);
+        conditions.addAll(fused);
+        return conditions;
+    }
+
+    /**
+     * Merges the select below this one into it, so that all the conditions are checked in a single pass.
+     * The schema of a select is the one of its base, so the result is unchanged.
+     */
+    public void fuse(Select below) {
+        fused.addAll(below.getConditions());
+        base = below.getBase();
+    }
+
     public boolean open() {
         eos = false;     // Since the stream is just opened
         start = 0;   // set the cursor to starting position in input buffer
@@ -46,6 +68,13 @@ public class Select extends Operator {
         int tuplesize = schema.getTupleSize();
         batchsize = Batch.getPageSize() / tuplesize;
 
+        /* the conditions are bound once, instead of looking up the attribute for every tuple */
+        Vector<Condition> conditions = getConditions();
+        predicates = new Predicate[conditions.size()];
+        for (int i = 0; i < predicates.length; i++) {
+            predicates[i] = Predicate.bind(conditions.get(i), schema);
+        }
+
         return (base.open());
     }
 
@@ -74,15 +103,19 @@ public class Select extends Operator {
                     eos = true;
                     return outbatch;
                 }
+                /* The conditions are checked on the whole page at once */
+                selected = new BitSet(inbatch.size());
+                selected.set(0, inbatch.size());
+                for (Predicate p : predicates) {
+                    p.filter(inbatch, selected);
+                }
             }
 
             /* Continue this for loop until this page is fully observed or the output buffer is full */
             for (i = start; i < inbatch.size() && (!outbatch.isFull()); i++) {
-                Tuple present = inbatch.elementAt(i);
-                /* If the condition is satisfied then this tuple is added tot he output buffer */
-                if (checkCondition(present))
-                    //if(present.checkCondn(con))
-                    outbatch.add(present);
+                /* If the conditions are satisfied then this tuple is added tot he output buffer */
+                if (selected.get(i))
+                    outbatch.add(inbatch.elementAt(i));
             }
 
             /* Modify the cursor to the position required when the base operator is called next time; */
@@ -94,6 +127,33 @@ public class Select extends Operator {
         return outbatch;
     }
 
+    /**
+     * returns the next batch of columns of the base operator, restricted to the rows satisfying the conditions.
+     * The rows are not copied, only the selection vector of the batch is narrowed.
+     **/
+    public ColumnBatch nextColumns() {
+        if (eos) {
+            close();
+            return null;
+        }
+        ColumnBatch incols = base.nextColumns();
+        if (incols == null) {
+            eos = true;
+            close();
+            return null;
+        }
+        int count = incols.size();
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = incols.rowAt(i);
+        }
+        for (Predicate p : predicates) {
+            count = p.filter(incols, rows, count);
+        }
+        incols.select(rows, count);
+        return incols;
+    }
+
 
     public boolean close() {
         /**
@@ -106,106 +166,23 @@ public class Select extends Operator {
     }
 
     /**
-     * check whether the selection condition is satisfied for the present tuple
+     * check whether the selection conditions are satisfied for the present tuple
      **/
     protected boolean checkCondition(Tuple tuple) {
-        Attribute attr = con.getLhs();
-        int index = schema.indexOf(attr);
-        int datatype = schema.typeOf(attr);
-        Object srcValue = tuple.dataAt(index);
-        String checkValue = (String) con.getRhs();
-        int exprtype = con.getExprType();
-
-        if (datatype == Attribute.INT) {
-            int srcVal = ((Integer) srcValue).intValue();
-            int checkVal = Integer.parseInt(checkValue);
-            if (exprtype == Condition.LESSTHAN) {
-                if (srcVal < checkVal)
-                    return true;
-            } else if (exprtype == Condition.GREATERTHAN) {
-                if (srcVal > checkVal)
-                    return true;
-            } else if (exprtype == Condition.LTOE) {
-                if (srcVal <= checkVal)
-                    return true;
-            } else if (exprtype == Condition.GTOE) {
-                if (srcVal >= checkVal)
-                    return true;
-            } else if (exprtype == Condition.EQUAL) {
-                if (srcVal == checkVal)
-                    return true;
-            } else if (exprtype == Condition.NOTEQUAL) {
-                if (srcVal != checkVal)
-                    return true;
-            } else {
-                System.out.println("Select:Incorrect condition operator");
-            }
-        } else if (datatype == Attribute.STRING) {
-            String srcVal = (String) srcValue;
-            int flag = srcVal.compareTo(checkValue);
-
-            if (exprtype == Condition.LESSTHAN) {
-                if (flag < 0) return true;
-
-            } else if (exprtype == Condition.GREATERTHAN) {
-                if (flag > 0) return true;
-            } else if (exprtype == Condition.LTOE) {
-                if (flag <= 0) return true;
-            } else if (exprtype == Condition.GTOE) {
-                if (flag >= 0) return true;
-            } else if (exprtype == Condition.EQUAL) {
-                if (flag == 0) return true;
-            } else if (exprtype == Condition.NOTEQUAL) {
-                if (flag != 0) return true;
-            } else {
-                System.out.println("Select: Incorrect condition operator");
-            }
-
-        } else if (datatype == Attribute.REAL) {
-            float srcVal = ((Float) srcValue).floatValue();
-            float checkVal = Float.parseFloat(checkValue);
-            if (exprtype == Condition.LESSTHAN) {
-                if (srcVal < checkVal) return true;
-            } else if (exprtype == Condition.GREATERTHAN) {
-                if (srcVal > checkVal) return true;
-            } else if (exprtype == Condition.LTOE) {
-                if (srcVal <= checkVal) return true;
-            } else if (exprtype == Condition.GTOE) {
-                if (srcVal >= checkVal) return true;
-            } else if (exprtype == Condition.EQUAL) {
-                if (srcVal == checkVal) return true;
-            } else if (exprtype == Condition.NOTEQUAL) {
-                if (srcVal != checkVal) return true;
-            } else {
-                System.out.println("Select:Incorrect condition operator");
-            }
-        } else if (datatype == Attribute.TIME) {
-        	float srcVal = ((Long) srcValue).longValue();
-            float checkVal = Time.valueOf(checkValue).getTime();
-            
-            if (exprtype == Condition.LESSTHAN) {
-                if (srcVal < checkVal) return true;
-            } else if (exprtype == Condition.GREATERTHAN) {
-                if (srcVal > checkVal) return true;
-            } else if (exprtype == Condition.LTOE) {
-                if (srcVal <= checkVal) return true;
-            } else if (exprtype == Condition.GTOE) {
-                if (srcVal >= checkVal) return true;
-            } else if (exprtype == Condition.EQUAL) {
-                if (srcVal == checkVal) return true;
-            } else if (exprtype == Condition.NOTEQUAL) {
-                if (srcVal != checkVal) return true;
-            } else {
-                System.out.println("Select:Incorrect condition operator");
-            }
+        for (Predicate p : predicates) {
+            if (!p.eval(tuple))
+                return false;
         }
-        return false;
+        return true;
     }
 
     public Object clone() {
         Operator newbase = (Operator) base.clone();
         Condition newcon = (Condition) con.clone();
         Select newsel = new Select(newbase, newcon, optype);
+        for (Condition cn : fused) {
+            newsel.fused.add((Condition) cn.clone());
+        }
         newsel.setSchema(newbase.getSchema());
         return newsel;
     }
@@ -0,0 +1,102 @@
+/**
+ * Bloom-filter semi-join reduction of a join input. On the build side, the values of the join
+ * attribute of the tuples going through are added to the filter. On the probe side, the tuples whose
+ * value is certainly not in the filter are dropped, as they cannot join with a tuple of the build side.
+ **/
+
+package qp.operators;
+
+import qp.utils.Batch;
+import qp.utils.BloomFilter;
+import qp.utils.Tuple;
+
+public class SemiJoinFilter extends Operator {
+
+    private final Operator base;        // Join input
+    private final int index;            // Index of the join attribute in the schema of base
+    private final BloomFilter filter;
+    private final boolean build;        // Whether values are added to the filter or checked against it
+
+    private int batchsize;              // Number of tuples per output batch
+    private long numDropped;            // Number of tuples dropped by the filter
+    private Batch inbatch;              // Current input page, on the probe side
+    private int start;                  // Cursor position in the input page
+    private boolean eos;                // Whether the end of the input is reached
+
+    private SemiJoinFilter(Operator base, int index, BloomFilter filter, boolean build) {
+        super(base.getOpType());
+        this.base = base;
+        this.index = index;
+        this.filter = filter;
+        this.build = build;
+        schema = base.getSchema();
+    }
+
+    /**
+     * @return the input, adding the values of its join attribute to the filter as its tuples are read
+     */
+    public static SemiJoinFilter building(Operator base, int index, BloomFilter filter) {
+        return new SemiJoinFilter(base, index, filter, true);
+    }
+
+    /**
+     * @return the input, without the tuples whose join attribute is not in the filter
+     */
+    public static SemiJoinFilter probing(Operator base, int index, BloomFilter filter) {
+        return new SemiJoinFilter(base, index, filter, false);
+    }
+
+    public long getNumDropped() {
+        return numDropped;
+    }
+
+    public boolean open() {
+        batchsize = Batch.getPageSize() / schema.getTupleSize();
+        numDropped = 0;
+        inbatch = null;
+        start = 0;
+        eos = false;
+        return base.open();
+    }
+
+    /**
+     * On the probe side, the remaining tuples are packed into full batches
+     */
+    public Batch next() {
+        if (build) {
+            Batch batch = base.next();
+            if (batch != null) {
+                for (int i = 0; i < batch.size(); i++) {
+                    filter.add(batch.elementAt(i).dataAt(index));
+                }
+            }
+            return batch;
+        }
+
+        if (eos) {
+            return null;
+        }
+        Batch outbatch = new Batch(batchsize);
+        while (!outbatch.isFull()) {
+            if (inbatch == null || start == inbatch.size()) {
+                inbatch = base.next();
+                start = 0;
+                if (inbatch == null) {
+                    eos = true;
+                    break;
+                }
+                continue;
+            }
+            Tuple t = inbatch.elementAt(start++);
+            if (filter.mightContain(t.dataAt(index)))
+                outbatch.add(t);
+            else
+                numDropped++;
+        }
+        return outbatch.isEmpty() ? null : outbatch;
+    }
+
+    public boolean close() {
+        return base.close();
+    }
+}
@@ -5,11 +5,12 @@ import java.io.EOFException;
 
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.io.UncheckedIOException;
 import qp.utils.Attribute;
 import qp.utils.Batch;
+import qp.utils.BloomFilter;
+import qp.utils.PageReader;
 import qp.utils.Sorter;
 import qp.utils.Tuple;
 
@@ -29,8 +30,8 @@ public final class SortMerge extends Join {
     private String lfname;					// The file name where the left sorted table is materialized
     private String rfname;					// The file name where the right sorted table is materialized
     
-    private ObjectInputStream sortedLeft; 	// Sorted materialized left file
-    private ObjectInputStream sortedRight;	// Sorted materialized right file
+    private PageReader sortedLeft; 			// Sorted materialized left file
+    private PageReader sortedRight;			// Sorted materialized right file
     
     private boolean eosl;  					// Whether end of stream (left table) is reached 
     private boolean eosr;  					// Whether end of stream (right table) is reached
@@ -56,6 +57,7 @@ public final class SortMerge extends Join {
         schema = jn.getSchema();
         jointype = jn.getJoinType();
         numBuff = jn.getNumBuff();
+        filterBits = jn.getFilterBits();
     }
     
     /**
@@ -90,22 +92,35 @@ public final class SortMerge extends Join {
         eosl = false;
         eosr = false;
         endOfJoin = false;
-        Sorter lSorter = new Sorter(left, numBuff, lbatchsize, (t1,t2) -> Tuple.compareTuples(t1,t2,leftindex));
+        /* the left input is sorted first, collecting its join values, and the right tuples that
+           cannot join are dropped before the right input is sorted. The filter takes its buffers
+           from the sorts. */
+        Operator sortedLeftInput = left;
+        Operator sortedRightInput = right;
+        if (filterBits > 0) {
+            BloomFilter filter = new BloomFilter(filterBits);
+            sortedLeftInput = SemiJoinFilter.building(left, leftindex, filter);
+            sortedRightInput = SemiJoinFilter.probing(right, rightindex, filter);
+        }
+        int sortBuff = Math.max(3, numBuff - filterPages());
+        Sorter lSorter = new Sorter(sortedLeftInput, sortBuff, lbatchsize, (t1,t2) -> Tuple.compareTuples(t1,t2,leftindex));
+        lSorter.setGrant(grant);
 		if (lSorter.sortedFile()) {
 
-			Sorter rSorter = new Sorter(right, numBuff, rbatchsize, (t1,t2) -> Tuple.compareTuples(t1,t2,rightindex));
+			Sorter rSorter = new Sorter(sortedRightInput, sortBuff, rbatchsize, (t1,t2) -> Tuple.compareTuples(t1,t2,rightindex));
+			rSorter.setGrant(grant);
 			if (rSorter.sortedFile()) {
 
 				try {
 					lfname = lSorter.getSortedName();
-					sortedLeft = new ObjectInputStream(new FileInputStream(lfname));
+					sortedLeft = new PageReader(lfname, left.getSchema());
 
 					rfname = rSorter.getSortedName();
-					sortedRight = new ObjectInputStream(new FileInputStream(rfname));
+					sortedRight = new PageReader(rfname, right.getSchema());
 
 					return true;
 				} catch(IOException io) {
-					System.out.println("SortMerge: file opening error");
+					System.err.println("SortMerge: file opening error");
 					return false;
 				}
 
@@ -140,6 +155,11 @@ public final class SortMerge extends Join {
         	
 	        while (!outBatch.isFull()) {
 	        	do {
+	        		/* an input is exhausted, and no left tuple needs to go back in the right file */
+	        		if (leftBatch.isEmpty() || rightBlock.isEmpty()) {
+	        			endOfJoin = true;
+	        			return outBatch.isEmpty() ? null : outBatch;
+	        		}
 	        		lefttuple = leftBatch.elementAt(lcurs);
 	        		righttuple = rightBlock.elementAt(rcurs);
                     compareTuples = Tuple.compareTuples(lefttuple, righttuple, leftindex, rightindex);
@@ -176,11 +196,7 @@ public final class SortMerge extends Join {
             	} 
 	        }
         } catch (IOException io) {
-            System.out.println("SortMerge: file operation error");
-            System.exit(1);
-        } catch (ClassNotFoundException c) {
-            System.out.println("SortMerge: deserialization error");
-            System.exit(1);
+            throw new UncheckedIOException("SortMerge: file operation error", io);
         }
 
         return outBatch;
@@ -194,6 +210,7 @@ public final class SortMerge extends Join {
 	    f.delete();
 		f = new File(rfname);
 	    f.delete();
+	    releaseBuffers();
 
 	    return true;
     }
@@ -214,7 +231,7 @@ public final class SortMerge extends Join {
      * @param lefttuple, to check if going back in the right table is necessary
      * @return true if lcurs can't be updated
      */
-    private boolean updatelcurs(Tuple lefttuple) throws IOException, ClassNotFoundException {
+    private boolean updatelcurs(Tuple lefttuple) throws IOException {
     	lasttuple = lefttuple;
     	if (lcurs < (leftBatch.size()-1)) {
     		lcurs += 1;
@@ -237,10 +254,10 @@ public final class SortMerge extends Join {
      * Loads next left page into memory
      * @return true if the end of the left file was reached
      */
-    private boolean nextLeftBatch() throws IOException, ClassNotFoundException {
+    private boolean nextLeftBatch() throws IOException {
     	try {
     		lcurs = 0;
-    		leftBatch = (Batch) sortedLeft.readObject();
+    		leftBatch = sortedLeft.readBatch(lbatchsize);
     	} catch (EOFException eof) {
     		sortedLeft.close();
     		eosl = true;
@@ -253,7 +270,7 @@ public final class SortMerge extends Join {
      * updates rcurs
      * @return true if rcurs can't be updated
      */
-    private boolean updatercurs() throws IOException, ClassNotFoundException {
+    private boolean updatercurs() throws IOException {
     	if (rcurs < (rightBlock.size()-1)) {
     		rcurs += 1;
     		return false;
@@ -267,13 +284,13 @@ public final class SortMerge extends Join {
      * Loads the next right block into memory
      * @return true if no more tuples were read into memory
      */
-    private boolean nextRightBlock() throws IOException, ClassNotFoundException {
+    private boolean nextRightBlock() throws IOException {
     	rightBlock = new Batch((numBuff-2)*rbatchsize);
     	rcurs = 0;
     	try {
     		numBlocksRead += 1;
 	    	while(!rightBlock.isFull()) {
-	    		Batch nextBatch = (Batch) sortedRight.readObject();
+	    		Batch nextBatch = sortedRight.readBatch(rbatchsize);
 	    		for(Tuple nextTuple: nextBatch.getTuples()) {
                 	rightBlock.add(nextTuple);
                 }
@@ -288,11 +305,11 @@ public final class SortMerge extends Join {
     /**
      * Set rcurs to joinedTupleIndex, and fetch the corresponding block
      */
-    private void seekToTuple() throws IOException, ClassNotFoundException {
+    private void seekToTuple() throws IOException {
     	if (numBlocksRead != joinedBlockIndex) {
     		eosr = false;
 			sortedRight.close();
-			sortedRight = new ObjectInputStream(new FileInputStream(rfname));
+			sortedRight = new PageReader(rfname, right.getSchema());
 			numBlocksRead = 0;
 			for (int blockIndex = 1; blockIndex <= joinedBlockIndex; blockIndex++) {
 				nextRightBlock();
@@ -0,0 +1,159 @@
+/**
+ * ORDER BY followed by LIMIT k: only the k smallest tuples of the base are needed, so they are
+ * kept in a bounded max-heap while the base is scanned once, instead of sorting the whole base.
+ * If k tuples do not fit in the buffers, the base is sorted as by OrderBy and the output stops
+ * after k tuples.
+ **/
+
+package qp.operators;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Vector;
+
+import qp.utils.*;
+
+public class TopKOrderBy extends OrderBy {
+
+    private final int limit;   // Number of tuples to return
+
+    private int batchSize;     // Number of tuples per output batch
+    private boolean inMemory;  // Whether the k tuples are kept in memory or the base is sorted
+
+    /* The following fields are used when the k tuples are kept in memory */
+    private Entry[] result;    // The k smallest tuples of the base, in sorted order
+    private int cursor;        // Position of the next tuple of result to return
+
+    /* The following fields are used when the base is sorted */
+    private int remaining;     // Number of tuples still to return
+
+    /**
+     * Tuple of the heap, with its position in the base so that equal tuples keep their order
+     */
+    private static final class Entry {
+        final Tuple tuple;
+        final long seq;
+
+        Entry(Tuple tuple, long seq) {
+            this.tuple = tuple;
+            this.seq = seq;
+        }
+    }
+
+    public TopKOrderBy(Operator base, Vector as, int limit, int type) {
+        super(base, as, type);
+        this.limit = limit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean open() {
+        int tuplesize = schema.getTupleSize();
+        batchSize = Batch.getPageSize() / tuplesize;
+
+        /* one buffer is kept for the input page, the others hold the heap */
+        inMemory = (long) limit <= (long) (getNumBuff() - 1) * batchSize;
+        if (!inMemory) {
+            remaining = limit;
+            return super.open();
+        }
+
+        Vector attrSet = getOrdAttr();
+        Schema baseSchema = getBase().getSchema();
+        int[] attrIndices = new int[attrSet.size()];
+        for (int i = 0; i < attrSet.size(); i++) {
+            attrIndices[i] = baseSchema.indexOf((Attribute) attrSet.elementAt(i));
+        }
+        Comparator<Entry> order = (e1, e2) -> {
+            int c = Tuple.compareTuplesWith(e1.tuple, e2.tuple, attrIndices);
+            return c != 0 ? c : Long.compare(e1.seq, e2.seq);
+        };
+
+        /* The root of the heap is the largest of the k tuples kept so far. A tuple comes after
+           every tuple already seen, so it replaces the root only if it is strictly smaller. */
+        PriorityQueue<Entry> heap = new PriorityQueue<>(Math.max(1, limit), order.reversed());
+        if (limit > 0) {
+            if (!getBase().open())
+                return false;
+            long seq = 0;
+            Batch inBatch;
+            while ((inBatch = getBase().next()) != null) {
+                for (int i = 0; i < inBatch.size(); i++) {
+                    Tuple t = inBatch.elementAt(i);
+                    if (heap.size() < limit) {
+                        heap.add(new Entry(t, seq));
+                    } else if (Tuple.compareTuplesWith(t, heap.peek().tuple, attrIndices) < 0) {
+                        heap.poll();
+                        heap.add(new Entry(t, seq));
+                    }
+                    seq++;
+                }
+            }
+            getBase().close();
+        }
+
+        result = heap.toArray(new Entry[0]);
+        Arrays.sort(result, order);
+        cursor = 0;
+        return true;
+    }
+
+    public Batch next() {
+        if (!inMemory) {
+            return nextSorted();
+        }
+        if (cursor >= result.length) {
+            close();
+            return null;
+        }
+        Batch outBatch = new Batch(batchSize);
+        while (!outBatch.isFull() && cursor < result.length) {
+            outBatch.add(result[cursor++].tuple);
+        }
+        return outBatch;
+    }
+
+    /**
+     * Returns the next batch of the sorted base, cut once k tuples have been returned
+     */
+    private Batch nextSorted() {
+        if (remaining == 0) {
+            close();
+            return null;
+        }
+        Batch inBatch = super.next();
+        if (inBatch == null) {
+            return null;
+        }
+        if (inBatch.size() <= remaining) {
+            remaining -= inBatch.size();
+            return inBatch;
+        }
+        Batch outBatch = new Batch(batchSize);
+        for (int i = 0; i < remaining; i++) {
+            outBatch.add(inBatch.elementAt(i));
+        }
+        remaining = 0;
+        return outBatch;
+    }
+
+    public boolean close() {
+        if (!inMemory) {
+            return super.close();
+        }
+        result = new Entry[0];
+        releaseBuffers();
+        return true;
+    }
+
+    public Object clone() {
+        OrderBy ob = (OrderBy) super.clone();
+        TopKOrderBy newtopk = new TopKOrderBy(ob.getBase(), ob.getOrdAttr(), limit, optype);
+        newtopk.setSchema(ob.getSchema());
+        newtopk.setNumBuff(getNumBuff());
+        return newtopk;
+    }
+}
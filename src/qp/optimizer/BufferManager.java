@@ -1,8 +1,24 @@
-/* simple buffer manager that distributes the buffers equally among all the join operators */
+/* Buffer manager: the optimizer costs the plans with the buffers distributed equally among all the join operators,
+   and the buffers are then allocated among the operators of the chosen plan according to their needs */
 package qp.optimizer;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import qp.operators.*;
+import qp.utils.Attribute;
+import qp.utils.Batch;
+import qp.utils.BloomFilter;
+import qp.utils.BufferBudget;
+
 public class BufferManager {
 
+    /* Minimum number of buffers of an operator: an input page, an output page and a block, a run or a partition */
+    private static final int MIN_BUFFERS = 3;
+
+    /* The Bloom filter of a block nested loops or sort-merge join takes at most 1/FILTER_SHARE of its buffers */
+    private static final int FILTER_SHARE = 4;
+
     public static int numBuffer;
     public static int numJoin;
     public static int buffPerJoin;
@@ -17,8 +33,233 @@ public class BufferManager {
     public static int getBuffersPerJoin() {
         return buffPerJoin;
     }
-    
+
     public static int getBuffers(){
     	return numBuffer;
     }
+
+    /**
+     * Allocates the buffers among the operators of the execution plan that hold pages in memory, replacing the
+     * equal shares set by makeExecPlan: the block of a block nested join, the hash table of a hash join, the runs
+     * of the sorts of a sort-merge join and of an order by, and the hash set of a distinct. The Bloom filter of a
+     * block nested loops or sort-merge join is sized here as well, out of the buffers of the join. Each operator gets
+     * MIN_BUFFERS, then the other buffers are handed out to the operator whose cost, estimated from the size of
+     * its inputs, drops the most per buffer. The buffers that make no operator cheaper are kept spare, as are
+     * the buffers of the operators that are done, for the operators still executing.
+     * @return the budget of the query, holding the spare buffers
+     */
+    public static BufferBudget allocate(Operator root) {
+        List<Consumer> consumers = new ArrayList<>();
+        collect(root, new PlanCost.Memo(), consumers);
+
+        /* with fewer buffers than the minimum of all the operators, each one still gets its minimum */
+        int minimum = Math.max(1, Math.min(MIN_BUFFERS, numBuffer));
+        int spare = numBuffer;
+        for (Consumer c : consumers) {
+            c.numBuff = minimum;
+            c.useful = c.usefulBuffers(minimum, numBuffer);
+            spare -= minimum;
+        }
+        spare = Math.max(0, spare);
+
+        /* the costs drop in steps (one merge pass less, a block less), so every size of grant is considered */
+        while (spare > 0) {
+            Consumer best = null;
+            int bestAdd = 0;
+            double bestGain = 0;
+            for (Consumer c : consumers) {
+                int current = c.cost(c.numBuff);
+                int maxAdd = Math.min(spare, c.useful - c.numBuff);
+                for (int add = 1; add <= maxAdd; add++) {
+                    double gain = (double) (current - c.cost(c.numBuff + add)) / add;
+                    if (gain > bestGain) {
+                        best = c;
+                        bestAdd = add;
+                        bestGain = gain;
+                    }
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            best.numBuff += bestAdd;
+            spare -= bestAdd;
+        }
+
+        BufferBudget budget = new BufferBudget(spare);
+        for (Consumer c : consumers) {
+            c.assign(budget.grant(c.numBuff, Math.max(c.numBuff, c.useful)));
+        }
+        return budget;
+    }
+
+    /* =============================== PRIVATE METHODS =============================== */
+
+    /**
+     * An operator of the plan holding pages in memory, with the estimated number of pages of its inputs
+     */
+    private static final class Consumer {
+        private final Operator node;
+        private final int pages;        // Left input of a join, input of a sort or of a distinct
+        private final int otherPages;   // Right input of a join, output of a distinct, tuples returned by a top-k
+        private final int filterBits;   // Bits of the Bloom filter of the join over all its build values, 0 for none
+        private int numBuff;            // Buffers allocated so far
+        private int useful;             // Buffers beyond which the cost does not drop
+
+        private Consumer(Operator node, int pages, int otherPages, int filterBits) {
+            this.node = node;
+            this.pages = pages;
+            this.otherPages = otherPages;
+            this.filterBits = filterBits;
+        }
+
+        /**
+         * @return the number of bits of the Bloom filter with numbuff buffers, capped by its share of them
+         */
+        private int filterBits(int numbuff) {
+            long maxBits = (long) (numbuff / FILTER_SHARE) * Batch.getPageSize() * 8;
+            /* below a bit per value, the filter would hardly drop anything */
+            return (maxBits * BloomFilter.BITS_PER_VALUE < filterBits) ? 0 : (int) Math.min(filterBits, maxBits);
+        }
+
+        /**
+         * @return the buffers left to the blocks or the runs of the join with numbuff buffers
+         */
+        private int joinBuffers(int numbuff) {
+            int bits = filterBits(numbuff);
+            return bits == 0 ? numbuff : numbuff - BloomFilter.numPages(bits, Batch.getPageSize());
+        }
+
+        /**
+         * @return the cost of the operator with numbuff buffers, without the cost of reading its inputs
+         */
+        private int cost(int numbuff) {
+            if (node instanceof SortMerge) {
+                int sortbuff = joinBuffers(numbuff);
+                return PlanCost.getSortCost(pages, sortbuff) + PlanCost.getSortCost(otherPages, sortbuff);
+            } else if (node instanceof HashJoin) {
+                return PlanCost.getHashJoinCost(pages, otherPages, numbuff);
+            } else if (node instanceof BlockNestedJoin) {
+                return PlanCost.getBlockNestedCost(pages, otherPages, joinBuffers(numbuff));
+            } else if (node instanceof TopKOrderBy) {
+                return (numbuff - 1 >= otherPages) ? 0 : PlanCost.getSortCost(pages, numbuff);
+            } else if (node instanceof OrderBy) {
+                return PlanCost.getSortCost(pages, numbuff);
+            } else if (node instanceof Distinct) {
+                return PlanCost.getDistinctCost(pages, otherPages, numbuff);
+            }
+            return 0;   // nested loops and index nested loops joins use a page per input
+        }
+
+        /**
+         * @return the smallest number of buffers, at most numBuffer, with which the cost is the lowest
+         */
+        private int usefulBuffers(int minimum, int numBuffer) {
+            /* the sorted runs hold at least half of the buffers, an input sorted in one run needs at most twice
+               its number of pages */
+            int cap = Math.max(minimum, Math.min(numBuffer, 2 * Math.max(pages, otherPages) + MIN_BUFFERS));
+            int lowest = cost(cap);
+            int useful = cap;
+            while (useful > minimum && cost(useful - 1) == lowest) {
+                useful--;
+            }
+            return useful;
+        }
+
+        private void assign(BufferBudget.Grant grant) {
+            if (node instanceof Join) {
+                ((Join) node).setNumBuff(numBuff);
+                ((Join) node).setGrant(grant);
+                ((Join) node).setFilterBits(filterBits(numBuff));
+            } else if (node instanceof OrderBy) {
+                ((OrderBy) node).setNumBuff(numBuff);
+                ((OrderBy) node).setGrant(grant);
+            } else if (node instanceof Distinct) {
+                ((Distinct) node).setNumBuff(numBuff);
+                ((Distinct) node).setGrant(grant);
+            }
+        }
+    }
+
+    /**
+     * Adds the operators of the plan holding pages in memory to consumers
+     */
+    private static void collect(Operator node, PlanCost.Memo memo, List<Consumer> consumers) {
+        if (node.getOpType() == OpType.JOIN) {
+            Join join = (Join) node;
+            collect(join.getLeft(), memo, consumers);
+            collect(join.getRight(), memo, consumers);
+            int filterBits = 0;
+            if (node instanceof SortMerge) {
+                filterBits = filterBits(join.getLeft(), join.getCondition().getLhs(),
+                        join.getRight(), (Attribute) join.getCondition().getRhs(), memo);
+            } else if (node instanceof BlockNestedJoin) {
+                filterBits = filterBits(join.getRight(), (Attribute) join.getCondition().getRhs(),
+                        join.getLeft(), join.getCondition().getLhs(), memo);
+            }
+            consumers.add(new Consumer(node, numPages(join.getLeft(), memo), numPages(join.getRight(), memo),
+                    filterBits));
+        } else if (node.getOpType() == OpType.SELECT) {
+            collect(((Select) node).getBase(), memo, consumers);
+        } else if (node.getOpType() == OpType.PROJECT) {
+            collect(((Project) node).getBase(), memo, consumers);
+        } else if (node.getOpType() == OpType.DISTINCT) {
+            Operator base = ((Distinct) node).getBase();
+            collect(base, memo, consumers);
+            consumers.add(new Consumer(node, numPages(base, memo), numPages(node, memo), 0));
+        } else if (node.getOpType() == OpType.ORDERBY) {
+            Operator base = ((OrderBy) node).getBase();
+            collect(base, memo, consumers);
+            int limitPages = 0;
+            if (node instanceof TopKOrderBy) {
+                limitPages = (int) Math.ceil((double) ((TopKOrderBy) node).getLimit() / tuplesPerPage(node));
+            }
+            consumers.add(new Consumer(node, numPages(base, memo), limitPages, 0));
+        }
+    }
+
+    /**
+     * @return the number of bits of a Bloom filter over the estimated distinct join values of the build input,
+     * 0 if it is not expected to drop any probe tuple: the join estimates assume that the values of the side with
+     * fewer distinct values are all on the other side, e.g. for a foreign key joined to the whole key side
+     */
+    private static int filterBits(Operator build, Attribute buildAttr, Operator probe, Attribute probeAttr,
+                                  PlanCost.Memo memo) {
+        int buildValues = numDistinct(build, buildAttr, memo);
+        int probeValues = numDistinct(probe, probeAttr, memo);
+        if (buildValues < 0 || probeValues < 0 || buildValues >= probeValues) {
+            return 0;
+        }
+        return BloomFilter.numBits(buildValues);
+    }
+
+    /**
+     * @return the estimated number of distinct values of the attribute in the output of the operator, -1 if the
+     * operator cannot be costed
+     */
+    private static int numDistinct(Operator node, Attribute attr, PlanCost.Memo memo) {
+        PlanCost pc = new PlanCost(memo);
+        pc.getCost(node);
+        PlanCost.Estimate estimate = pc.getEstimate();
+        if (estimate == null) {
+            return -1;
+        }
+        Integer numdistinct = estimate.getNumDistinct(attr);
+        int numtuples = Math.max(0, estimate.getNumTuples());
+        return (numdistinct != null) ? Math.min(numdistinct, numtuples) : numtuples;
+    }
+
+    /**
+     * @return the estimated number of pages of the output of the operator
+     */
+    private static int numPages(Operator node, PlanCost.Memo memo) {
+        PlanCost pc = new PlanCost(memo);
+        pc.getCost(node);
+        int numtuples = Math.max(0, pc.getNumTuples());
+        return (int) Math.ceil((double) numtuples / tuplesPerPage(node));
+    }
+
+    private static int tuplesPerPage(Operator node) {
+        return Math.max(1, Batch.getPageSize() / node.getSchema().getTupleSize());
+    }
 }
@@ -9,41 +9,71 @@ import qp.utils.Schema;
 import java.util.*;
 
 /**
- * Dynamic Programming optimizer that only considers left-deep trees WITHOUT cartesian products.
- * Note that if we consider CP then the #states = 2^k - 1.
+ * Dynamic Programming optimizer WITHOUT cartesian products: only the sets of relations connected by join
+ * conditions are considered. A set of relations is a bitmask, bit i standing for the i-th table of the from
+ * list, and the pairs of disjoint connected sets joined by a condition are enumerated with the DPccp
+ * algorithm of Moerkotte and Neumann, each pair exactly once and only after the best plans of both sets
+ * are known. By default only left-deep trees are built, bushy trees can be enabled.
+ * The join graph is expected to be a tree: the join of two sets has one join condition.
  */
 public class DPoptimizer {
+    /**
+     * maximum number of tables of a query, as a set of relations is a long
+     */
+    public static final int MAX_RELATIONS = 64;
+
     private SQLQuery query;
     private int numJoins;
     private boolean hasOrderBy;
 
     /**
-     * maps plans to actual operator
+     * whether the right input of a join can be a join, otherwise it is a single relation
      */
+    private boolean bushy;
+
     private Vector<Condition> joinConditions;
 
     /**
-     * contains the mapping from a set of conditions to the cost of the optimal tree which consists of the conditions in the set
+     * relation i of the sets of relations is the i-th table of the from list
      */
-    private HashMap<HashSet<Condition>, Integer> costMap = new HashMap<>();
+    private Vector<String> tables;
 
     /**
-     * contains the mapping from a set of conditions to the operator tree with minimum cost.
+     * relation of the left and of the right attribute of each join condition
      */
-    private HashMap<HashSet<Condition>, Operator> operatorMap = new HashMap<>();
+    private int[] leftRelation;
+    private int[] rightRelation;
 
     /**
-     * contains the mapping from a set of conditions to the tables it contains.
+     * neighbours[i] is the set of relations joined with relation i by a join condition
      */
-    private HashMap<HashSet<Condition>, HashSet<String>> tableMap = new HashMap<>();
+    private long[] neighbours;
 
-    private OperatorUtils util;
+    /**
+     * contains the mapping from a connected set of relations to the operator tree with minimum cost and its cost
+     */
+    private PlanTable planTable = new PlanTable();
 
-    private boolean DEBUG = false;
+    /**
+     * contains the cost and statistics of the trees in planTable, so that joining two trees only costs the new join
+     * instead of the whole trees again.
+     */
+    private PlanCost.Memo memo = new PlanCost.Memo();
+
+    private OperatorUtils util;
 
     public DPoptimizer(SQLQuery query) {
+        this(query, false);
+    }
+
+    /**
+     * @param bushy whether bushy trees are considered, otherwise only left-deep trees
+     */
+    public DPoptimizer(SQLQuery query, boolean bushy) {
         this.query = query;
+        this.bushy = bushy;
         joinConditions = (Vector<Condition>) query.getJoinList();
+        tables = (Vector<String>) query.getFromList();
         numJoins = this.query.getNumJoin();
         if (query.getOrderByList() != null && query.getOrderByList().size() > 0)
             hasOrderBy = true;
@@ -51,216 +81,229 @@ public class DPoptimizer {
         util = new OperatorUtils(this.query);
         computeSingleRelationPlan();
         if (numJoins > 0)
-            computeBaseJoinRelationPlan();
+            computeJoinGraph();
     }
 
     /**
-     * @return the logical root of the operator tree with minimum cost
+     * @return the logical root of the operator tree with minimum cost, null if the join conditions do not
+     * connect all the tables
      */
     public Operator getBestPlan() {
         if (numJoins == 0) {
-            if (hasOrderBy) {
+            if (hasOrderBy && !query.isDistinct()) {
                 util.createOrderByOp();
             }
             util.createProjectOp();
+            util.createDistinctOp();
+            /* a distinct that spills emits its partitions one after the other, so the order by is above it */
+            if (hasOrderBy && query.isDistinct()) {
+                util.createOrderByOp();
+            }
             return util.getRoot();
         }
 
-        for (int cardinality = 2; cardinality <= numJoins; cardinality++) {
-            if (DEBUG)
-                Debug.printBold("\n\ncardinality = " + cardinality + ": " + costMap.size() + " subtrees");
-            HashMap<HashSet<Condition>, Integer> newCostMap = new HashMap<>();
-            HashMap<HashSet<Condition>, Operator> newOperatorMap = new HashMap<>();
-            HashMap<HashSet<Condition>, HashSet<String>> newTableMap = new HashMap<>();
-            for (HashSet<Condition> tree: costMap.keySet()) {
-                ArrayList<Condition> possibleConditions = getPossibleJoinConditions(tree);
-                for (Condition c: possibleConditions) {
-                    // make new left-deep tree, and compute the cost of it
-                    Operator rightTable = util.getOperator(((Attribute) c.getRhs()).getTabName());
-                    Join newJoin = new Join(operatorMap.get(tree), rightTable, c, OpType.JOIN);
-
-                    Schema jointSchema = operatorMap.get(tree).getSchema().joinWith(rightTable.getSchema());
-                    newJoin.setSchema(jointSchema);
-
-                    HashSet<Condition> newTree = new HashSet<>(tree);
-                    newTree.add(c);
-//                    int cost = new PlanCost().getCost(newJoin);
-                    int cost = tryEachJoinMethod(newJoin);
-                    if (!newCostMap.containsKey(newTree) || newCostMap.get(newTree) > cost) {
-                        newCostMap.put(newTree, cost);
-                        newOperatorMap.put(newTree, newJoin);
-                        String rightTableName = ((Attribute)c.getRhs()).getTabName();
-//                        tableMap.get(tree).add(rightTableName); // culprit. If there are more than one join conditions that this tree can join with, then it will add + 1 table every time.
-                        HashSet<String> newTableNames = new HashSet<>(tableMap.get(tree));
-                        newTableNames.add(rightTableName);
-                        newTableMap.put(newTree, newTableNames);
-                        if (DEBUG) {
-                            Debug.printRed("\nUpdate is taking place for joins containing ");
-                            Debug.printHashSet(newTableMap.get(newTree));
-                            Debug.printRed("with cost = " + cost + "\n");
-                        }
-                    } else if (DEBUG){
-                        Debug.printRed("\n" + "Better solution exists with cost = " + newCostMap.get(newTree) + " than this cost = " + cost + " for ");
-                        Debug.printHashSet(newTableMap.get(newTree));
-                        System.out.println();
-                    }
-                }
-            }
-            // swap the costMap, tableMap and operatorMap such that they only contain elements whose
-            // size == cardinality
-            costMap = newCostMap;
-            operatorMap = newOperatorMap;
-            tableMap = newTableMap;
-
-        } // end loop
-
-        if (operatorMap.size() == 1) {
-            if (DEBUG)
-                Debug.printBold("\nThe operatorMap contains a unique operator tree");
-            Operator bestTree = operatorMap.values().iterator().next();
-            if (hasOrderBy)
-                bestTree = createOrderByOp(bestTree);
-            return createProjectOp(bestTree);
-        } else {
-            if (DEBUG)
-                Debug.printBold("\nThe operatorMap contains more than one operator tree");
+        enumerateCsg();
+
+        long allRelations = tables.size() == MAX_RELATIONS ? -1L : (1L << tables.size()) - 1;
+        Operator bestTree = planTable.getPlan(allRelations);
+        if (bestTree == null) {
+            OptimizerTrace.record(OptimizerTrace.SUMMARY, "DPoptimizer", "the join conditions do not connect all the tables");
             return null;
         }
+        if (OptimizerTrace.enabled(OptimizerTrace.SUMMARY)) {
+            OptimizerTrace.record(OptimizerTrace.SUMMARY, "DPoptimizer", planTable.size() + " connected sets of relations");
+            OptimizerTrace.record(OptimizerTrace.SUMMARY, "DPoptimizer", "best join tree", bestTree, planTable.getCost(allRelations));
+        }
+        if (query.isDistinct()) {
+            /* a distinct that spills emits its partitions one after the other, so the order by is above it */
+            bestTree = createDistinctOp(createProjectOp(bestTree));
+            return hasOrderBy ? createOrderByOp(bestTree) : bestTree;
+        }
+        if (hasOrderBy)
+            bestTree = createOrderByOp(bestTree);
+        return createProjectOp(bestTree);
     }
 
-    private void printCurrentOperators(Collection<Operator> trees) {
-        int i = 0;
-        for (Operator tree: trees) {
-            Debug.printWithLines(true, "");
-            Debug.printBold("Tree #" + ++i);
-            System.out.println(getTreeRepresentation(tree));
+    private void computeSingleRelationPlan() {
+        // at this stage, it is just SCAN (and SELECT) operation
+        util.createScanOp();
+        util.createSelectOp();
+        for (int i = 0; i < tables.size() && i < MAX_RELATIONS; i++) {
+            Operator op = util.getOperator(tables.get(i));
+            planTable.put(1L << i, op, new PlanCost(memo).getCost(op));
+            memoize(op);
         }
     }
 
     /**
-     * @param tree a set of join conditions that make up a subtree
-     * @return a list of join conditions which can be added to grow this subtree
+     * Keeps the cost and statistics of a tree of planTable in memo, to cost the joins above it
      */
-    private ArrayList<Condition> getPossibleJoinConditions(HashSet<Condition> tree) {
-        Debug.printWithLines(true, "");
-        if (DEBUG) {
-            Debug.printHashSet(tree);
-            System.out.println("\nthe tree contains these tables");
-            Debug.printHashSet(tableMap.get(tree));
+    private void memoize(Operator tree) {
+        PlanCost pc = new PlanCost(memo);
+        pc.getCost(tree);
+        if (pc.getEstimate() != null)
+            memo.put(tree, pc.getEstimate());
+    }
+
+    /**
+     * Finds the relations of each join condition, and the neighbours of each relation
+     */
+    private void computeJoinGraph() {
+        if (tables.size() > MAX_RELATIONS) {
+            throw new IllegalArgumentException("DPoptimizer: at most " + MAX_RELATIONS + " tables can be joined");
         }
-        ArrayList<Condition> possibleJoinConditions = new ArrayList<>();
-
-        for (int i = 0; i < numJoins; i++) {
-            Condition joinCondition = joinConditions.get(i);
-            // check this join has not been applied to this tree yet
-            if (!tree.contains(joinCondition)) {
-                // check if it can be joined
-                if (DEBUG) {
-                    System.out.println("\nChecking against the following condition");
-                    Debug.PPrint(joinCondition);
-                }
-
-                String rightTableName = ((Attribute)joinCondition.getRhs()).getTabName();
-                String leftTableName = joinCondition.getLhs().getTabName();
-                if (tableMap.get(tree).contains(rightTableName)) {
-                    joinCondition.flip();
-                    Condition clone = (Condition) joinCondition.clone();
-                    possibleJoinConditions.add(clone);
-                    if (DEBUG)
-                        Debug.printRed(" <-- adding this condition\n");
-                } else if (tableMap.get(tree).contains(leftTableName)) {
-                    Condition clone = (Condition) joinCondition.clone();
-                    possibleJoinConditions.add(clone);
-                    if (DEBUG)
-                        Debug.printRed(" <-- adding this condition\n");
-                } else if (DEBUG){
-                    System.out.println();
-                }
-            }
+        neighbours = new long[tables.size()];
+        leftRelation = new int[numJoins];
+        rightRelation = new int[numJoins];
+        for (int k = 0; k < numJoins; k++) {
+            Condition c = joinConditions.get(k);
+            leftRelation[k] = tables.indexOf(c.getLhs().getTabName());
+            rightRelation[k] = tables.indexOf(((Attribute) c.getRhs()).getTabName());
+            neighbours[leftRelation[k]] |= 1L << rightRelation[k];
+            neighbours[rightRelation[k]] |= 1L << leftRelation[k];
         }
+    }
+
+    /* =============================== DPccp enumeration =============================== */
 
-        // this should return at least one: otherwise, we cannot grow the subtree to produce the full result
-        return possibleJoinConditions;
+    /**
+     * Enumerates the connected sets of relations, starting from each relation in decreasing order and growing
+     * the set only with relations of higher index, so that each connected set is produced once.
+     */
+    private void enumerateCsg() {
+        for (int i = tables.size() - 1; i >= 0; i--) {
+            long start = 1L << i;
+            emitCsg(start);
+            enumerateCsgRec(start, upTo(i));
+        }
     }
 
-    private void computeSingleRelationPlan() {
-        // at this stage, it is just SCAN (and SELECT) operation
-        util.createScanOp();
-        util.createSelectOp();
+    private void enumerateCsgRec(long set, long excluded) {
+        long neighbourhood = neighbourhood(set) & ~excluded;
+        for (long sub = -neighbourhood & neighbourhood; sub != 0; sub = (sub - neighbourhood) & neighbourhood) {
+            emitCsg(set | sub);
+        }
+        for (long sub = -neighbourhood & neighbourhood; sub != 0; sub = (sub - neighbourhood) & neighbourhood) {
+            enumerateCsgRec(set | sub, excluded | neighbourhood);
+        }
     }
 
     /**
-     * This method creates two-table joins later to be used as the starting point for the Dynamic Programming in getBestPlan.
+     * Enumerates the connected complements of a connected set, that is the connected sets of relations joined
+     * with it whose smallest relation has a higher index than the smallest relation of the set
      */
-    private void computeBaseJoinRelationPlan() {
-        for (Condition cOriginal: joinConditions) {
-            Condition c = (Condition) cOriginal.clone();
-            Operator rightOp = util.getOperator(((Attribute)c.getRhs()).getTabName());
-            Operator leftOp = util.getOperator((c.getLhs()).getTabName());
-            Operator join = new Join(leftOp, rightOp, c, OpType.JOIN);
-            Schema jointSchema = leftOp.getSchema().joinWith(rightOp.getSchema());
-            join.setSchema(jointSchema);
-            if (DEBUG) {
-                Debug.printWithLines(false, "");
-                Debug.printBold("Calculating the cost of join without flipping");
-            }
-//            int cost = new PlanCost().getCost(join);
-            int cost = tryEachJoinMethod(join);
-
-            /// now flip the RHS and LHS of the join
-            c.flip();
-            Operator flippedJoin = new Join(rightOp, leftOp, c, OpType.JOIN);
-            Schema jointSchemaFlipped = rightOp.getSchema().joinWith(leftOp.getSchema());
-            flippedJoin.setSchema(jointSchemaFlipped);
-            if (DEBUG)
-                Debug.printBold("Calculating the cost of join after flipping");
-//            int costFlippedJoin =  new PlanCost().getCost(flippedJoin);
-            int costFlippedJoin = tryEachJoinMethod(flippedJoin);
-            HashSet<Condition> hs = new HashSet<>();
-
-            if (DEBUG)
-                System.out.println("\ncomputeBaseJoinRelationPlan: CostMap contains ");
-            if (cost < costFlippedJoin) {
-                c.flip(); // flip it back
-                hs.add(c);
-                costMap.put(hs, cost);
-                operatorMap.put(hs, join);
-                if (DEBUG)
-                    Debug.PPrint(join);
-            } else {
-                hs.add(c);
-                costMap.put(hs, costFlippedJoin);
-                operatorMap.put(hs, flippedJoin);
-                if (DEBUG) {
-                    Debug.PPrint(flippedJoin);
-                    Debug.printRed(" <--- flipped.");
-                }
+    private void emitCsg(long set) {
+        long excluded = set | upTo(Long.numberOfTrailingZeros(set));
+        long neighbourhood = neighbourhood(set) & ~excluded;
+        for (long rest = neighbourhood; rest != 0; ) {
+            int i = 63 - Long.numberOfLeadingZeros(rest);
+            rest &= ~(1L << i);
+            long complement = 1L << i;
+            emitCsgCmp(set, complement);
+            enumerateCmpRec(set, complement, excluded | (upTo(i) & neighbourhood));
+        }
+    }
+
+    private void enumerateCmpRec(long set, long complement, long excluded) {
+        long neighbourhood = neighbourhood(complement) & ~excluded;
+        for (long sub = -neighbourhood & neighbourhood; sub != 0; sub = (sub - neighbourhood) & neighbourhood) {
+            emitCsgCmp(set, complement | sub);
+        }
+        for (long sub = -neighbourhood & neighbourhood; sub != 0; sub = (sub - neighbourhood) & neighbourhood) {
+            enumerateCmpRec(set, complement | sub, excluded | neighbourhood);
+        }
+    }
+
+    /**
+     * Joins the best plans of a pair of sets in both orders, unless the right input would not be a single
+     * relation in a left-deep tree
+     */
+    private void emitCsgCmp(long set, long complement) {
+        if (bushy || Long.bitCount(complement) == 1)
+            joinPlans(set, complement);
+        if (bushy || Long.bitCount(set) == 1)
+            joinPlans(complement, set);
+    }
+
+    /**
+     * Costs the join of the best plans of the two sets, and keeps it if it is the best plan of their union
+     */
+    private void joinPlans(long left, long right) {
+        Operator leftOp = planTable.getPlan(left);
+        Operator rightOp = planTable.getPlan(right);
+        Join join = new Join(leftOp, rightOp, getJoinCondition(left, right), OpType.JOIN);
+        Schema jointSchema = leftOp.getSchema().joinWith(rightOp.getSchema());
+        join.setSchema(jointSchema);
+
+        int cost = tryEachJoinMethod(join);
+        OptimizerTrace.record(OptimizerTrace.PLANS, "DPoptimizer", "join", join, cost);
+        long set = left | right;
+        Operator previous = planTable.getPlan(set);
+        if (previous == null || cost < planTable.getCost(set)) {
+            if (previous != null)
+                memo.remove(previous);
+            planTable.put(set, join, cost);
+            memoize(join);
+            OptimizerTrace.record(OptimizerTrace.PLANS, "DPoptimizer", "best plan of its relations", join, cost);
+        }
+    }
+
+    /**
+     * @return a copy of the join condition between the two sets, with its left attribute in the left set
+     */
+    private Condition getJoinCondition(long left, long right) {
+        for (int k = 0; k < numJoins; k++) {
+            long l = 1L << leftRelation[k];
+            long r = 1L << rightRelation[k];
+            if ((l & left) != 0 && (r & right) != 0) {
+                return (Condition) joinConditions.get(k).clone();
+            } else if ((r & left) != 0 && (l & right) != 0) {
+                Condition c = (Condition) joinConditions.get(k).clone();
+                c.flip();
+                return c;
             }
-            if (DEBUG)
-                Debug.printBold(" cost == " + cost + " vs. flipped cost == " + costFlippedJoin);
-            HashSet<String> tableNames = new HashSet<>();
-            tableNames.add(c.getLhs().getTabName());
-            tableNames.add(((Attribute)c.getRhs()).getTabName());
-            tableMap.put(hs, tableNames);
         }
+        return null;
+    }
+
+    /**
+     * @return the relations joined with a relation of the set, outside the set
+     */
+    private long neighbourhood(long set) {
+        long neighbourhood = 0;
+        for (long rest = set; rest != 0; rest &= rest - 1) {
+            neighbourhood |= neighbours[Long.numberOfTrailingZeros(rest)];
+        }
+        return neighbourhood & ~set;
+    }
+
+    /**
+     * @return the set of the relations 0 to i
+     */
+    private static long upTo(int i) {
+        return i == 63 ? -1L : (1L << (i + 1)) - 1;
     }
 
     /**
      * Tries different types of join methods on a given join operator to calculate
      * the minimum cost. The join method type of the given operator will be set to the one
-     * which yields the minimum cost.
+     * which yields the minimum cost. The subtrees below the join are in memo, so only the join itself
+     * is costed.
      * @param root root of the tree to calculate the cost
      * @return the cost of the tree with best join method for the top-most join
      */
     private int tryEachJoinMethod(Operator root) {
         if (root.getOpType() != OpType.JOIN) {
-            System.exit(1);
+            throw new IllegalArgumentException("DPoptimizer: the join methods are tried on a join only");
         }
         int minCost = Integer.MAX_VALUE;
         int minJoinType = 0;
         for (int type = 0; type < JoinType.numJoinTypes(); type++) {
+            /* an index nested join needs an index on the join attribute of the right table */
+            if (type == JoinType.INDEXNESTED && !IndexNestedJoin.canProbe((Join) root))
+                continue;
             ((Join) root).setJoinType(type);
-            int currentCost = new PlanCost().getCost(root);
+            int currentCost = new PlanCost(memo).getCost(root);
             if (minCost > currentCost) {
                 minCost = currentCost;
                 minJoinType = type;
@@ -284,12 +327,27 @@ public class DPoptimizer {
         return root;
     }
 
+    /**
+     * Create Distinct Operator on top of the projection if the query is SELECT DISTINCT
+     **/
+    public Operator createDistinctOp(Operator root) {
+        Operator base = root;
+        if (query.isDistinct()) {
+            root = new Distinct(base, OpType.DISTINCT);
+            root.setSchema(base.getSchema());
+        }
+        return root;
+    }
+
     /**
      * Create OrderBy Operator for the attributes mentioned in from list
      **/
     public Operator createOrderByOp(Operator root) {
         Operator base = root;
-        root = new OrderBy(base, util.getOrderbyList(), OpType.ORDERBY);
+        if (query.hasLimit())
+            root = new TopKOrderBy(base, util.getOrderbyList(), query.getLimit(), OpType.ORDERBY);
+        else
+            root = new OrderBy(base, util.getOrderbyList(), OpType.ORDERBY);
         root.setSchema(base.getSchema());
         return root;
     }
@@ -330,12 +388,21 @@ public class DPoptimizer {
                     joinOperator = new NestedJoin((Join) node);
                     break;
                 case JoinType.HASHJOIN:
+                    joinOperator = new HashJoin((Join) node);
+                    break;
                 case JoinType.SORTMERGE:
                     joinOperator = new SortMerge((Join) node);
                     break;
                 case JoinType.BLOCKNESTED:
                     joinOperator = new BlockNestedJoin((Join) node);
                     break;
+                case JoinType.INDEXNESTED:
+                    /* without an index on the right table, fall back to a block nested join */
+                    if (IndexNestedJoin.canProbe((Join) node))
+                        joinOperator = new IndexNestedJoin((Join) node);
+                    else
+                        joinOperator = new BlockNestedJoin((Join) node);
+                    break;
                 default:
                     return node;
             }
@@ -346,11 +413,20 @@ public class DPoptimizer {
         } else if (node.getOpType() == OpType.SELECT) {
             Operator base = makeExecPlan(((Select) node).getBase());
             ((Select) node).setBase(base);
+            /* consecutive selects on the same input are evaluated in a single pass */
+            if (base.getOpType() == OpType.SELECT) {
+                ((Select) node).fuse((Select) base);
+            }
             return node;
         } else if (node.getOpType() == OpType.PROJECT) {
             Operator base = makeExecPlan(((Project) node).getBase());
             ((Project) node).setBase(base);
             return node;
+        } else if (node.getOpType() == OpType.DISTINCT) {
+            Operator base = makeExecPlan(((Distinct) node).getBase());
+            ((Distinct) node).setBase(base);
+            ((Distinct) node).setNumBuff(BufferManager.getBuffers());
+            return node;
         } else if (node.getOpType() == OpType.ORDERBY) {
             OrderBy ob = (OrderBy) node;
             Operator base = makeExecPlan(ob.getBase());
@@ -59,7 +59,12 @@ public class OperatorUtils {
 
         for (int i = 0; i < numTables; i++) {  // For each table in from list
             String tabname = (String) fromlist.elementAt(i);
-            Scan op1 = new Scan(tabname, OpType.SCAN);
+            Scan op1;
+            if (PageFile.isPageFile(tabname + ".tbl")) {
+                op1 = new MappedScan(tabname, OpType.SCAN);
+            } else {
+                op1 = new Scan(tabname, OpType.SCAN);
+            }
             tempop = op1;
 
             MapTableToOp(tabname, op1);
@@ -82,21 +87,26 @@ public class OperatorUtils {
             op1.setSchema(schm);
             _if.close();
         } catch (Exception e) {
-            System.err.println("OperatorUtils :Error reading Schema of the table: " + filename);
-            System.exit(1);
+            throw new IllegalStateException("OperatorUtils :Error reading Schema of the table: " + filename, e);
         }
         tableNameToOperator.put(tabname, op1);
     }
 
     /**
-     * Create Selection Operators for each of the selection condition mentioned in Condition list
+     * Create Selection Operators for each of the selection condition mentioned in Condition list.
+     * The scan of a table is replaced by an index scan when a condition on it is selective enough,
+     * that condition is then evaluated by the index scan instead of a select.
      **/
     public void createSelectOp() {
-        Select newOperator = null;
+        Operator newOperator = null;
+        Vector<Condition> indexed = createIndexScanOp();
+        if (!indexed.isEmpty()) {
+            newOperator = tableNameToOperator.get(indexed.lastElement().getLhs().getTabName());
+        }
 
         for (int j = 0; j < selectionlist.size(); j++) {
             Condition cn = (Condition) selectionlist.elementAt(j);
-            if (cn.getOpType() == Condition.SELECT) { // the other type is Join
+            if (cn.getOpType() == Condition.SELECT && !indexed.contains(cn)) { // the other type is Join
                 String tabname = cn.getLhs().getTabName();
 
                 Operator baseOperator = (Operator) tableNameToOperator.get(tabname);
@@ -112,6 +122,32 @@ public class OperatorUtils {
             root = newOperator;
     }
 
+    /**
+     * Pushes the selection conditions on each table down to its scan, which skips the pages they cannot match,
+     * and replaces the scan by an index scan if it is cheaper for one of the conditions
+     * @return the conditions evaluated by index scans
+     */
+    private Vector<Condition> createIndexScanOp() {
+        Vector<Condition> indexed = new Vector<>();
+        for (String tabname : fromlist) {
+            Scan scan = (Scan) tableNameToOperator.get(tabname);
+            Vector<Condition> conditions = new Vector<>();
+            for (Condition cn : selectionlist) {
+                if (cn.getOpType() == Condition.SELECT && cn.getLhs().getTabName().equals(tabname))
+                    conditions.add(cn);
+            }
+            scan.setPushedConditions(conditions);
+            Condition cn = new PlanCost().chooseIndexCondition(scan, conditions);
+            if (cn != null) {
+                IndexScan indexScan = new IndexScan(tabname, cn, OpType.SCAN);
+                indexScan.setSchema(scan.getSchema());
+                updateHashtable(scan, indexScan);
+                indexed.add(cn);
+            }
+        }
+        return indexed;
+    }
+
     public void createProjectOp() { // currently, no push-down of selection and projection
         Operator base = root;
         if (projectlist == null) // projectlist should normally be set in the constructor
@@ -139,6 +175,17 @@ public class OperatorUtils {
         }
     }
 
+    /**
+     * Create Distinct Operator on top of the projection if the query is SELECT DISTINCT
+     **/
+    public void createDistinctOp() {
+        Operator base = root;
+        if (sqlquery.isDistinct()) {
+            root = new Distinct(base, OpType.DISTINCT);
+            root.setSchema(base.getSchema());
+        }
+    }
+
     /**
      * Create OrderBy Operator for the attributes mentioned in from list
      **/
@@ -146,7 +193,10 @@ public class OperatorUtils {
         Operator base = root;
         /* The last selection is the root of the plan tree constructed thus far */
         if (orderbyList.size() != 0){
-            root = new OrderBy(base, orderbyList, OpType.ORDERBY);
+            if (sqlquery.hasLimit())
+                root = new TopKOrderBy(base, orderbyList, sqlquery.getLimit(), OpType.ORDERBY);
+            else
+                root = new OrderBy(base, orderbyList, OpType.ORDERBY);
             root.setSchema(base.getSchema());
         }
     }
@@ -0,0 +1,334 @@
+/**
+ * Trace of the optimizers: the plans they explore and their costs are recorded as events in a buffer, instead
+ * of being printed while the plans are searched. The trace is off by default, and the optimizers test
+ * enabled(level) before building an event, so a disabled trace only costs the read of the level. The events
+ * can be printed, or dumped in JSON, once the optimization is done.
+ **/
+
+package qp.optimizer;
+
+import qp.operators.*;
+import qp.utils.Attribute;
+import qp.utils.Condition;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class OptimizerTrace {
+
+    /* enumeration of the levels of detail */
+    public static final int OFF = 0;
+    public static final int SUMMARY = 1;  // the results of the searches: local minima, final plans
+    public static final int PLANS = 2;    // every plan costed
+
+    private static volatile int level = OFF;
+    private static int capacity = 10000;          // Number of events kept, the later ones are only counted
+    private static final ArrayList<Event> events = new ArrayList<>();
+    private static long dropped;                  // Number of events that did not fit in the buffer
+    private static long start = System.nanoTime();
+
+    private OptimizerTrace() {
+    }
+
+    /**
+     * A plan seen by an optimizer, or a message when there is no plan
+     */
+    public static final class Event {
+        private final long time;          // Microseconds since the trace was cleared
+        private final String thread;
+        private final String optimizer;
+        private final String kind;
+        private final String plan;        // null for a message
+        private final int cost;
+
+        private Event(long time, String thread, String optimizer, String kind, String plan, int cost) {
+            this.time = time;
+            this.thread = thread;
+            this.optimizer = optimizer;
+            this.kind = kind;
+            this.plan = plan;
+            this.cost = cost;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        public String getOptimizer() {
+            return optimizer;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public String getPlan() {
+            return plan;
+        }
+
+        public int getCost() {
+            return cost;
+        }
+
+        public String toString() {
+            String s = "[" + optimizer + "] " + kind;
+            if (plan != null) {
+                s += " " + cost + " " + plan;
+            }
+            return s;
+        }
+    }
+
+    /**
+     * Sets the level of detail of the trace, OFF, SUMMARY or PLANS
+     */
+    public static void setLevel(int lvl) {
+        level = lvl;
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return whether the events of the given level are recorded
+     */
+    public static boolean enabled(int lvl) {
+        return level >= lvl;
+    }
+
+    /**
+     * Sets the number of events kept in the buffer
+     */
+    public static synchronized void setCapacity(int events) {
+        capacity = Math.max(0, events);
+    }
+
+    /**
+     * Records a plan and its cost, if the events of the given level are recorded
+     */
+    public static void record(int lvl, String optimizer, String kind, Operator plan, int cost) {
+        if (enabled(lvl)) {
+            add(optimizer, kind, planString(plan), cost);
+        }
+    }
+
+    /**
+     * Records a message, if the events of the given level are recorded
+     */
+    public static void record(int lvl, String optimizer, String message) {
+        if (enabled(lvl)) {
+            add(optimizer, message, null, 0);
+        }
+    }
+
+    /**
+     * @return a copy of the events recorded, in the order they were recorded
+     */
+    public static synchronized List<Event> getEvents() {
+        return new ArrayList<>(events);
+    }
+
+    public static synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Forgets the events recorded
+     */
+    public static synchronized void clear() {
+        events.clear();
+        dropped = 0;
+        start = System.nanoTime();
+    }
+
+    /**
+     * Prints the events recorded, one per line
+     */
+    public static synchronized void print() {
+        for (Event e : events) {
+            System.out.println(e);
+        }
+        if (dropped > 0) {
+            System.out.println(dropped + " more events were not kept");
+        }
+    }
+
+    /**
+     * Writes the events recorded to a file, as a JSON object
+     */
+    public static synchronized void writeJson(String fname) throws IOException {
+        PrintWriter out = new PrintWriter(new FileWriter(fname));
+        out.println("{");
+        out.println("  \"level\": " + level + ",");
+        out.println("  \"dropped\": " + dropped + ",");
+        out.println("  \"events\": [");
+        for (int i = 0; i < events.size(); i++) {
+            Event e = events.get(i);
+            out.print("    {\"time_us\": " + e.time + ", \"thread\": " + quote(e.thread)
+                    + ", \"optimizer\": " + quote(e.optimizer) + ", \"kind\": " + quote(e.kind));
+            if (e.plan != null) {
+                out.print(", \"cost\": " + e.cost + ", \"plan\": " + quote(e.plan));
+            }
+            out.println(i < events.size() - 1 ? "}," : "}");
+        }
+        out.println("  ]");
+        out.println("}");
+        out.close();
+        if (out.checkError()) {
+            throw new IOException("OptimizerTrace: error in writing " + fname);
+        }
+    }
+
+    /* =============================== PRIVATE METHODS =============================== */
+
+    private static synchronized void add(String optimizer, String kind, String plan, int cost) {
+        if (events.size() < capacity) {
+            long time = (System.nanoTime() - start) / 1000;
+            events.add(new Event(time, Thread.currentThread().getName(), optimizer, kind, plan, cost));
+        } else {
+            dropped++;
+        }
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * @return the plan in the format of Debug.PPrint, without colours
+     */
+    private static String planString(Operator node) {
+        StringBuilder sb = new StringBuilder();
+        appendPlan(sb, node);
+        return sb.toString();
+    }
+
+    private static void appendPlan(StringBuilder sb, Operator node) {
+        if (node == null) {
+            return;
+        }
+        switch (node.getOpType()) {
+            case OpType.JOIN:
+                Join join = (Join) node;
+                switch (join.getJoinType()) {
+                    case JoinType.NESTEDJOIN:
+                        sb.append("NestedJoin(");
+                        break;
+                    case JoinType.BLOCKNESTED:
+                        sb.append("BlockNested(");
+                        break;
+                    case JoinType.SORTMERGE:
+                        sb.append("SortMerge(");
+                        break;
+                    case JoinType.HASHJOIN:
+                        sb.append("HashJoin(");
+                        break;
+                    case JoinType.INDEXNESTED:
+                        sb.append("IndexNested(");
+                        break;
+                }
+                appendPlan(sb, join.getLeft());
+                sb.append(" [");
+                appendCondition(sb, join.getCondition());
+                sb.append("] ");
+                appendPlan(sb, join.getRight());
+                sb.append(")");
+                break;
+            case OpType.SELECT:
+                sb.append("Select(");
+                appendPlan(sb, ((Select) node).getBase());
+                sb.append("  '");
+                List<Condition> conditions = ((Select) node).getConditions();
+                for (int i = 0; i < conditions.size(); i++) {
+                    if (i > 0)
+                        sb.append(" AND ");
+                    appendCondition(sb, conditions.get(i));
+                }
+                sb.append("'  )");
+                break;
+            case OpType.PROJECT:
+                sb.append("Project(");
+                appendPlan(sb, ((Project) node).getBase());
+                sb.append(")");
+                break;
+            case OpType.DISTINCT:
+                sb.append("Distinct(");
+                appendPlan(sb, ((Distinct) node).getBase());
+                sb.append(")");
+                break;
+            case OpType.SCAN:
+                if (node instanceof IndexScan) {
+                    sb.append("IndexScan(").append(((Scan) node).getTabName()).append("  '");
+                    appendCondition(sb, ((IndexScan) node).getCondition());
+                    sb.append("'  )");
+                } else {
+                    sb.append(((Scan) node).getTabName());
+                }
+                break;
+            case OpType.ORDERBY:
+                sb.append("Orderby( ");
+                appendPlan(sb, ((OrderBy) node).getBase());
+                for (Object a : ((OrderBy) node).getOrdAttr()) {
+                    appendAttribute(sb, (Attribute) a);
+                    sb.append(" ");
+                }
+                if (node instanceof TopKOrderBy) {
+                    sb.append("LIMIT ").append(((TopKOrderBy) node).getLimit()).append(" ");
+                }
+                sb.append(")");
+                break;
+        }
+    }
+
+    private static void appendCondition(StringBuilder sb, Condition con) {
+        appendAttribute(sb, con.getLhs());
+        switch (con.getExprType()) {
+            case Condition.LESSTHAN:
+                sb.append(" < ");
+                break;
+            case Condition.GREATERTHAN:
+                sb.append(" > ");
+                break;
+            case Condition.LTOE:
+                sb.append(" <= ");
+                break;
+            case Condition.GTOE:
+                sb.append(" >= ");
+                break;
+            case Condition.EQUAL:
+                sb.append(" == ");
+                break;
+            case Condition.NOTEQUAL:
+                sb.append(" != ");
+                break;
+        }
+        if (con.getOpType() == Condition.JOIN) {
+            appendAttribute(sb, (Attribute) con.getRhs());
+        } else {
+            sb.append(con.getRhs());
+        }
+    }
+
+    private static void appendAttribute(StringBuilder sb, Attribute attr) {
+        sb.append(attr.getTabName()).append(".").append(attr.getColName());
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * Process-wide cache of the plans chosen by the optimizers, so that a query that was already optimized is not
+ * optimized again. A plan is found again for the same query written differently: the key is the normalized
+ * query (tables sorted, conditions in a canonical form and sorted), with the settings that change the costs,
+ * such as the page size and the number of buffers. A plan is dropped when one of the files its cost comes from
+ * is modified: the schema, statistics, histograms, zone map or data file of one of its tables.
+ **/
+
+package qp.optimizer;
+
+import qp.operators.JoinType;
+import qp.operators.Operator;
+import qp.utils.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+public final class PlanCache {
+
+    private static int capacity = 256;      // Number of plans kept, the least recently used one is dropped first
+    private static final LinkedHashMap<String, CachedPlan> plans = new LinkedHashMap<String, CachedPlan>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<String, CachedPlan> eldest) {
+            return size() > capacity;
+        }
+    };
+    private static long hits;
+    private static long misses;
+
+    private PlanCache() {
+    }
+
+    /**
+     * A logical plan, with the modification times of the files of its tables when it was chosen
+     */
+    private static final class CachedPlan {
+        private final Operator plan;
+        private final long[] modified;
+
+        private CachedPlan(Operator plan, long[] modified) {
+            this.plan = plan;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * @param optimizer, the optimizer and its options, plans of different optimizers are kept apart
+     * @return a copy of the logical plan chosen for the query, null if there is none or if a file of its
+     * tables was modified since it was chosen
+     */
+    public static Operator get(SQLQuery query, String optimizer) {
+        String key = key(query, optimizer);
+        long[] modified = modificationTimes(query);
+        CachedPlan cached;
+        synchronized (PlanCache.class) {
+            cached = plans.get(key);
+            if (cached != null && !Arrays.equals(cached.modified, modified)) {
+                plans.remove(key);
+                cached = null;
+            }
+            if (cached == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+        /* the plan is mutated when it is made executable, so each query gets its own copy */
+        return (Operator) cached.plan.clone();
+    }
+
+    /**
+     * Keeps a copy of the logical plan chosen for the query, before it is made executable
+     * @param optimizer, the optimizer and its options
+     */
+    public static void put(SQLQuery query, String optimizer, Operator plan) {
+        if (plan == null) {
+            return;
+        }
+        String key = key(query, optimizer);
+        CachedPlan cached = new CachedPlan((Operator) plan.clone(), modificationTimes(query));
+        synchronized (PlanCache.class) {
+            plans.put(key, cached);
+        }
+    }
+
+    /**
+     * Sets the number of plans kept
+     */
+    public static synchronized void setCapacity(int numPlans) {
+        capacity = Math.max(0, numPlans);
+        while (plans.size() > capacity) {
+            plans.remove(plans.keySet().iterator().next());
+        }
+    }
+
+    public static synchronized int size() {
+        return plans.size();
+    }
+
+    public static synchronized long getHits() {
+        return hits;
+    }
+
+    public static synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Forgets all the plans
+     */
+    public static synchronized void clear() {
+        plans.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /* =============================== PRIVATE METHODS =============================== */
+
+    /**
+     * @return the normalized query, with the optimizer and the settings the costs depend on
+     */
+    private static String key(SQLQuery query, String optimizer) {
+        StringBuilder sb = new StringBuilder(optimizer);
+        sb.append("|page ").append(Batch.getPageSize());
+        sb.append("|buffers ").append(BufferManager.getBuffers());
+        sb.append("|join types ").append(JoinType.numJoinTypes());
+        sb.append("|sort ").append(Sorter.getRunGeneration()).append(" ").append(Sorter.getParallelism());
+
+        sb.append("|select");
+        if (query.isDistinct())
+            sb.append(" distinct");
+        appendAttributes(sb, query.getProjectList());   // the order of the columns matters
+
+        sb.append("|from");
+        for (String tabname : sortedTables(query)) {
+            sb.append(" ").append(tabname);
+        }
+
+        sb.append("|where");
+        List<String> conditions = new ArrayList<>();
+        addConditions(conditions, query.getSelectionList());
+        addConditions(conditions, query.getJoinList());
+        Collections.sort(conditions);
+        for (String condition : conditions) {
+            sb.append(" ").append(condition);
+        }
+
+        if (query.getNumOrderBy() > 0) {
+            sb.append("|order by");
+            appendAttributes(sb, query.getOrderByList());  // the order of the attributes matters
+        }
+        if (query.hasLimit())
+            sb.append("|limit ").append(query.getLimit());
+        return sb.toString();
+    }
+
+    private static List<String> sortedTables(SQLQuery query) {
+        List<String> tables = new ArrayList<>();
+        for (Object tabname : query.getFromList()) {
+            tables.add((String) tabname);
+        }
+        Collections.sort(tables);
+        return tables;
+    }
+
+    private static void appendAttributes(StringBuilder sb, Vector attributes) {
+        if (attributes == null)
+            return;
+        for (Object attr : attributes) {
+            sb.append(" ").append(attributeString((Attribute) attr));
+        }
+    }
+
+    private static String attributeString(Attribute attr) {
+        return attr.getTabName() + "." + attr.getColName();
+    }
+
+    /**
+     * Adds the conditions in a canonical form: a join condition is written with the smaller attribute first
+     */
+    private static void addConditions(List<String> strings, Vector conditions) {
+        if (conditions == null)
+            return;
+        for (Object c : conditions) {
+            Condition con = (Condition) c;
+            String lhs = attributeString(con.getLhs());
+            int exprtype = con.getExprType();
+            if (con.getOpType() == Condition.JOIN) {
+                String rhs = attributeString((Attribute) con.getRhs());
+                if (lhs.compareTo(rhs) > 0) {
+                    strings.add(rhs + " " + mirror(exprtype) + " " + lhs);
+                } else {
+                    strings.add(lhs + " " + exprtype + " " + rhs);
+                }
+            } else {
+                strings.add(lhs + " " + exprtype + " " + con.getRhs());
+            }
+        }
+    }
+
+    /**
+     * @return the comparison with its operands swapped, e.g. < for >
+     */
+    private static int mirror(int exprtype) {
+        switch (exprtype) {
+            case Condition.LESSTHAN:
+                return Condition.GREATERTHAN;
+            case Condition.GREATERTHAN:
+                return Condition.LESSTHAN;
+            case Condition.LTOE:
+                return Condition.GTOE;
+            case Condition.GTOE:
+                return Condition.LTOE;
+            default:
+                return exprtype;
+        }
+    }
+
+    /**
+     * @return the modification times of the files of the tables of the query, 0 for a file that does not exist
+     */
+    private static long[] modificationTimes(SQLQuery query) {
+        List<String> tables = sortedTables(query);
+        long[] modified = new long[5 * tables.size()];
+        int i = 0;
+        for (String tabname : tables) {
+            modified[i++] = new File(tabname + ".md").lastModified();
+            modified[i++] = new File(tabname + ".stat").lastModified();
+            modified[i++] = new File(Histogram.fileName(tabname)).lastModified();
+            modified[i++] = new File(ZoneMap.fileName(tabname)).lastModified();
+            modified[i++] = new File(tabname + ".tbl").lastModified();
+        }
+        return modified;
+    }
+}
@@ -4,8 +4,10 @@ package qp.optimizer;
 import qp.operators.*;
 import qp.utils.*;
 
+import java.util.HashMap;
 import java.util.Hashtable;
-import java.util.StringTokenizer;
+import java.util.IdentityHashMap;
+import java.util.Vector;
 import java.io.*;
 
 public class PlanCost {
@@ -22,11 +24,85 @@ public class PlanCost {
      **/
     Hashtable<Attribute, Integer> attrToV;
 
+    /**
+     * estimates shared with the other plans costed by the optimizer, null if the plan is costed alone
+     **/
+    Memo memo;
+
+    /**
+     * estimates taken from the memo for the subtrees of the plan, holding the number of distinct values of
+     * the attributes of these subtrees which are not in attrToV. They are not copied into attrToV, as most
+     * of them are not needed to cost the operators above the subtrees.
+     **/
+    Vector<Estimate> below = new Vector<>();
+
     public PlanCost() {
         attrToV = new Hashtable();
         cost = 0;
     }
 
+    /**
+     * @param memo estimates shared by the plans costed by an optimizer
+     **/
+    public PlanCost(Memo memo) {
+        this();
+        this.memo = memo;
+    }
+
+    /**
+     * Estimates shared by the plans costed during one optimization: the estimates of the subtrees already
+     * costed, looked up by identity of their root operator and used instead of costing the subtrees again,
+     * and the statistics of the tables and the join selectivities, which do not change during the optimization
+     * so that the StatisticsCatalog and the histograms are consulted once for all the plans.
+     */
+    public static final class Memo {
+        private final IdentityHashMap<Operator, Estimate> estimates = new IdentityHashMap<>();
+        private final HashMap<String, StatisticsCatalog.TableStatistics> tables = new HashMap<>();
+        private final HashMap<String, Double> joinSelectivities = new HashMap<>();
+
+        public Estimate get(Operator root) {
+            return estimates.get(root);
+        }
+
+        public void put(Operator root, Estimate estimate) {
+            estimates.put(root, estimate);
+        }
+
+        public void remove(Operator root) {
+            estimates.remove(root);
+        }
+    }
+
+    /**
+     * Cost, number of output tuples and number of distinct values of the attributes of a costed subtree
+     */
+    public static final class Estimate {
+        private final int cost;
+        private final int numtuple;
+        private final Hashtable<Attribute, Integer> attrToV;
+
+        private Estimate(int cost, int numtuple, Hashtable<Attribute, Integer> attrToV) {
+            this.cost = cost;
+            this.numtuple = numtuple;
+            this.attrToV = attrToV;
+        }
+
+        public int getCost() {
+            return cost;
+        }
+
+        public int getNumTuples() {
+            return numtuple;
+        }
+
+        /**
+         * @return number of distinct values of the attribute in the output of the subtree, null if unknown
+         */
+        public Integer getNumDistinct(Attribute attr) {
+            return attrToV.get(attr);
+        }
+    }
+
     /**
      * @return the cost of the plan
      **/
@@ -43,10 +119,46 @@ public class PlanCost {
         return numtuple;
     }
 
+    /**
+     * @return the estimates of the plan last costed, null if it is not feasible
+     **/
+    public Estimate getEstimate() {
+        if (!isFeasible) {
+            return null;
+        }
+        int size = attrToV.size();
+        for (Estimate known : below) {
+            size += known.attrToV.size();
+        }
+        Hashtable<Attribute, Integer> distinct = new Hashtable<>(2 * size + 1);
+        for (Estimate known : below) {
+            distinct.putAll(known.attrToV);
+        }
+        distinct.putAll(attrToV);
+        return new Estimate(cost, numtuple, distinct);
+    }
+
+    /**
+     * @return number of distinct values of the attribute, computed for this plan or taken from the memo
+     **/
+    private Integer getNumDistinct(Attribute attr) {
+        Integer numdistinct = attrToV.get(attr);
+        for (int i = 0; numdistinct == null && i < below.size(); i++) {
+            numdistinct = below.get(i).getNumDistinct(attr);
+        }
+        return numdistinct;
+    }
+
     /**
      * returns number of tuples in the root
      **/
     protected int calculateCost(Operator node) {
+        Estimate known = memo == null ? null : memo.estimates.get(node);
+        if (known != null) {
+            cost += known.cost;
+            below.add(known);
+            return known.numtuple;
+        }
         if (node.getOpType() == OpType.JOIN) {
             return getStatistics((Join) node);
         } else if (node.getOpType() == OpType.SELECT) {
@@ -55,6 +167,10 @@ public class PlanCost {
             return getStatistics((Project) node);
         } else if (node.getOpType() == OpType.SCAN) {
             return getStatistics((Scan) node);
+        } else if (node.getOpType() == OpType.DISTINCT) {
+            return getStatistics((Distinct) node);
+        } else if (node.getOpType() == OpType.ORDERBY) {
+            return getStatistics((OrderBy) node);
         }
         return -1;
     }
@@ -66,12 +182,60 @@ public class PlanCost {
         return calculateCost(node.getBase());
     }
 
+    /**
+     * sorting does not change any statistics. The sort is at the root of the plan, the same for all the plans
+     * compared by the optimizer, so its cost is left out
+     **/
+    protected int getStatistics(OrderBy node) {
+        return calculateCost(node.getBase());
+    }
+
+    /**
+     * The number of distinct tuples is at most the product of the number of distinct values of the attributes.
+     * Duplicates are eliminated on the fly as long as the distinct tuples fit in memory, otherwise the
+     * input tuples that do not fit are written to partitions and read back once.
+     **/
+    protected int getStatistics(Distinct node) {
+        int intuples = calculateCost(node.getBase());
+        if (!isFeasible) {
+            return Integer.MAX_VALUE;
+        }
+
+        Schema schema = node.getSchema();
+        long combinations = 1;
+        for (int i = 0; i < schema.getNumCols() && combinations < intuples; i++) {
+            Integer numdistinct = getNumDistinct(schema.getAttribute(i));
+            combinations *= numdistinct == null ? intuples : Math.max(1, numdistinct);
+        }
+        int outtuples = (int) Math.min(intuples, combinations);
+
+        int tuplesPerPage = Math.max(1, Batch.getPageSize() / schema.getTupleSize());
+        int inpages = (int) Math.ceil((double) intuples / tuplesPerPage);
+        int outpages = (int) Math.ceil((double) outtuples / tuplesPerPage);
+        cost += getDistinctCost(inpages, outpages, BufferManager.getBuffers());
+        return outtuples;
+    }
+
+    /**
+     * Cost of the duplicate elimination in Distinct, beyond reading its input: the input tuples whose distinct
+     * values do not fit in memory are written to partitions and read back once.
+     */
+    static int getDistinctCost(int inpages, int outpages, int numbuff) {
+        int memPages = Math.max(1, numbuff - 2 - Math.max(2, (numbuff - 2) / 2));
+        if (outpages <= memPages) {
+            return 0;
+        }
+        return 2 * (int) Math.ceil(inpages * (1 - (double) memPages / outpages));
+    }
+
     /**
      * calculates the statistics, and cost of join operation
      **/
     protected int getStatistics(Join node) {
         int lefttuples = calculateCost(node.getLeft()); // this part is recursive
+        int costBeforeRight = cost;
         int righttuples = calculateCost(node.getRight());
+        int rightcost = cost - costBeforeRight;
         if (!isFeasible) {
             return -1; // shouldn't this return Integer.MAX_VALUE?
         }
@@ -89,8 +253,7 @@ public class PlanCost {
         int numTuplesPerPageForRight = Batch.getPageSize() / rightTupleSizeInBytes;
 
         if (Batch.getPageSize() < leftTupleSizeInBytes || Batch.getPageSize() < rightTupleSizeInBytes) {
-            System.out.println("The buffer cannot hold entire tuple for right/left tables. Exiting now");
-            System.exit(1);
+            throw new IllegalStateException("The buffer cannot hold entire tuple for right/left tables");
         }
 
         int leftpages = (int) Math.ceil(((double) lefttuples) / (double) numTuplesPerPageForLeft);
@@ -103,10 +266,16 @@ public class PlanCost {
         leftjoinAttr = leftschema.getAttribute(leftattrind);
         rightjoinAttr = rightschema.getAttribute(rightattrind);
         /* number of distinct values of left and right join attribute */
-        int leftattrdistn =  attrToV.get(leftjoinAttr);
-        int rightattrdistn = attrToV.get(rightjoinAttr);
+        int leftattrdistn = getNumDistinct(leftjoinAttr);
+        int rightattrdistn = getNumDistinct(rightjoinAttr);
 
-        int outtuples = (int) Math.ceil(((double) lefttuples * righttuples) / (double) Math.max(leftattrdistn, rightattrdistn));
+        int outtuples;
+        double joinselectivity = getJoinSelectivity(leftjoinAttr, rightjoinAttr);
+        if (joinselectivity >= 0) {
+            outtuples = (int) Math.ceil((double) lefttuples * righttuples * joinselectivity);
+        } else {
+            outtuples = (int) Math.ceil(((double) lefttuples * righttuples) / (double) Math.max(leftattrdistn, rightattrdistn));
+        }
         int minDistinct = Math.min(leftattrdistn, rightattrdistn);
         attrToV.put(leftjoinAttr, minDistinct);
         attrToV.put(leftjoinAttr, minDistinct);
@@ -115,8 +284,7 @@ public class PlanCost {
         int joinType = node.getJoinType();
         int numbuff = BufferManager.getBuffersPerJoin();
         if (numbuff == 0) {
-            System.out.println("#buffers is not set. Exiting code");
-            System.exit(1);
+            throw new IllegalStateException("#buffers is not set");
         }
         int joincost;
         switch (joinType) {
@@ -124,16 +292,27 @@ public class PlanCost {
                 joincost = leftpages + (leftpages * rightpages);
                 break;
             case JoinType.BLOCKNESTED:
-                joincost = leftpages + (int) (Math.ceil((double) leftpages / (numbuff - 2))) * rightpages;
+                joincost = getBlockNestedCost(leftpages, rightpages, numbuff);
                 break;
             case JoinType.SORTMERGE:
-                joincost = 2 * leftpages * (1 + getCeilLog((int) Math.ceil((double)leftpages/ numbuff), numbuff-1));
+                joincost = getSortCost(leftpages, numbuff);
                 joincost += leftpages;
                 joincost += rightpages;
-                joincost += 2 * rightpages * (1 + getCeilLog((int) Math.ceil((double) rightpages/ numbuff), numbuff-1));
+                joincost += getSortCost(rightpages, numbuff);
                 break;
             case JoinType.HASHJOIN:
-                joincost = 0;
+                joincost = getHashJoinCost(leftpages, rightpages, numbuff);
+                break;
+            case JoinType.INDEXNESTED:
+                if (!IndexNestedJoin.canProbe(node)) {
+                    isFeasible = false;
+                    return -1;
+                }
+                /* the right table is not scanned, each left tuple reads the index and then one page per match */
+                cost -= rightcost;
+                int height = getIndexHeight(node);
+                int matches = (int) Math.ceil((double) righttuples / Math.max(1, rightattrdistn));
+                joincost = leftpages + lefttuples * (height + matches);
                 break;
             default:
                 joincost = 0;
@@ -153,133 +332,274 @@ public class PlanCost {
         if (!isFeasible) {
             return Integer.MAX_VALUE;
         }
+        /* the conditions of the selects fused into this one by makeExecPlan are applied as well, from the
+           lowest select up, as they were before the fusion */
+        Vector<Condition> conditions = node.getConditions();
+        int outtuples = intuples;
+        for (int i = conditions.size() - 1; i >= 0; i--) {
+            outtuples = applySelection(conditions.get(i), node.getSchema(), outtuples);
+        }
+        return outtuples;
+    }
 
-        Condition con = node.getCondition();
-        Schema schema = node.getSchema();
+    /**
+     * Chooses the condition to answer with an index scan of the table, among the selection conditions on it.
+     * An index scan reads the index and then the pages holding matching tuples, which only pays off for
+     * selective conditions, as a range condition spread over the table still reads most of its pages.
+     * @return the condition for which an index scan is cheaper than the scan of the table, null if there is none
+     */
+    public Condition chooseIndexCondition(Scan scan, Vector<Condition> conditions) {
+        int numtuples = getStatistics(scan);
+        int numpages = (int) Math.ceil((double) numtuples / (Batch.getPageSize() / scan.getSchema().getTupleSize()));
+        Condition best = null;
+        int bestcost = cost;
+        for (Condition cn : conditions) {
+            if (!IndexScan.canUse(scan, cn)) {
+                continue;
+            }
+            int indexcost = getIndexScanCost(scan, cn, numtuples, numpages);
+            if (indexcost < bestcost) {
+                best = cn;
+                bestcost = indexcost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Updates the statistics of the attributes for the output of a selection
+     * @return number of tuples satisfying the condition
+     */
+    private int applySelection(Condition con, Schema schema, int intuples) {
         Attribute attr = con.getLhs();
 
         int index = schema.indexOf(attr);
         // what is the point of this? Isn't attr == fullattr?
         Attribute fullattr = schema.getAttribute(index);
 
-        int exprtype = con.getExprType();
-
         /* Get number of distinct values of selection attributes **/
 
-        int numdistinct = attrToV.get(fullattr);
-        int outtuples;
-
-        /* calculate the number of tuples in result */
-        if (exprtype == Condition.EQUAL) {
-            outtuples = (int) Math.ceil((double) intuples / (double) numdistinct);
-        } else if (exprtype == Condition.NOTEQUAL) {
-            outtuples = (int) Math.ceil(intuples - ((double) intuples / (double) numdistinct));
-        } else {
-            outtuples = (int) Math.ceil(0.5 * intuples);
-        }
+        int numdistinct = getNumDistinct(fullattr);
+        int outtuples = getSelectedTuples(con, fullattr, intuples, numdistinct);
 
         /* Modify the number of distinct values of each attribute, assuming the values are distributed uniformly along entire relation */
         for (int i = 0; i < schema.getNumCols(); i++) {
             Attribute attri = schema.getAttribute(i);
-            int oldvalue = attrToV.get(attri);
+            int oldvalue = getNumDistinct(attri);
             int newvalue = (int) Math.ceil(((double) outtuples / (double) intuples) * oldvalue);
             attrToV.put(attri, outtuples);
         }
         return outtuples;
     }
 
+    /**
+     * @return estimated number of tuples satisfying the condition, among intuples tuples. The histogram of the
+     * attribute is used if the table has one, otherwise the values are assumed uniformly distributed, and a
+     * range condition is assumed to select half of the tuples
+     */
+    private int getSelectedTuples(Condition con, Attribute attr, int intuples, int numdistinct) {
+        int exprtype = con.getExprType();
+        Histogram histogram = getHistogram(attr);
+        if (histogram != null) {
+            Object value = IndexScan.keyOf((String) con.getRhs(), attr.getType());
+            double selectivity = histogram.selectivity(exprtype, value);
+            return intuples == 0 ? 0 : Math.max(1, (int) Math.ceil(selectivity * intuples));
+        }
+        if (exprtype == Condition.EQUAL) {
+            return (int) Math.ceil((double) intuples / (double) numdistinct);
+        } else if (exprtype == Condition.NOTEQUAL) {
+            return (int) Math.ceil(intuples - ((double) intuples / (double) numdistinct));
+        } else {
+            return (int) Math.ceil(0.5 * intuples);
+        }
+    }
+
+    /**
+     * @return the histogram of the attribute in the <tablename>.hist file of its table, null if there is none
+     */
+    private Histogram getHistogram(Attribute attr) {
+        return getTableStatistics(attr.getTabName()).getHistogram(attr.getColName());
+    }
+
+    /**
+     * The fraction of the pairs of tuples of the base tables that join is applied to the inputs of the join,
+     * assuming the selections below the join are independent of the join attributes.
+     * @return estimated fraction of the pairs of tuples that join, -1 if one of the attributes has no histogram
+     */
+    private double getJoinSelectivity(Attribute leftattr, Attribute rightattr) {
+        String key = leftattr.getTabName() + "." + leftattr.getColName() + "=" + rightattr.getTabName() + "." + rightattr.getColName();
+        Double known = memo == null ? null : memo.joinSelectivities.get(key);
+        if (known != null) {
+            return known;
+        }
+        Histogram left = getHistogram(leftattr);
+        Histogram right = left == null ? null : getHistogram(rightattr);
+        double selectivity = right == null ? -1 : Histogram.joinSelectivity(left, right);
+        if (memo != null) {
+            memo.joinSelectivities.put(key, selectivity);
+        }
+        return selectivity;
+    }
+
+    /**
+     * @return the statistics of the table, taken from the StatisticsCatalog once per memo
+     */
+    private StatisticsCatalog.TableStatistics getTableStatistics(String tabname) {
+        if (memo == null) {
+            return StatisticsCatalog.get(tabname);
+        }
+        StatisticsCatalog.TableStatistics stats = memo.tables.get(tabname);
+        if (stats == null) {
+            stats = StatisticsCatalog.get(tabname);
+            memo.tables.put(tabname, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * @return number of pages read by the scan, the pages that cannot match its pushed conditions according
+     * to the zone map of the table are skipped
+     */
+    private int getZoneMapPages(Scan node, ZoneMap zm, int numpages) {
+        if (node.getPushedConditions().isEmpty() || !PageFile.isPageFile(node.getTabName() + ".tbl")) {
+            return numpages;
+        }
+        if (zm == null || zm.getNumPages() == 0 || !zm.isCurrent(node.getTabName() + ".tbl")) {
+            return numpages;
+        }
+        double fraction = (double) node.candidatePages(zm).cardinality() / zm.getNumPages();
+        return (int) Math.ceil(numpages * fraction);
+    }
+
+    /**
+     * Cost of an index scan: one page per level of the index, then the distinct pages holding the matching
+     * tuples. The index is not clustered, so m matching tuples are expected on p * (1 - (1 - 1/p)^m) of the
+     * p pages of the table.
+     */
+    private int getIndexScanCost(Scan scan, Condition con, int numtuples, int numpages) {
+        Schema schema = scan.getSchema();
+        Attribute attr = schema.getAttribute(schema.indexOf(con.getLhs()));
+        int matches = getSelectedTuples(con, attr, numtuples, getNumDistinct(attr));
+        double pages = numpages == 0 ? 0 : numpages * (1 - Math.pow(1 - 1.0 / numpages, matches));
+        return getIndexHeight(scan.getTabName(), attr.getColName()) + (int) Math.ceil(pages);
+    }
+
     /**
      * the statistics file <tablename>.stat to find the statistics about that table;
-     * This table contains number of tuples in the table and the number of distinct values of each attribute
+     * This table contains number of tuples in the table and the number of distinct values of each attribute.
+     * The statistics are taken from the StatisticsCatalog, which reads the file only once
      **/
     protected int getStatistics(Scan node) {
         String tablename = node.getTabName();
-        String filename = tablename + ".stat"; // this is where the table meta-data is stored
         Schema schema = node.getSchema();
         int numAttr = schema.getNumCols();
-        BufferedReader in = null;
-        try {
-            in = new BufferedReader(new FileReader(filename));
-        } catch (IOException io) {
-            System.out.println("Error in opening file" + filename);
-            System.exit(1);
+        StatisticsCatalog.TableStatistics stats = getTableStatistics(tablename);
+        if (stats.getNumCols() != numAttr) {
+            throw new IllegalStateException("incorrect format of statastics file " + tablename + ".stat");
         }
 
-        int numtuples = getNumTuples(in);
-        mapAttrToV(schema, numAttr, in);
+        int numtuples = stats.getNumTuples();
+        for (int i = 0; i < numAttr; i++) {
+            attrToV.put(schema.getAttribute(i), stats.getNumDistinct(i));
+        }
 
         int tupleSizeInBytes = schema.getTupleSize();
         int numTuplesPerPage = Batch.getPageSize() / tupleSizeInBytes;
         int numpages = (int) Math.ceil((double) numtuples / (double) numTuplesPerPage);
-        cost += numpages;
-        try {
-            in.close();
-        } catch (IOException io) {
-            System.out.println("error in closing the file " + filename);
-            System.exit(1);
+        if (node instanceof IndexScan) {
+            /* only the pages given by the index are read, and the condition is evaluated by the scan */
+            Condition con = ((IndexScan) node).getCondition();
+            cost += getIndexScanCost(node, con, numtuples, numpages);
+            numtuples = applySelection(con, schema, numtuples);
+        } else {
+            cost += getZoneMapPages(node, stats.getZoneMap(), numpages);
         }
 
 //        Debug.printPurple("\nStatistics for table " + tablename + ": numTuples = " + numtuples + " tuple size = " + tupleSizeInBytes + " number of pages = " + numpages);
         return numtuples;
     }
 
-    private void mapAttrToV(Schema schema, int numAttr, BufferedReader in) {
-        StringTokenizer tokenizer;
-        String temp;
+    /**
+     * Cost of the block nested join: the left input is read once, and the right input once per block of
+     * numbuff-2 left pages.
+     */
+    static int getBlockNestedCost(int leftpages, int rightpages, int numbuff) {
+        return leftpages + (int) (Math.ceil((double) leftpages / (numbuff - 2))) * rightpages;
+    }
 
-        String line = null;
-        try {
-            line = in.readLine();
-        } catch (IOException io) {
-            System.out.println("error in reading second line");
-            System.exit(1);
+    /**
+     * Cost of the hybrid hash join in HashJoin: both inputs are read once. The build input is split into
+     * max(2, numbuff-2) partitions, kept in memory until they outgrow the numbuff-2 pages left by the input and
+     * output buffers; the largest ones are then written out, each taking an output buffer, until the others
+     * fit. The part of both inputs that hashes to the partitions on disk is written and read back once per
+     * partitioning pass.
+     * @param leftpages number of pages of the build input
+     * @param rightpages number of pages of the probe input
+     * @param numbuff number of buffers available to the join
+     */
+    static int getHashJoinCost(int leftpages, int rightpages, int numbuff) {
+        if (leftpages <= numbuff - 2) {
+            return leftpages + rightpages; // the whole build input fits in memory
         }
-        tokenizer = new StringTokenizer(line);
-        if (tokenizer.countTokens() != numAttr) {
-            System.out.println("incorrect format of statastics file");
-            System.exit(1);
+        int numPartitions = Math.max(2, numbuff - 2);
+        int numSpilled = 0;
+        while (numSpilled < numPartitions
+                && (double) leftpages * (numPartitions - numSpilled) / numPartitions > numbuff - 2 - numSpilled) {
+            numSpilled++;
         }
-
-        for (int i = 0; i < numAttr; i++) {
-            Attribute attr = schema.getAttribute(i);
-            temp = tokenizer.nextToken();
-            Integer distinctValues = Integer.valueOf(temp);
-            attrToV.put(attr, distinctValues);
+        double spilledFraction = (double) numSpilled / numPartitions;
+        /* partitions that are still too large are re-partitioned with numbuff-1 fan-out */
+        int partitionPages = (int) Math.ceil((double) leftpages / numPartitions);
+        int numPasses = 1;
+        while (partitionPages > Math.max(1, numbuff - 2)) {
+            partitionPages = (int) Math.ceil((double) partitionPages / Math.max(2, numbuff - 1));
+            numPasses++;
         }
+        return leftpages + rightpages + (int) Math.ceil(2 * (leftpages + rightpages) * spilledFraction * numPasses);
     }
 
-    private int getNumTuples(BufferedReader in) {
-        String lineA = null;
+    /**
+     * @return number of levels of the index probed by an index nested join, that is the number of pages read
+     * to find the first match of a key
+     */
+    private int getIndexHeight(Join node) {
+        Scan scan = IndexNestedJoin.innerScan(node.getRight());
+        Attribute rightattr = (Attribute) node.getCondition().getRhs();
+        return getIndexHeight(scan.getTabName(), rightattr.getColName());
+    }
 
-        // First line = number of tuples
+    private int getIndexHeight(String tabname, String colname) {
         try {
-            lineA = in.readLine();
+            return StatisticsCatalog.getIndexHeight(tabname, colname);
         } catch (IOException io) {
-            System.out.println("Error in reading first line");
-            System.exit(1);
-        }
-        StringTokenizer tokenizer = new StringTokenizer(lineA);
-        if (tokenizer.countTokens() != 1) {
-            System.out.println("incorrect format of statistics file");
-            System.exit(1);
+            System.err.println("error in reading the index of " + tabname);
+            isFeasible = false;
+            return 0;
         }
+    }
 
-        String temp = tokenizer.nextToken();
-        /* number of tuples in this table; */
-        return Integer.parseInt(temp);
+    /**
+     * Cost of the external sort of a table: the runs are created (one read and one write of the table)
+     * and then merged with numbuff-1 runs at a time, each merge pass reading and writing the table once.
+     * The expected run size depends on the run generation strategy of the Sorter.
+     */
+    static int getSortCost(int pages, int numbuff) {
+        int numRuns = (int) Math.ceil(pages / Sorter.expectedRunPages(numbuff));
+        return 2 * pages * (1 + getMergePasses(numRuns, numbuff - 1));
     }
 
     /**
-     * @param num x
-     * @param base log base
-     * @return ceiling of log(x) base the number given.
+     * @param numRuns number of sorted runs
+     * @param fanIn number of runs merged at a time
+     * @return number of passes needed to merge the runs into one, 0 if there is a single run
      */
-    private int getCeilLog(int num, int base) {
-        int ans = 0;
-        while (num > 0) {
-            num /= base;
-            ans++;
+    private static int getMergePasses(int numRuns, int fanIn) {
+        fanIn = Math.max(2, fanIn);
+        int passes = 0;
+        while (numRuns > 1) {
+            numRuns = (int) Math.ceil((double) numRuns / fanIn);
+            passes++;
         }
-        return ans;
+        return passes;
     }
 }
\ No newline at end of file
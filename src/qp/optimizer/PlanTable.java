@@ -0,0 +1,87 @@
+/**
+ * Table of the dynamic programming optimizer: the best plan found for each set of relations, the set being
+ * a bitmask of the relations of the query. Open addressing on the primitive keys, so that looking a set up
+ * neither allocates nor hashes a collection.
+ **/
+
+package qp.optimizer;
+
+import qp.operators.Operator;
+
+class PlanTable {
+
+    private long[] keys;            // 0 marks an empty slot, a set of relations is never empty
+    private Operator[] plans;
+    private int[] costs;
+    private int size;
+
+    PlanTable() {
+        keys = new long[64];
+        plans = new Operator[64];
+        costs = new int[64];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the best plan for the set of relations, null if there is none yet
+     */
+    Operator getPlan(long set) {
+        int slot = find(set);
+        return keys[slot] == set ? plans[slot] : null;
+    }
+
+    /**
+     * @return the cost of the best plan for the set of relations, Integer.MAX_VALUE if there is none yet
+     */
+    int getCost(long set) {
+        int slot = find(set);
+        return keys[slot] == set ? costs[slot] : Integer.MAX_VALUE;
+    }
+
+    void put(long set, Operator plan, int cost) {
+        int slot = find(set);
+        if (keys[slot] != set) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+                slot = find(set);
+            }
+            keys[slot] = set;
+            size++;
+        }
+        plans[slot] = plan;
+        costs[slot] = cost;
+    }
+
+    /**
+     * @return the slot of the set, or the empty slot where it would be inserted
+     */
+    private int find(long set) {
+        int mask = keys.length - 1;
+        long h = set * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (keys[slot] != 0 && keys[slot] != set) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldkeys = keys;
+        Operator[] oldplans = plans;
+        int[] oldcosts = costs;
+        keys = new long[2 * oldkeys.length];
+        plans = new Operator[keys.length];
+        costs = new int[keys.length];
+        for (int i = 0; i < oldkeys.length; i++) {
+            if (oldkeys[i] != 0) {
+                int slot = find(oldkeys[i]);
+                keys[slot] = oldkeys[i];
+                plans[slot] = oldplans[i];
+                costs[slot] = oldcosts[i];
+            }
+        }
+    }
+}
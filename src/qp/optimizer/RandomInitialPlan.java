@@ -58,6 +58,7 @@ public class RandomInitialPlan {
             createJoinOp();
         }
         createProjectOp();
+        createDistinctOp();
         if (numOrderBy != 0){
         	createOrderByOp();
         }
@@ -74,7 +75,12 @@ public class RandomInitialPlan {
 
         for (int i = 0; i < numTables; i++) {  // For each table in from list
             String tabname = (String) fromlist.elementAt(i);
-            Scan op1 = new Scan(tabname, OpType.SCAN);
+            Scan op1;
+            if (PageFile.isPageFile(tabname + ".tbl")) {
+                op1 = new MappedScan(tabname, OpType.SCAN);
+            } else {
+                op1 = new Scan(tabname, OpType.SCAN);
+            }
             tempop = op1;
 
             MapTableToOp(tabname, op1);
@@ -86,6 +92,17 @@ public class RandomInitialPlan {
         }
     }
 
+    /**
+     * Create Distinct Operator on top of the projection if the query is SELECT DISTINCT
+     **/
+    public void createDistinctOp() {
+        Operator base = root;
+        if (sqlquery.isDistinct()) {
+            root = new Distinct(base, OpType.DISTINCT);
+            root.setSchema(base.getSchema());
+        }
+    }
+
     /**
      * Create OrderBy Operator for the attributes mentioned in from list
      **/
@@ -93,7 +110,10 @@ public class RandomInitialPlan {
         Operator base = root;
         /* The last selection is the root of the plan tree constructed thus far */
         if (orderbylist.size() != 0){
-        	root = new OrderBy(base, orderbylist, OpType.ORDERBY);
+        	if (sqlquery.hasLimit())
+        		root = new TopKOrderBy(base, orderbylist, sqlquery.getLimit(), OpType.ORDERBY);
+        	else
+        		root = new OrderBy(base, orderbylist, OpType.ORDERBY);
         	root.setSchema(base.getSchema());
         }
     }
@@ -109,21 +129,26 @@ public class RandomInitialPlan {
             op1.setSchema(schm);
             _if.close();
         } catch (Exception e) {
-            System.err.println("RandomInitialPlan:Error reading Schema of the table: " + filename);
-            System.exit(1);
+            throw new IllegalStateException("RandomInitialPlan:Error reading Schema of the table: " + filename, e);
         }
         tab_op_hash.put(tabname, op1);
     }
 
     /**
-     * Create Selection Operators for each of the selection condition mentioned in Condition list
+     * Create Selection Operators for each of the selection condition mentioned in Condition list.
+     * The scan of a table is replaced by an index scan when a condition on it is selective enough,
+     * that condition is then evaluated by the index scan instead of a select.
      **/
     public void createSelectOp() {
-        Select newOperator = null;
+        Operator newOperator = null;
+        Vector<Condition> indexed = createIndexScanOp();
+        if (!indexed.isEmpty()) {
+            newOperator = (Operator) tab_op_hash.get(indexed.lastElement().getLhs().getTabName());
+        }
 
         for (int j = 0; j < selectionlist.size(); j++) {
             Condition cn = (Condition) selectionlist.elementAt(j);
-            if (cn.getOpType() == Condition.SELECT) { // the other type is Join
+            if (cn.getOpType() == Condition.SELECT && !indexed.contains(cn)) { // the other type is Join
                 String tabname = cn.getLhs().getTabName();
 
                 Operator baseOperator = (Operator) tab_op_hash.get(tabname);
@@ -139,6 +164,34 @@ public class RandomInitialPlan {
             root = newOperator; // if no join in query, it will simply be nested select operators
     }
 
+    /**
+     * Pushes the selection conditions on each table down to its scan, which skips the pages they cannot match,
+     * and replaces the scan by an index scan if it is cheaper for one of the conditions
+     * @return the conditions evaluated by index scans
+     */
+    private Vector<Condition> createIndexScanOp() {
+        Vector<Condition> indexed = new Vector<>();
+        for (int i = 0; i < fromlist.size(); i++) {
+            String tabname = (String) fromlist.elementAt(i);
+            Scan scan = (Scan) tab_op_hash.get(tabname);
+            Vector<Condition> conditions = new Vector<>();
+            for (int j = 0; j < selectionlist.size(); j++) {
+                Condition cn = (Condition) selectionlist.elementAt(j);
+                if (cn.getOpType() == Condition.SELECT && cn.getLhs().getTabName().equals(tabname))
+                    conditions.add(cn);
+            }
+            scan.setPushedConditions(conditions);
+            Condition cn = new PlanCost().chooseIndexCondition(scan, conditions);
+            if (cn != null) {
+                IndexScan indexScan = new IndexScan(tabname, cn, OpType.SCAN);
+                indexScan.setSchema(scan.getSchema());
+                updateHashtable(scan, indexScan);
+                indexed.add(cn);
+            }
+        }
+        return indexed;
+    }
+
     /**
      * create join operators
      **/
@@ -1,10 +1,16 @@
-/* performs randomized optimization, iterative improvement algorithm  */
+/* performs randomized optimization: iterative improvement, simulated annealing, or two phase optimization.
+   The random restarts, the neighbours of a step and the annealing chains are searched in parallel. */
 package qp.optimizer;
 
 import qp.utils.*;
 import qp.operators.*;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class RandomOptimizer {
 
@@ -16,11 +22,59 @@ public class RandomOptimizer {
     /* Number of alternative methods available for a node as specified above */
     public static final int NUMCHOICES = 3;
 
+    /* enumeration of the search strategies */
+    public static final int ITERATIVE_IMPROVEMENT = 0;  // random restarts of iterative improvement
+    public static final int SIMULATED_ANNEALING = 1;    // simulated annealing from random initial plans
+    public static final int TWO_PHASE = 2;              // iterative improvement, then simulated annealing from the best local minimum
+
+    /* parameters of simulated annealing */
+    private static final double SA_START_TEMPERATURE = 2.0;    // start temperature, relative to the cost of the initial plan
+    private static final double TPO_START_TEMPERATURE = 0.1;   // start temperature of the second phase of 2PO, relative to the cost of the local minimum
+    private static final double TEMPERATURE_REDUCTION = 0.95;  // factor applied to the temperature after each stage
+    private static final int MOVES_PER_JOIN = 16;              // moves of a stage, per join of the query
+    private static final int FROZEN_STAGES = 4;                // stages without a better plan after which a cold search stops
+
+    private static int parallelism = Runtime.getRuntime().availableProcessors();  // Number of worker threads
+    private static ForkJoinPool workers;  // Threads searching the plans, created on first use
+
     SQLQuery sqlquery;     // Vector of Vectors of Select + From + Where + GroupBy
     int numJoin;          // Number of joins in this query plan
+    int mode;             // The search strategy
+
+    /**
+     * A plan with its cost
+     */
+    private static final class CostedPlan {
+        final Operator plan;
+        final int cost;
+
+        CostedPlan(Operator plan, int cost) {
+            this.plan = plan;
+            this.cost = cost;
+        }
+    }
 
     public RandomOptimizer(SQLQuery sqlquery) {
+        this(sqlquery, ITERATIVE_IMPROVEMENT);
+    }
+
+    /**
+     * @param mode, the search strategy: ITERATIVE_IMPROVEMENT, SIMULATED_ANNEALING or TWO_PHASE
+     */
+    public RandomOptimizer(SQLQuery sqlquery, int mode) {
         this.sqlquery = sqlquery;
+        this.mode = mode;
+    }
+
+    /**
+     * Sets the number of threads searching the plans, 1 to search on the calling thread only
+     */
+    public static synchronized void setParallelism(int threads) {
+        parallelism = Math.max(1, threads);
+    }
+
+    public static synchronized int getParallelism() {
+        return parallelism;
     }
 
     /**
@@ -49,14 +103,10 @@ public class RandomOptimizer {
     }
 
     /**
-     * implementation of Iterative Improvement Algorithm for Randomized optimization of Query Plan
+     * Randomized optimization of the Query Plan with the search strategy of this optimizer
      **/
     public Operator getOptimizedPlan() {
-        RandomInitialPlan rip = new RandomInitialPlan(sqlquery);
-        numJoin = rip.getNumJoins();
-
-        int MINCOST = Integer.MAX_VALUE;
-        Operator finalPlan = null;
+        numJoin = new RandomInitialPlan(sqlquery).getNumJoins();
 
         /* NUMITER is number of times random restart */
 
@@ -67,76 +117,192 @@ public class RandomOptimizer {
             NUMITER = 1;
         }
 
-        /* Randomly restart the gradient descent until the maximum specified number of random restarts (NUMITER) has satisfied */
-
-        for (int j = 0; j < NUMITER; j++) {
-            Operator initPlan = rip.prepareInitialPlan();
-
-            modifySchema(initPlan);
-            Debug.printWithLines(false, "initial plan");
-            Debug.PPrint(initPlan);
-            PlanCost pc = new PlanCost();
-            int initCost = pc.getCost(initPlan);
-            System.out.println(initCost);
-
-            boolean flag = true;
-            int minNeighborCost = initCost; //just initialization purpose;
-            Operator minNeighbor = initPlan; //just initialization purpose;
-            if (numJoin != 0) {
-
-                while (flag) {   // flag = false when local minimum is reached
-                    Debug.printWithLines(false, "while");
-                    Operator initPlanCopy = (Operator) initPlan.clone();
-                    minNeighbor = getNeighbor(initPlanCopy);
-
-                    Debug.printWithLines(false, "neighbour");
-                    Debug.PPrint(minNeighbor);
-                    pc = new PlanCost();
-                    minNeighborCost = pc.getCost(minNeighbor);
-                    System.out.println("  " + minNeighborCost);
-
-                    /* In this loop we consider from the possible neighbors (randomly selected) and take the minimum among for next step */
-
-                    for (int i = 1; i < 2 * numJoin; i++) {
-                        initPlanCopy = (Operator) initPlan.clone();
-                        Operator neighbor = getNeighbor(initPlanCopy);
-                        Debug.printWithLines(false, "neighbour");
-                        Debug.PPrint(neighbor);
-                        pc = new PlanCost();
-                        int neighborCost = pc.getCost(neighbor);
-                        System.out.println(neighborCost);
-
-
-                        if (neighborCost < minNeighborCost) {
-                            minNeighbor = neighbor;
-                            minNeighborCost = neighborCost;
-                        }
-                    }
-                    if (minNeighborCost < initCost) {
-                        initPlan = minNeighbor;
-                        initCost = minNeighborCost;
-                    } else {
-                        minNeighbor = initPlan;
-                        minNeighborCost = initCost;
-
-                        flag = false;   // local minimum reached
+        CostedPlan finalPlan;
+        switch (mode) {
+            case SIMULATED_ANNEALING:
+                finalPlan = cheapest(annealingChains(null));
+                break;
+            case TWO_PHASE:
+                /* the annealing starts cold from the best local minimum of the iterative improvement */
+                CostedPlan localMinimum = cheapest(restarts(NUMITER));
+                finalPlan = cheapest(annealingChains(localMinimum));
+                break;
+            default:
+                finalPlan = cheapest(restarts(NUMITER));
+                break;
+        }
+
+        System.out.println("\n\n\n");
+        Debug.printWithLines(false, "final plan");
+        Debug.PPrint(finalPlan.plan);
+        System.out.println("  " + finalPlan.cost);
+        OptimizerTrace.record(OptimizerTrace.SUMMARY, "RandomOptimizer", "final plan", finalPlan.plan, finalPlan.cost);
+        return finalPlan.plan;
+    }
+
+    /**
+     * @return the tasks of numRestarts iterative improvements, each from its own random initial plan
+     */
+    private List<Callable<CostedPlan>> restarts(int numRestarts) {
+        List<Callable<CostedPlan>> tasks = new ArrayList<>();
+        for (int j = 0; j < numRestarts; j++) {
+            tasks.add(() -> iterativeImprovement(initialPlan()));
+        }
+        return tasks;
+    }
+
+    /**
+     * @param start, the plan the chains start from, null to start each chain from a random initial plan
+     * @return the tasks of the simulated annealing chains, one per worker thread
+     */
+    private List<Callable<CostedPlan>> annealingChains(CostedPlan start) {
+        List<Callable<CostedPlan>> tasks = new ArrayList<>();
+        for (int j = 0; j < getParallelism(); j++) {
+            if (start == null) {
+                tasks.add(() -> {
+                    CostedPlan initPlan = initialPlan();
+                    return simulatedAnnealing(initPlan, SA_START_TEMPERATURE * initPlan.cost);
+                });
+            } else {
+                tasks.add(() -> simulatedAnnealing(start, TPO_START_TEMPERATURE * start.cost));
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * @return a random initial plan with its cost. A RandomInitialPlan builds the plan in its own
+     * fields, so each plan gets its own.
+     */
+    private CostedPlan initialPlan() {
+        Operator initPlan = new RandomInitialPlan(sqlquery).prepareInitialPlan();
+        modifySchema(initPlan);
+        int initCost = new PlanCost().getCost(initPlan);
+        OptimizerTrace.record(OptimizerTrace.PLANS, "RandomOptimizer", "initial plan", initPlan, initCost);
+        return new CostedPlan(initPlan, initCost);
+    }
+
+    /**
+     * Iterative Improvement: moves to the cheapest of 2 * numJoin random neighbours while it is
+     * cheaper than the current plan
+     * @return the local minimum reached
+     */
+    private CostedPlan iterativeImprovement(CostedPlan initPlan) {
+        if (numJoin != 0) {
+            while (true) {
+                /* In this step we consider from the possible neighbors (randomly selected) and take the minimum among for next step */
+                CostedPlan minNeighbor = cheapest(neighbors(initPlan.plan, 2 * numJoin));
+                if (minNeighbor.cost < initPlan.cost) {
+                    initPlan = minNeighbor;
+                } else {
+                    break;   // local minimum reached
+                }
+            }
+            OptimizerTrace.record(OptimizerTrace.SUMMARY, "RandomOptimizer", "local minimum", initPlan.plan, initPlan.cost);
+        }
+        return initPlan;
+    }
+
+    /**
+     * @return the tasks that each build and cost a random neighbour of the plan, on a clone of it
+     */
+    private List<Callable<CostedPlan>> neighbors(Operator plan, int numNeighbors) {
+        List<Callable<CostedPlan>> tasks = new ArrayList<>();
+        for (int i = 0; i < numNeighbors; i++) {
+            tasks.add(() -> {
+                Operator neighbor = getNeighbor((Operator) plan.clone());
+                int neighborCost = new PlanCost().getCost(neighbor);
+                OptimizerTrace.record(OptimizerTrace.PLANS, "RandomOptimizer", "neighbour", neighbor, neighborCost);
+                return new CostedPlan(neighbor, neighborCost);
+            });
+        }
+        return tasks;
+    }
+
+    /**
+     * Simulated Annealing: a random neighbour is always accepted when it is cheaper than the current plan,
+     * and with probability e^(-increase / temperature) otherwise. The temperature is reduced after each
+     * stage of MOVES_PER_JOIN * numJoin moves, and the search is frozen when the temperature is below 1 and
+     * the best plan has not improved during FROZEN_STAGES stages.
+     * @return the best plan visited
+     */
+    private CostedPlan simulatedAnnealing(CostedPlan initPlan, double temperature) {
+        CostedPlan best = initPlan;
+        if (numJoin == 0) {
+            return best;
+        }
+        CostedPlan current = initPlan;
+        int stagesWithoutImprovement = 0;
+        while (temperature >= 1 || stagesWithoutImprovement < FROZEN_STAGES) {
+            boolean improved = false;
+            for (int move = 0; move < MOVES_PER_JOIN * numJoin; move++) {
+                Operator neighbor = getNeighbor((Operator) current.plan.clone());
+                int neighborCost = new PlanCost().getCost(neighbor);
+                OptimizerTrace.record(OptimizerTrace.PLANS, "RandomOptimizer", "neighbour", neighbor, neighborCost);
+                double increase = (double) neighborCost - current.cost;
+                if (increase <= 0 || RandNumb.randDouble() < Math.exp(-increase / temperature)) {
+                    current = new CostedPlan(neighbor, neighborCost);
+                    if (current.cost < best.cost) {
+                        best = current;
+                        improved = true;
                     }
                 }
-                Debug.printWithLines(false, "local minimum");
-                Debug.PPrint(minNeighbor);
-                System.out.println(" " + minNeighborCost);
+            }
+            stagesWithoutImprovement = improved ? 0 : stagesWithoutImprovement + 1;
+            temperature *= TEMPERATURE_REDUCTION;
+        }
+        OptimizerTrace.record(OptimizerTrace.SUMMARY, "RandomOptimizer", "annealing minimum", best.plan, best.cost);
+        return best;
+    }
 
+    /**
+     * Runs the tasks, in parallel on the worker threads if there are several
+     * @return the cheapest of the plans they return, the first one in case of a tie
+     */
+    private static CostedPlan cheapest(List<Callable<CostedPlan>> tasks) {
+        List<CostedPlan> plans = new ArrayList<>();
+        if (getParallelism() > 1) {
+            List<ForkJoinTask<CostedPlan>> forked = new ArrayList<>();
+            for (Callable<CostedPlan> task : tasks) {
+                forked.add(ForkJoinTask.adapt(task));
+            }
+            if (ForkJoinTask.inForkJoinPool()) {
+                ForkJoinTask.invokeAll(forked);  // nested in a task of the workers, e.g. the neighbours of a restart
+            } else {
+                workers().submit(() -> ForkJoinTask.invokeAll(forked)).join();
             }
-            if (minNeighborCost <= MINCOST) { // modified < to <=
-                MINCOST = minNeighborCost;
-                finalPlan = minNeighbor;
+            for (ForkJoinTask<CostedPlan> task : forked) {
+                plans.add(task.join());
+            }
+        } else {
+            for (Callable<CostedPlan> task : tasks) {
+                try {
+                    plans.add(task.call());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
             }
         }
-        System.out.println("\n\n\n");
-        Debug.printWithLines(false, "final plan");
-        Debug.PPrint(finalPlan);
-        System.out.println("  " + MINCOST);
-        return finalPlan;
+        CostedPlan min = null;
+        for (CostedPlan plan : plans) {
+            if (min == null || plan.cost < min.cost) {
+                min = plan;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * @return the pool of worker threads, with the current parallelism
+     */
+    private static synchronized ForkJoinPool workers() {
+        if (workers == null || workers.getParallelism() != parallelism) {
+            if (workers != null) {
+                workers.shutdown(); // running tasks are completed
+            }
+            workers = new ForkJoinPool(parallelism);
+        }
+        return workers;
     }
 
 
@@ -145,7 +311,6 @@ public class RandomOptimizer {
      * @return the modified plan
      **/
     protected Operator neighborMeth(Operator root, int joinNum) {
-        Debug.printWithLines(false, "neighbour by method change");
         int numJMeth = JoinType.numJoinTypes();
         if (numJMeth > 1) {
             /* find the node that is to be altered */
@@ -165,7 +330,6 @@ public class RandomOptimizer {
      * @return the modified plan
      **/
     protected Operator neighborCommut(Operator root, int joinNum) {
-        Debug.printWithLines(false, "neighbour by commutative");
         /*  find the node to be altered */
         Join node = (Join) findNodeAt(root, joinNum);
         Operator left = node.getLeft();
@@ -212,7 +376,6 @@ public class RandomOptimizer {
 
     /** This is given plan (A X B) X C **/
     protected void transformLefttoRight(Join op, Join left) {
-        Debug.printWithLines(false, "left to right neighbour");
         Operator right = op.getRight();
         Operator leftleft = left.getLeft();
         Operator leftright = left.getRight();
@@ -222,7 +385,6 @@ public class RandomOptimizer {
         /* CASE 1 : ( A X a1b1 B) X b4c4  C     =  A X a1b1 (B X b4c4 C) a1b1,  b4c4 are the join conditions at that join operator */
 
         if (leftright.getSchema().contains(leftAttr)) {
-            Debug.printWithLines(false, "CASE 1");
             temp = new Join(leftright, right, op.getCondition(), OpType.JOIN);
             temp.setJoinType(op.getJoinType());
             temp.setNodeIndex(op.getNodeIndex());
@@ -233,7 +395,6 @@ public class RandomOptimizer {
             op.setCondition(left.getCondition());
 
         } else {
-            Debug.printWithLines(false, "CASE 2");
             /**CASE 2:   ( A X a1b1 B) X a4c4  C     =  B X b1a1 (A X a4c4 C)
              ** a1b1,  a4c4 are the join conditions at that join operator
              **/
@@ -251,7 +412,6 @@ public class RandomOptimizer {
     }
 
     protected void transformRighttoLeft(Join op, Join right) {
-        Debug.printWithLines(false, "right to left neighbour");
         Operator left = op.getLeft();
         Operator rightleft = right.getLeft();
         Operator rightright = right.getRight();
@@ -261,7 +421,6 @@ public class RandomOptimizer {
          ** a1b1,  b4c4 are the join conditions at that join operator
          **/
         if (rightleft.getSchema().contains(rightAttr)) {
-            Debug.printWithLines(false, "CASE 3");
             temp = new Join(left, rightleft, op.getCondition(), OpType.JOIN);
             temp.setJoinType(op.getJoinType());
             temp.setNodeIndex(op.getNodeIndex());
@@ -274,7 +433,6 @@ public class RandomOptimizer {
             /* CASE 4 :  A X a1c1 (B X b4c4  C)     =  (A X a1c1 C ) X c4b4 B
              * a1b1,  b4c4 are the join conditions at that join operator
              **/
-            Debug.printWithLines(false, "CASE 4");
             temp = new Join(left, rightright, op.getCondition(), OpType.JOIN);
             temp.setJoinType(op.getJoinType());
             temp.setNodeIndex(op.getNodeIndex());
@@ -310,6 +468,8 @@ public class RandomOptimizer {
             return findNodeAt(((Select) node).getBase(), joinNum);
         } else if (node.getOpType() == OpType.PROJECT) {
             return findNodeAt(((Project) node).getBase(), joinNum);
+        } else if (node.getOpType() == OpType.DISTINCT) {
+            return findNodeAt(((Distinct) node).getBase(), joinNum);
         } else if (node.getOpType() == OpType.ORDERBY) {
         	return findNodeAt(((OrderBy) node).getBase(), joinNum);
         }
@@ -338,6 +498,10 @@ public class RandomOptimizer {
             modifySchema(base);
             Vector attrlist = ((Project) node).getProjAttr();
             node.setSchema(base.getSchema().subSchema(attrlist));
+        } else if (node.getOpType() == OpType.DISTINCT) {
+            Operator base = ((Distinct) node).getBase();
+            modifySchema(base);
+            node.setSchema(base.getSchema());
         }
     }
 
@@ -355,12 +519,21 @@ public class RandomOptimizer {
                     joinOperator = new NestedJoin((Join) node);
                     break;
                 case JoinType.HASHJOIN:
+                    joinOperator = new HashJoin((Join) node);
+                    break;
                 case JoinType.SORTMERGE:
                 	joinOperator = new SortMerge((Join) node);
                 	break;
                 case JoinType.BLOCKNESTED:
                     joinOperator = new BlockNestedJoin((Join) node);
                     break;
+                case JoinType.INDEXNESTED:
+                    /* without an index on the right table, fall back to a block nested join */
+                    if (IndexNestedJoin.canProbe((Join) node))
+                        joinOperator = new IndexNestedJoin((Join) node);
+                    else
+                        joinOperator = new BlockNestedJoin((Join) node);
+                    break;
                 default:
                     return node;
             }
@@ -371,11 +544,20 @@ public class RandomOptimizer {
         } else if (node.getOpType() == OpType.SELECT) {
             Operator base = makeExecPlan(((Select) node).getBase());
             ((Select) node).setBase(base);
+            /* consecutive selects on the same input are evaluated in a single pass */
+            if (base.getOpType() == OpType.SELECT) {
+                ((Select) node).fuse((Select) base);
+            }
             return node;
         } else if (node.getOpType() == OpType.PROJECT) {
             Operator base = makeExecPlan(((Project) node).getBase());
             ((Project) node).setBase(base);
             return node;
+        } else if (node.getOpType() == OpType.DISTINCT) {
+            Operator base = makeExecPlan(((Distinct) node).getBase());
+            ((Distinct) node).setBase(base);
+            ((Distinct) node).setNumBuff(BufferManager.getBuffers());
+            return node;
         } else if (node.getOpType() == OpType.ORDERBY) {
         	OrderBy ob = (OrderBy) node;
         	Operator base = makeExecPlan(ob.getBase());
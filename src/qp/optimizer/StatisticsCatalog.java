@@ -0,0 +1,163 @@
+/**
+ * Process-wide catalog of the statistics of the tables, used by PlanCost instead of reading the files of a
+ * table every time a plan is costed. The statistics of a table are loaded the first time they are needed,
+ * and loaded again only when one of the files they come from is modified.
+ **/
+
+package qp.optimizer;
+
+import qp.utils.BPlusTree;
+import qp.utils.Histogram;
+import qp.utils.ZoneMap;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class StatisticsCatalog {
+
+    private static final ConcurrentHashMap<String, TableStatistics> tables = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, long[]> indexHeights = new ConcurrentHashMap<>();  // index file -> {modification time, height}
+
+    private StatisticsCatalog() {
+    }
+
+    /**
+     * Immutable statistics of a table: the content of <tablename>.stat, and the histograms and the zone map
+     * of the table if it has them
+     */
+    public static final class TableStatistics {
+        private final int numTuples;
+        private final int[] numDistinct;        // Number of distinct values of each attribute, in the order of the schema
+        private final Histogram[] histograms;   // null if the table has no .hist file
+        private final ZoneMap zoneMap;          // null if the table has no .zm file
+        private final long[] modified;          // Modification times of the .stat, .hist and .zm files when loaded
+
+        private TableStatistics(int numTuples, int[] numDistinct, Histogram[] histograms, ZoneMap zoneMap, long[] modified) {
+            this.numTuples = numTuples;
+            this.numDistinct = numDistinct;
+            this.histograms = histograms;
+            this.zoneMap = zoneMap;
+            this.modified = modified;
+        }
+
+        public int getNumTuples() {
+            return numTuples;
+        }
+
+        public int getNumCols() {
+            return numDistinct.length;
+        }
+
+        public int getNumDistinct(int i) {
+            return numDistinct[i];
+        }
+
+        /**
+         * @return the histogram of the given attribute, null if there is none
+         */
+        public Histogram getHistogram(String colname) {
+            if (histograms == null) {
+                return null;
+            }
+            for (Histogram histogram : histograms) {
+                if (histogram.getColName().equals(colname))
+                    return histogram;
+            }
+            return null;
+        }
+
+        public ZoneMap getZoneMap() {
+            return zoneMap;
+        }
+    }
+
+    /**
+     * @return the statistics of the table, read from its files if they were modified since they were last read
+     */
+    public static TableStatistics get(String tabname) {
+        long[] modified = modificationTimes(tabname);
+        TableStatistics stats = tables.get(tabname);
+        if (stats == null || !Arrays.equals(stats.modified, modified)) {
+            stats = load(tabname, modified);
+            tables.put(tabname, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * @return number of levels of the index on the given attribute, read from the index file if it was modified
+     * since it was last read
+     */
+    public static int getIndexHeight(String tabname, String colname) throws IOException {
+        String fname = BPlusTree.fileName(tabname, colname);
+        long modified = new File(fname).lastModified();
+        long[] entry = indexHeights.get(fname);
+        if (entry == null || entry[0] != modified) {
+            BPlusTree index = new BPlusTree(fname);
+            entry = new long[]{modified, index.getHeight()};
+            index.close();
+            indexHeights.put(fname, entry);
+        }
+        return (int) entry[1];
+    }
+
+    /**
+     * Forgets all the statistics, they are read again when they are needed
+     */
+    public static void clear() {
+        tables.clear();
+        indexHeights.clear();
+    }
+
+    private static long[] modificationTimes(String tabname) {
+        return new long[]{
+                new File(tabname + ".stat").lastModified(),
+                new File(Histogram.fileName(tabname)).lastModified(),
+                new File(ZoneMap.fileName(tabname)).lastModified()};
+    }
+
+    /**
+     * the statistics file <tablename>.stat contains the number of tuples in the table on its first line,
+     * and the number of distinct values of each attribute on its second line
+     */
+    private static TableStatistics load(String tabname, long[] modified) {
+        String filename = tabname + ".stat";
+        BufferedReader in = null;
+        try {
+            in = new BufferedReader(new FileReader(filename));
+        } catch (IOException io) {
+            throw new UncheckedIOException("Error in opening file " + filename, io);
+        }
+
+        String lineA = null;
+        String lineB = null;
+        try {
+            lineA = in.readLine();
+            lineB = in.readLine();
+            in.close();
+        } catch (IOException io) {
+            throw new UncheckedIOException("Error in reading file " + filename, io);
+        }
+
+        // First line = number of tuples
+        StringTokenizer tokenizer = new StringTokenizer(lineA);
+        if (tokenizer.countTokens() != 1) {
+            throw new IllegalStateException("incorrect format of statistics file " + filename);
+        }
+        int numTuples = Integer.parseInt(tokenizer.nextToken());
+
+        // Second line = number of distinct values of each attribute
+        if (lineB == null) {
+            throw new IllegalStateException("incorrect format of statistics file " + filename);
+        }
+        tokenizer = new StringTokenizer(lineB);
+        int[] numDistinct = new int[tokenizer.countTokens()];
+        for (int i = 0; i < numDistinct.length; i++) {
+            numDistinct[i] = Integer.parseInt(tokenizer.nextToken());
+        }
+
+        return new TableStatistics(numTuples, numDistinct, Histogram.read(tabname), ZoneMap.read(tabname), modified);
+    }
+}
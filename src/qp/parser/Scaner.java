@@ -262,34 +262,43 @@ public class Scaner implements java_cup.runtime.Scanner {
 		/* 49 */ YY_NO_ANCHOR,
 		/* 50 */ YY_NO_ANCHOR,
 		/* 51 */ YY_NO_ANCHOR,
-		/* 52 */ YY_NO_ANCHOR
+		/* 52 */ YY_NO_ANCHOR,
+		/* 53 */ YY_NO_ANCHOR,
+		/* 54 */ YY_NO_ANCHOR,
+		/* 55 */ YY_NO_ANCHOR,
+		/* 56 */ YY_NO_ANCHOR,
+		/* 57 */ YY_NO_ANCHOR,
+		/* 58 */ YY_NO_ANCHOR,
+		/* 59 */ YY_NOT_ACCEPT
 	};
 	private int yy_cmap[] = unpackFromString(1,130,
-"0:9,18:2,0,18:2,0:18,22,23,21,24:3,33,26,24:2,17,24,28,24,35,24,20:10,24,30" +
+"0:9,18:2,0,18:2,0:18,22,23,21,24:3,33,26,24:2,17,24,28,37,35,24,20:10,24,30" +
 ",31,29,32,24:2,19,13,4,12,2,6,19,11,15,19:2,3,9,16,8,19:2,7,1,5,19:2,10,19," +
 "14,19,24,25,24:2,19,24,19:13,27,19:5,27,19:6,24,34,24:2,0,36:2")[0];
 
-	private int yy_rmap[] = unpackFromString(1,53,
+	private int yy_rmap[] = unpackFromString(1,60,
 "0,1,2,3,2:3,4,5,2:8,6:5,7,8,9,10,11,12,13,14,15,16,17,18,19,20,21,22,23,24," +
-"25,26,27,28,6,29,30,31,32,33,6,34,35")[0];
+"25,26,27,28,6,29,30,31,32,33,6,34,35,36,37,38,39,6,40:2")[0];
 
-	private int yy_nxt[][] = unpackFromString(36,37,
-"-1,1,50:4,37,50,51,50,42,50,52,50:4,2,3,50,-1,22,3,24,-1:3,50,4,5,6,7,8,26," +
-"28,9,10,-1,50,43,50:14,-1:2,50,44,-1:6,50,-1:64,3,-1:3,3,-1:43,13,-1:36,14," +
-"-1:8,50:16,-1:2,50,44,-1:6,50,-1:10,22:17,-1,22:2,11,22:3,30,-1,22:9,-1:2,5" +
-"0:8,17,50:7,-1:2,50,44,-1:6,50,-1:38,12,-1:8,50,18,50:14,-1:2,50,44,-1:6,50" +
-",-1:42,15,-1:4,50:4,19,50:11,-1:2,50,44,-1:6,50,-1:43,16,-1:3,50:13,20,50:2" +
-",-1:2,50,44,-1:6,50,-1:30,22,-1:3,22:3,-1:10,50:4,21,50:11,-1:2,50,44,-1:6," +
-"50,-1:10,50:7,23,50:8,-1:2,50,44,-1:6,50,-1:10,50:6,25,50:9,-1:2,50,44,-1:6" +
-",50,-1:10,50:3,27,50:12,-1:2,50,44,-1:6,50,-1:10,50:12,29,50:3,-1:2,50,44,-" +
-"1:6,50,-1:10,50:3,31,50:12,-1:2,50,44,-1:6,50,-1:10,50:6,32,50:9,-1:2,50,44" +
-",-1:6,50,-1:10,50,33,50:14,-1:2,50,44,-1:6,50,-1:10,50,34,50:14,-1:2,50,44," +
-"-1:6,50,-1:10,50:6,35,50:9,-1:2,50,44,-1:6,50,-1:10,50:15,36,-1:2,50,44,-1:" +
-"6,50,-1:10,50:10,38,50:5,-1:2,50,44,-1:6,50,-1:10,50:2,39,50:13,-1:2,50,44," +
-"-1:6,50,-1:10,50:11,47,50:4,-1:2,50,44,-1:6,50,-1:10,48,50:15,-1:2,50,44,-1" +
-":6,50,-1:10,50,40,50:14,-1:2,50,44,-1:6,50,-1:10,50:4,49,50:11,-1:2,50,44,-" +
-"1:6,50,-1:10,50:14,41,50,-1:2,50,44,-1:6,50,-1:10,50:6,45,50:9,-1:2,50,44,-" +
-"1:6,50,-1:10,50:14,46,50,-1:2,50,44,-1:6,50,-1:9");
+	private int yy_nxt[][] = unpackFromString(41,38,
+"-1,1,50,53,50:2,37,50,51,50,42,50,52,50:4,2,3,50,58,22,3,24,-1:3,50,4,5,6,7" +
+",8,26,28,9,10,59,-1,50,43,50:14,-1:2,50,44,-1:6,50,-1:66,3,-1:3,3,-1:44,13," +
+"-1:37,14,-1:9,50:16,-1:2,50,44,-1:6,50,-1:11,22:17,-1,22:2,11,22:3,30,-1,22" +
+":9,-1,22,-1,50:8,17,50:7,-1:2,50,44,-1:6,50,-1:39,12,-1:9,50,18,50:14,-1:2," +
+"50,44,-1:6,50,-1:43,15,-1:5,50:4,19,50:11,-1:2,50,44,-1:6,50,-1:44,16,-1:4," +
+"50:13,20,50:2,-1:2,50,44,-1:6,50,-1:31,22,-1:3,22:3,-1:11,50:4,21,50:11,-1:" +
+"2,50,44,-1:6,50,-1:11,50:7,23,50:8,-1:2,50,44,-1:6,50,-1:11,50:6,25,50:9,-1" +
+":2,50,44,-1:6,50,-1:11,50:3,27,50:12,-1:2,50,44,-1:6,50,-1:11,50:12,29,50:3" +
+",-1:2,50,44,-1:6,50,-1:11,50:3,31,50:12,-1:2,50,44,-1:6,50,-1:11,50:6,32,50" +
+":9,-1:2,50,44,-1:6,50,-1:11,50,33,50:14,-1:2,50,44,-1:6,50,-1:11,50,34,50:1" +
+"4,-1:2,50,44,-1:6,50,-1:11,50:6,35,50:9,-1:2,50,44,-1:6,50,-1:11,50:15,36,-" +
+"1:2,50,44,-1:6,50,-1:11,50:10,38,50:5,-1:2,50,44,-1:6,50,-1:11,50:2,39,50:1" +
+"3,-1:2,50,44,-1:6,50,-1:11,50:11,47,50:4,-1:2,50,44,-1:6,50,-1:11,48,50:15," +
+"-1:2,50,44,-1:6,50,-1:11,50,40,50:14,-1:2,50,44,-1:6,50,-1:11,50:4,49,50:11" +
+",-1:2,50,44,-1:6,50,-1:11,50:14,41,50,-1:2,50,44,-1:6,50,-1:11,50:6,45,50:9" +
+",-1:2,50,44,-1:6,50,-1:11,50:14,46,50,-1:2,50,44,-1:6,50,-1:11,50:14,54,50," +
+"-1:2,50,44,-1:6,50,-1:11,50:8,55,50:7,-1:2,50,44,-1:6,50,-1:11,50:14,56,50," +
+"-1:2,50,44,-1:6,50,-1:11,50:4,57,50:11,-1:2,50,44,-1:6,50,-1:30,58,-1:17");
 
 	public java_cup.runtime.Symbol next_token ()
 		throws java.io.IOException {
@@ -660,6 +669,48 @@ public class Scaner implements java_cup.runtime.Scanner {
 }
 					case -48:
 						break;
+					case 53:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -49:
+						break;
+					case 54:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -50:
+						break;
+					case 55:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -51:
+						break;
+					case 56:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -52:
+						break;
+					case 57:
+						{
+  yybegin(YYINITIAL);
+  return new Symbol(sym.LIMIT,yyline,yychar,new TokenValue(yytext()));
+}
+					case -53:
+						break;
+					case 58:
+						{ 
+  yybegin(YYINITIAL); 
+  return new Symbol(sym.INTLIT,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -54:
+						break;
 					default:
 						yy_error(YY_E_INTERNAL,false);
 					case -1:
@@ -1,14 +1,14 @@
 package qp.parser;
 //----------------------------------------------------
 // The following code was generated by CUP v0.10k
-// Sat Mar 31 14:34:35 WITA 2018
+// Sat Oct 17 02:00:30 UTC 2026
 //----------------------------------------------------
 import qp.utils.*;
 import java_cup.runtime.*;
 import java.util.*;
 
 /** CUP v0.10k generated parser.
-  * @version Sat Mar 31 14:34:35 WITA 2018
+  * @version Sat Oct 17 02:00:30 UTC 2026
   */
 public class parser extends java_cup.runtime.lr_parser {
 
@@ -21,14 +21,17 @@ public class parser extends java_cup.runtime.lr_parser {
   /** Production table. */
   protected static final short _production_table[][] = 
     unpackFromStrings(new String[] {
-    "\000\030\000\002\003\005\000\002\002\004\000\002\003" +
-    "\010\000\002\003\010\000\002\003\006\000\002\003\006" +
-    "\000\002\004\005\000\002\004\003\000\002\006\005\000" +
-    "\002\006\003\000\002\007\005\000\002\007\003\000\002" +
-    "\010\005\000\002\010\005\000\002\010\004\000\002\010" +
-    "\004\000\002\005\005\000\002\005\004\000\002\011\003" +
-    "\000\002\011\003\000\002\011\003\000\002\011\003\000" +
-    "\002\011\003\000\002\011\003" });
+    "\000\041\000\002\003\003\000\002\002\004\000\002\003" +
+    "\005\000\002\003\005\000\002\003\007\000\002\005\003" +
+    "\000\002\005\003\000\002\004\010\000\002\004\010\000" +
+    "\002\004\006\000\002\004\006\000\002\004\011\000\002" +
+    "\004\011\000\002\004\007\000\002\004\007\000\002\006" +
+    "\005\000\002\006\003\000\002\010\005\000\002\010\003" +
+    "\000\002\011\005\000\002\011\003\000\002\012\005\000" +
+    "\002\012\005\000\002\012\004\000\002\012\004\000\002" +
+    "\007\005\000\002\007\004\000\002\013\003\000\002\013" +
+    "\003\000\002\013\003\000\002\013\003\000\002\013\003" +
+    "\000\002\013\003" });
 
   /** Access to production table. */
   public short[][] production_table() {return _production_table;}
@@ -36,38 +39,52 @@ public class parser extends java_cup.runtime.lr_parser {
   /** Parse-action table. */
   protected static final short[][] _action_table = 
     unpackFromStrings(new String[] {
-    "\000\052\000\004\021\005\001\002\000\006\002\053\024" +
-    "\052\001\002\000\006\004\006\010\007\001\002\000\006" +
-    "\003\047\007\050\001\002\000\004\022\043\001\002\000" +
-    "\006\005\012\022\013\001\002\000\012\002\ufffa\005\ufffa" +
-    "\022\ufffa\024\ufffa\001\002\000\004\004\006\001\002\000" +
-    "\004\004\014\001\002\000\012\002\ufff8\005\ufff8\023\ufff8" +
-    "\024\ufff8\001\002\000\012\002\ufffd\005\016\023\017\024" +
-    "\ufffd\001\002\000\004\004\041\001\002\000\006\003\021" +
-    "\004\006\001\002\000\010\002\uffff\005\037\024\uffff\001" +
-    "\002\000\004\026\036\001\002\000\020\003\025\011\027" +
-    "\012\031\013\032\014\024\015\026\016\030\001\002\000" +
-    "\010\002\ufff6\005\ufff6\024\ufff6\001\002\000\006\004\uffec" +
-    "\026\uffec\001\002\000\010\002\ufff3\005\ufff3\024\ufff3\001" +
-    "\002\000\006\004\uffea\026\uffea\001\002\000\006\004\uffef" +
-    "\026\uffef\001\002\000\006\004\uffeb\026\uffeb\001\002\000" +
-    "\006\004\uffee\026\uffee\001\002\000\006\004\uffed\026\uffed" +
-    "\001\002\000\006\004\006\026\035\001\002\000\010\002" +
-    "\ufff4\005\ufff4\024\ufff4\001\002\000\010\002\ufff5\005\ufff5" +
-    "\024\ufff5\001\002\000\010\002\ufff2\005\ufff2\024\ufff2\001" +
-    "\002\000\006\003\021\004\006\001\002\000\010\002\ufff7" +
-    "\005\ufff7\024\ufff7\001\002\000\012\002\ufff9\005\ufff9\023" +
-    "\ufff9\024\ufff9\001\002\000\012\002\ufffb\005\ufffb\022\ufffb" +
-    "\024\ufffb\001\002\000\004\004\014\001\002\000\012\002" +
-    "\ufffc\005\016\023\045\024\ufffc\001\002\000\006\003\021" +
-    "\004\006\001\002\000\010\002\ufffe\005\037\024\ufffe\001" +
-    "\002\000\030\002\ufff0\003\ufff0\005\ufff0\011\ufff0\012\ufff0" +
-    "\013\ufff0\014\ufff0\015\ufff0\016\ufff0\022\ufff0\024\ufff0\001" +
-    "\002\000\004\004\051\001\002\000\030\002\ufff1\003\ufff1" +
-    "\005\ufff1\011\ufff1\012\ufff1\013\ufff1\014\ufff1\015\ufff1\016" +
-    "\ufff1\022\ufff1\024\ufff1\001\002\000\004\004\006\001\002" +
-    "\000\004\002\000\001\002\000\010\002\001\005\012\024" +
-    "\001\001\002" });
+    "\000\074\000\004\021\006\001\002\000\004\002\076\001" +
+    "\002\000\010\002\001\024\067\026\066\001\002\000\010" +
+    "\004\007\010\011\025\010\001\002\000\006\003\063\007" +
+    "\064\001\002\000\006\004\007\010\051\001\002\000\004" +
+    "\022\045\001\002\000\006\005\014\022\015\001\002\000" +
+    "\012\002\ufff1\005\ufff1\022\ufff1\026\ufff1\001\002\000\004" +
+    "\004\007\001\002\000\004\004\016\001\002\000\014\002" +
+    "\uffef\005\uffef\023\uffef\024\uffef\026\uffef\001\002\000\014" +
+    "\002\ufff8\005\020\023\021\024\ufff8\026\ufff8\001\002\000" +
+    "\004\004\043\001\002\000\006\003\023\004\007\001\002" +
+    "\000\012\002\ufffa\005\041\024\ufffa\026\ufffa\001\002\000" +
+    "\004\027\040\001\002\000\020\003\027\011\031\012\034" +
+    "\013\033\014\026\015\030\016\032\001\002\000\012\002" +
+    "\uffed\005\uffed\024\uffed\026\uffed\001\002\000\006\004\uffe3" +
+    "\027\uffe3\001\002\000\012\002\uffea\005\uffea\024\uffea\026" +
+    "\uffea\001\002\000\006\004\uffe1\027\uffe1\001\002\000\006" +
+    "\004\uffe6\027\uffe6\001\002\000\006\004\uffe2\027\uffe2\001" +
+    "\002\000\006\004\uffe4\027\uffe4\001\002\000\006\004\uffe5" +
+    "\027\uffe5\001\002\000\006\004\007\027\037\001\002\000" +
+    "\012\002\uffeb\005\uffeb\024\uffeb\026\uffeb\001\002\000\012" +
+    "\002\uffec\005\uffec\024\uffec\026\uffec\001\002\000\012\002" +
+    "\uffe9\005\uffe9\024\uffe9\026\uffe9\001\002\000\006\003\023" +
+    "\004\007\001\002\000\012\002\uffee\005\uffee\024\uffee\026" +
+    "\uffee\001\002\000\014\002\ufff0\005\ufff0\023\ufff0\024\ufff0" +
+    "\026\ufff0\001\002\000\012\002\ufff2\005\ufff2\022\ufff2\026" +
+    "\ufff2\001\002\000\004\004\016\001\002\000\014\002\ufff7" +
+    "\005\020\023\047\024\ufff7\026\ufff7\001\002\000\006\003" +
+    "\023\004\007\001\002\000\012\002\ufff9\005\041\024\ufff9" +
+    "\026\ufff9\001\002\000\004\022\057\001\002\000\006\005" +
+    "\014\022\053\001\002\000\004\004\016\001\002\000\014" +
+    "\002\ufff4\005\020\023\055\024\ufff4\026\ufff4\001\002\000" +
+    "\006\003\023\004\007\001\002\000\012\002\ufff6\005\041" +
+    "\024\ufff6\026\ufff6\001\002\000\004\004\016\001\002\000" +
+    "\014\002\ufff3\005\020\023\061\024\ufff3\026\ufff3\001\002" +
+    "\000\006\003\023\004\007\001\002\000\012\002\ufff5\005" +
+    "\041\024\ufff5\026\ufff5\001\002\000\032\002\uffe7\003\uffe7" +
+    "\005\uffe7\011\uffe7\012\uffe7\013\uffe7\014\uffe7\015\uffe7\016" +
+    "\uffe7\022\uffe7\024\uffe7\026\uffe7\001\002\000\004\004\065" +
+    "\001\002\000\032\002\uffe8\003\uffe8\005\uffe8\011\uffe8\012" +
+    "\uffe8\013\uffe8\014\uffe8\015\uffe8\016\uffe8\022\uffe8\024\uffe8" +
+    "\026\uffe8\001\002\000\006\027\074\030\073\001\002\000" +
+    "\004\004\007\001\002\000\010\002\uffff\005\014\026\071" +
+    "\001\002\000\006\027\074\030\073\001\002\000\004\002" +
+    "\ufffd\001\002\000\004\002\ufffc\001\002\000\004\002\ufffb" +
+    "\001\002\000\004\002\ufffe\001\002\000\004\002\000\001" +
+    "\002" });
 
   /** Access to parse-action table. */
   public short[][] action_table() {return _action_table;}
@@ -75,22 +92,30 @@ public class parser extends java_cup.runtime.lr_parser {
   /** <code>reduce_goto</code> table. */
   protected static final short[][] _reduce_table = 
     unpackFromStrings(new String[] {
-    "\000\052\000\004\003\003\001\001\000\002\001\001\000" +
-    "\006\004\007\005\010\001\001\000\002\001\001\000\002" +
-    "\001\001\000\002\001\001\000\002\001\001\000\004\005" +
-    "\041\001\001\000\004\006\014\001\001\000\002\001\001" +
-    "\000\002\001\001\000\002\001\001\000\010\005\021\007" +
-    "\017\010\022\001\001\000\002\001\001\000\002\001\001" +
-    "\000\004\011\032\001\001\000\002\001\001\000\002\001" +
+    "\000\074\000\006\003\003\004\004\001\001\000\002\001" +
+    "\001\000\002\001\001\000\006\006\011\007\012\001\001" +
+    "\000\002\001\001\000\006\006\051\007\012\001\001\000" +
+    "\002\001\001\000\002\001\001\000\002\001\001\000\004" +
+    "\007\043\001\001\000\004\010\016\001\001\000\002\001" +
+    "\001\000\002\001\001\000\002\001\001\000\010\007\023" +
+    "\011\021\012\024\001\001\000\002\001\001\000\002\001" +
+    "\001\000\004\013\034\001\001\000\002\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
     "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
+    "\000\004\007\035\001\001\000\002\001\001\000\002\001" +
+    "\001\000\002\001\001\000\006\007\023\012\041\001\001" +
     "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
-    "\004\005\033\001\001\000\002\001\001\000\002\001\001" +
-    "\000\002\001\001\000\006\005\021\010\037\001\001\000" +
-    "\002\001\001\000\002\001\001\000\002\001\001\000\004" +
-    "\006\043\001\001\000\002\001\001\000\010\005\021\007" +
-    "\045\010\022\001\001\000\002\001\001\000\002\001\001" +
-    "\000\002\001\001\000\002\001\001\000\006\004\053\005" +
-    "\010\001\001\000\002\001\001\000\002\001\001" });
+    "\004\010\045\001\001\000\002\001\001\000\010\007\023" +
+    "\011\047\012\024\001\001\000\002\001\001\000\002\001" +
+    "\001\000\002\001\001\000\004\010\053\001\001\000\002" +
+    "\001\001\000\010\007\023\011\055\012\024\001\001\000" +
+    "\002\001\001\000\004\010\057\001\001\000\002\001\001" +
+    "\000\010\007\023\011\061\012\024\001\001\000\002\001" +
+    "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
+    "\000\004\005\074\001\001\000\006\006\067\007\012\001" +
+    "\001\000\002\001\001\000\004\005\071\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
+    "\001\000\002\001\001" });
 
   /** Access to <code>reduce_goto</code> table. */
   public short[][] reduce_table() {return _reduce_table;}
@@ -146,8 +171,30 @@ public class parser extends java_cup.runtime.lr_parser {
 	 	
 	 	      /* use the normal error message reporting to put out the message */
 	 	      report_error("Fatal error occurred, stop parsing.", info);
+
+	 	      /* a query that does not parse has no result */
+	 	      query = null;
 	 	
 	 	}
+
+	/* reports an error in the query and stops parsing, the query has no result */
+	public void syntaxError(String message) throws java.lang.Exception {
+	    report_error("syntax error: " + message, null);
+	    throw new Exception(message);
+	}
+
+	/* the number of rows of a LIMIT clause, which must be a non-negative integer */
+	public int parseLimit(TokenValue n) throws java.lang.Exception {
+	    int limit = -1;
+	    try {
+	        limit = Integer.parseInt(n.text());
+	    } catch (NumberFormatException e) {
+	    }
+	    if (limit < 0) {
+	        syntaxError("incorrect limit: " + n.text());
+	    }
+	    return limit;
+	}
 	 
 	 	public void syntax_error(Symbol cur_token){}
 	
@@ -182,73 +229,73 @@ class CUP$parser$actions {
       switch (CUP$parser$act_num)
         {
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 23: // op ::= EQUAL 
+          case 32: // op ::= EQUAL 
             {
               Condition RESULT = null;
 		
 	 RESULT=new Condition(Condition.EQUAL);
 	
-              CUP$parser$result = new java_cup.runtime.Symbol(7/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(9/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 22: // op ::= NOTEQUAL 
+          case 31: // op ::= NOTEQUAL 
             {
               Condition RESULT = null;
 			
 	  RESULT = new Condition(Condition.NOTEQUAL);
 	
-              CUP$parser$result = new java_cup.runtime.Symbol(7/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(9/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 21: // op ::= GTOE 
+          case 30: // op ::= GTOE 
             {
               Condition RESULT = null;
 		
 	RESULT=new Condition(Condition.GTOE);
 	
-              CUP$parser$result = new java_cup.runtime.Symbol(7/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(9/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 20: // op ::= LTOE 
+          case 29: // op ::= LTOE 
             {
               Condition RESULT = null;
 		
 	RESULT=new Condition(Condition.LTOE);
 	
-              CUP$parser$result = new java_cup.runtime.Symbol(7/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(9/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 19: // op ::= GREATERTHAN 
+          case 28: // op ::= GREATERTHAN 
             {
               Condition RESULT = null;
 		
 	RESULT=new Condition(Condition.GREATERTHAN);
 	
-              CUP$parser$result = new java_cup.runtime.Symbol(7/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(9/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 18: // op ::= LESSTHAN 
+          case 27: // op ::= LESSTHAN 
             {
               Condition RESULT = null;
 		
 	RESULT=new Condition(Condition.LESSTHAN);
 	
-              CUP$parser$result = new java_cup.runtime.Symbol(7/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(9/*op*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 17: // attribute ::= ID error 
+          case 26: // attribute ::= ID error 
             {
               Attribute RESULT = null;
 		int ileft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left;
@@ -258,15 +305,14 @@ class CUP$parser$actions {
 		int pright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
 		Object p = (Object)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
 		
-		System.out.println("syntax error: incorrect attribute:"+ i.text());
-		System.exit(0);
+		parser.syntaxError("incorrect attribute: "+ i.text());
 		
-              CUP$parser$result = new java_cup.runtime.Symbol(3/*attribute*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(5/*attribute*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 16: // attribute ::= ID DOT ID 
+          case 25: // attribute ::= ID DOT ID 
             {
               Attribute RESULT = null;
 		int i1left = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -278,12 +324,12 @@ class CUP$parser$actions {
 		
 		RESULT= new Attribute(i1.text(),i2.text());
 		
-              CUP$parser$result = new java_cup.runtime.Symbol(3/*attribute*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(5/*attribute*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 15: // condition ::= error STRINGLIT 
+          case 24: // condition ::= error STRINGLIT 
             {
               Condition RESULT = null;
 		int pleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left;
@@ -293,15 +339,14 @@ class CUP$parser$actions {
 		int sright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
 		TokenValue s = (TokenValue)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
 		
-		System.out.println("syntax error: incorrect condition:"+s.text());
-		System.exit(0);
+		parser.syntaxError("incorrect condition: "+s.text());
 		
-              CUP$parser$result = new java_cup.runtime.Symbol(6/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(8/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 14: // condition ::= attribute error 
+          case 23: // condition ::= attribute error 
             {
               Condition RESULT = null;
 		int atleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left;
@@ -311,15 +356,14 @@ class CUP$parser$actions {
 		int pright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
 		Object p = (Object)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
 		
-		System.out.println("syntax error: incorrect condition");
-		System.exit(0);
+		parser.syntaxError("incorrect condition");
 		
-              CUP$parser$result = new java_cup.runtime.Symbol(6/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(8/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-1)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 13: // condition ::= attribute op attribute 
+          case 22: // condition ::= attribute op attribute 
             {
               Condition RESULT = null;
 		int a1left = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -336,12 +380,12 @@ class CUP$parser$actions {
 		c.setOpType(Condition.JOIN);
 		RESULT=c;
 	      
-              CUP$parser$result = new java_cup.runtime.Symbol(6/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(8/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 12: // condition ::= attribute op STRINGLIT 
+          case 21: // condition ::= attribute op STRINGLIT 
             {
               Condition RESULT = null;
 		int atleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -359,12 +403,12 @@ class CUP$parser$actions {
 		RESULT=c;
 
 	     
-              CUP$parser$result = new java_cup.runtime.Symbol(6/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(8/*condition*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 11: // conditionlist ::= condition 
+          case 20: // conditionlist ::= condition 
             {
               Vector RESULT = null;
 		int cleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
@@ -375,12 +419,12 @@ class CUP$parser$actions {
 		clist.add(c);
 	        RESULT=clist;
 		
-              CUP$parser$result = new java_cup.runtime.Symbol(5/*conditionlist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(7/*conditionlist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 10: // conditionlist ::= conditionlist COMMA condition 
+          case 19: // conditionlist ::= conditionlist COMMA condition 
             {
               Vector RESULT = null;
 		int clistleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -393,12 +437,12 @@ class CUP$parser$actions {
 		clist.add(c);
 		RESULT=clist;
 		
-              CUP$parser$result = new java_cup.runtime.Symbol(5/*conditionlist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(7/*conditionlist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 9: // tablelist ::= ID 
+          case 18: // tablelist ::= ID 
             {
               Vector RESULT = null;
 		int ileft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
@@ -409,12 +453,12 @@ class CUP$parser$actions {
 		tlist.add(i.text());
 		RESULT=tlist;
 	      
-              CUP$parser$result = new java_cup.runtime.Symbol(4/*tablelist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(6/*tablelist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 8: // tablelist ::= tablelist COMMA ID 
+          case 17: // tablelist ::= tablelist COMMA ID 
             {
               Vector RESULT = null;
 		int tlistleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -427,12 +471,12 @@ class CUP$parser$actions {
 		tlist.add(i.text());
 		RESULT=tlist;
 	       
-              CUP$parser$result = new java_cup.runtime.Symbol(4/*tablelist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(6/*tablelist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 7: // attlist ::= attribute 
+          case 16: // attlist ::= attribute 
             {
               Vector RESULT = null;
 		int atleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
@@ -443,12 +487,12 @@ class CUP$parser$actions {
 		v.add(at);
 		RESULT = v;
 		
-              CUP$parser$result = new java_cup.runtime.Symbol(2/*attlist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(4/*attlist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 6: // attlist ::= attlist COMMA attribute 
+          case 15: // attlist ::= attlist COMMA attribute 
             {
               Vector RESULT = null;
 		int asleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -461,12 +505,90 @@ class CUP$parser$actions {
 		  as.add(a);
 		  RESULT=as;
 		  
-              CUP$parser$result = new java_cup.runtime.Symbol(2/*attlist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(4/*attlist*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 14: // querybody ::= SELECT DISTINCT STAR FROM tablelist 
+            {
+              SQLQuery RESULT = null;
+		int tleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int tright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		Vector t = (Vector)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		
+                Vector a = new Vector();
+                SQLQuery sq = new SQLQuery(a,t);
+                sq.setIsDistinct(true);
+                RESULT=sq;
+                
+              CUP$parser$result = new java_cup.runtime.Symbol(2/*querybody*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-4)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 13: // querybody ::= SELECT DISTINCT attlist FROM tablelist 
+            {
+              SQLQuery RESULT = null;
+		int aleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
+		int aright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).right;
+		Vector a = (Vector)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-2)).value;
+		int tleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int tright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		Vector t = (Vector)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		
+                SQLQuery sq = new SQLQuery(a,t);
+                sq.setIsDistinct(true);
+                RESULT=sq;
+                
+              CUP$parser$result = new java_cup.runtime.Symbol(2/*querybody*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-4)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 12: // querybody ::= SELECT DISTINCT STAR FROM tablelist WHERE conditionlist 
+            {
+              SQLQuery RESULT = null;
+		int tleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
+		int tright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).right;
+		Vector t = (Vector)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-2)).value;
+		int cleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int cright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		Vector c = (Vector)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		
+		Vector a = new Vector();
+		SQLQuery sq = new SQLQuery(a,t,c);
+		sq.setIsDistinct(true);
+		RESULT=sq;
+		
+              CUP$parser$result = new java_cup.runtime.Symbol(2/*querybody*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-6)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 11: // querybody ::= SELECT DISTINCT attlist FROM tablelist WHERE conditionlist 
+            {
+              SQLQuery RESULT = null;
+		int aleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-4)).left;
+		int aright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-4)).right;
+		Vector a = (Vector)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-4)).value;
+		int tleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
+		int tright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).right;
+		Vector t = (Vector)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-2)).value;
+		int cleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int cright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		Vector c = (Vector)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		
+		SQLQuery sq = new SQLQuery(a,t,c);
+		sq.setIsDistinct(true);
+		RESULT=sq;
+		
+              CUP$parser$result = new java_cup.runtime.Symbol(2/*querybody*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-6)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 5: // sqlquery ::= SELECT STAR FROM tablelist 
+          case 10: // querybody ::= SELECT STAR FROM tablelist 
             {
               SQLQuery RESULT = null;
 		int tleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
@@ -475,15 +597,14 @@ class CUP$parser$actions {
 		
                   Vector a = new Vector();
                   SQLQuery sq = new SQLQuery(a,t);
-                parser.query=sq;
                 RESULT=sq;
                 
-              CUP$parser$result = new java_cup.runtime.Symbol(1/*sqlquery*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-3)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(2/*querybody*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-3)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 4: // sqlquery ::= SELECT attlist FROM tablelist 
+          case 9: // querybody ::= SELECT attlist FROM tablelist 
             {
               SQLQuery RESULT = null;
 		int aleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -495,15 +616,14 @@ class CUP$parser$actions {
 		
                  Vector v1= new Vector();
                 SQLQuery sq = new SQLQuery(a,t);
-                 parser.query=sq;
                 RESULT=sq;
                 
-              CUP$parser$result = new java_cup.runtime.Symbol(1/*sqlquery*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-3)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(2/*querybody*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-3)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 3: // sqlquery ::= SELECT STAR FROM tablelist WHERE conditionlist 
+          case 8: // querybody ::= SELECT STAR FROM tablelist WHERE conditionlist 
             {
               SQLQuery RESULT = null;
 		int tleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
@@ -515,15 +635,14 @@ class CUP$parser$actions {
 		
 	          Vector a = new Vector();
 	          SQLQuery sq = new SQLQuery(a,t,c);
-		parser.query=sq;
 		RESULT=sq;
 		
-              CUP$parser$result = new java_cup.runtime.Symbol(1/*sqlquery*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-5)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(2/*querybody*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-5)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 2: // sqlquery ::= SELECT attlist FROM tablelist WHERE conditionlist 
+          case 7: // querybody ::= SELECT attlist FROM tablelist WHERE conditionlist 
             {
               SQLQuery RESULT = null;
 		int aleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-4)).left;
@@ -538,10 +657,98 @@ class CUP$parser$actions {
 		
 		 Vector v1= new Vector();
 		SQLQuery sq = new SQLQuery(a,t,c);
-	         parser.query=sq;
 		RESULT=sq;
 		
-              CUP$parser$result = new java_cup.runtime.Symbol(1/*sqlquery*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-5)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(2/*querybody*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-5)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 6: // limit ::= STRINGLIT 
+            {
+              Integer RESULT = null;
+		int nleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int nright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		TokenValue n = (TokenValue)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		
+		RESULT=new Integer(parser.parseLimit(n));
+		
+              CUP$parser$result = new java_cup.runtime.Symbol(3/*limit*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 5: // limit ::= INTLIT 
+            {
+              Integer RESULT = null;
+		int nleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int nright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		TokenValue n = (TokenValue)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		
+		RESULT=new Integer(parser.parseLimit(n));
+		
+              CUP$parser$result = new java_cup.runtime.Symbol(3/*limit*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 4: // sqlquery ::= querybody ORDERBY attlist LIMIT limit 
+            {
+              SQLQuery RESULT = null;
+		int sleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-4)).left;
+		int sright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-4)).right;
+		SQLQuery s = (SQLQuery)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-4)).value;
+		int aleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
+		int aright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).right;
+		Vector a = (Vector)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-2)).value;
+		int nleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int nright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		Integer n = (Integer)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		
+		s.setOrderByList(a);
+		s.setLimit(n.intValue());
+		parser.query=s;
+		RESULT=s;
+		
+              CUP$parser$result = new java_cup.runtime.Symbol(1/*sqlquery*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-4)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 3: // sqlquery ::= querybody LIMIT limit 
+            {
+              SQLQuery RESULT = null;
+		int sleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
+		int sright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).right;
+		SQLQuery s = (SQLQuery)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-2)).value;
+		int nleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int nright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		Integer n = (Integer)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		
+		s.setLimit(n.intValue());
+		parser.query=s;
+		RESULT=s;
+		
+              CUP$parser$result = new java_cup.runtime.Symbol(1/*sqlquery*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+            }
+          return CUP$parser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 2: // sqlquery ::= querybody ORDERBY attlist 
+            {
+              SQLQuery RESULT = null;
+		int sleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
+		int sright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).right;
+		SQLQuery s = (SQLQuery)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-2)).value;
+		int aleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int aright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		Vector a = (Vector)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		
+		s.setOrderByList(a);
+		parser.query=s;
+		RESULT=s;
+		
+              CUP$parser$result = new java_cup.runtime.Symbol(1/*sqlquery*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
@@ -560,21 +767,17 @@ class CUP$parser$actions {
           return CUP$parser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 0: // sqlquery ::= sqlquery ORDERBY attlist 
+          case 0: // sqlquery ::= querybody 
             {
               SQLQuery RESULT = null;
-		int sleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left;
-		int sright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).right;
-		SQLQuery s = (SQLQuery)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-2)).value;
-		int aleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
-		int aright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
-		Vector a = (Vector)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
+		int sleft = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left;
+		int sright = ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right;
+		SQLQuery s = (SQLQuery)((java_cup.runtime.Symbol) CUP$parser$stack.elementAt(CUP$parser$top-0)).value;
 		
-		s.setOrderByList(a);
 		parser.query=s;
-	
+		RESULT=s;
 		
-              CUP$parser$result = new java_cup.runtime.Symbol(1/*sqlquery*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-2)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
+              CUP$parser$result = new java_cup.runtime.Symbol(1/*sqlquery*/, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).left, ((java_cup.runtime.Symbol)CUP$parser$stack.elementAt(CUP$parser$top-0)).right, RESULT);
             }
           return CUP$parser$result;
 
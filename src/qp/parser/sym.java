@@ -1,7 +1,7 @@
 package qp.parser;
 //----------------------------------------------------
 // The following code was generated by CUP v0.10k
-// Sat Mar 31 14:34:35 WITA 2018
+// Sat Oct 17 02:00:30 UTC 2026
 //----------------------------------------------------
 
 /** CUP generated class containing symbol constants. */
@@ -19,11 +19,13 @@ public class sym {
   public static final int LTOE = 9;
   public static final int STAR = 6;
   public static final int ID = 2;
+  public static final int LIMIT = 20;
   public static final int GTOE = 10;
+  public static final int INTLIT = 22;
   public static final int COMMA = 3;
   public static final int LESSTHAN = 7;
   public static final int EOF = 0;
-  public static final int STRINGLIT = 20;
+  public static final int STRINGLIT = 21;
   public static final int DISTINCT = 19;
   public static final int error = 1;
   public static final int DOT = 5;
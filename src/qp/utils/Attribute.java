@@ -5,6 +5,9 @@ import java.io.Serializable;
 
 public class Attribute implements Serializable {
 
+    /* the schemas of the tables are serialized in the .md files, kept readable when fields are added */
+    private static final long serialVersionUID = -2254940794155697290L;
+
     /**
      * enumerating type of attribute
      **/
@@ -24,6 +27,7 @@ public class Attribute implements Serializable {
     int type;  // whether integer or real or string
     int key = -1;   // type of the key
     int attrsize;   // Number of bytes for this attribute
+    boolean indexed;   // Whether a B+-tree index on this attribute exists (<table>.<attribute>.idx)
 
     public Attribute(String tbl, String col) {
         tblname = tbl;
@@ -81,6 +85,14 @@ public class Attribute implements Serializable {
             return false;
     }
 
+    public void setIndexed(boolean flag) {
+        indexed = flag;
+    }
+
+    public boolean isIndexed() {
+        return indexed;
+    }
+
 
     public void setTabName(String tab) {
         tblname = tab;
@@ -120,6 +132,7 @@ public class Attribute implements Serializable {
         newattr.setType(type);
         newattr.setKeyType(key);
         newattr.setAttrSize(attrsize);
+        newattr.setIndexed(indexed);
         return newattr;
     }
 
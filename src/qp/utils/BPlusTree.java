@@ -0,0 +1,421 @@
+/**
+ * Persistent B+-tree index over one attribute of a table stored in the page format.
+ * The entries are (key, page, slot): the value of the attribute and the position of the tuple in the
+ * table file, so that PageReader.readTuple(page, slot) fetches the tuple.
+ *
+ * The tree is bulk-loaded from the sorted entries and never updated. The file is made of NODE_SIZE bytes nodes:
+ *   node 0:  magic (4) | version (2) | key type (2) | key width (4) | root (4) | height (4) | number of entries (8)
+ *            | pages of the table (4) | length of the table file (8) | modification time of the table file (8)
+ *   leaf:    LEAF (1) | unused (1) | count (2) | next leaf (4) | count * (key | page (4) | slot (2))
+ *   inner:   INNER (1) | unused (1) | count (2) | child 0 (4) | count * (key | child (4))
+ * In an inner node, the i-th key is the smallest key of the subtree of child i (i >= 1). Keys have a fixed
+ * width: INT and REAL take 4 bytes, TIME 8 bytes, and STRING a 2 bytes length followed by the UTF-8 bytes
+ * padded to the longest string of the attribute.
+ * The table file the index was built from is recorded in node 0, so that an index left over from a table
+ * that was rewritten since (e.g. by ConvertTxtToTbl) is not used.
+ **/
+
+package qp.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+
+public class BPlusTree {
+
+    public static final int MAGIC = 0x51504958;         // "QPIX"
+    public static final short VERSION = 2;
+    public static final int NODE_SIZE = 4096;
+
+    static final byte LEAF = 1;
+    static final byte INNER = 2;
+    static final int NODE_HEADER_SIZE = 8;
+
+    private final String fname;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int keyType;
+    private final int keyWidth;
+    private final int root;
+    private final int height;
+    private final long numEntries;
+    private final HashMap<Integer, ByteBuffer> innerNodes = new HashMap<>();   // Inner nodes read so far
+
+    /**
+     * Opens an existing index file
+     */
+    public BPlusTree(String fname) throws IOException {
+        this.fname = fname;
+        file = new RandomAccessFile(fname, "r");
+        channel = file.getChannel();
+        ByteBuffer header = readNode(0);
+        if (header.getInt(0) != MAGIC) {
+            channel.close();
+            file.close();
+            throw new IOException("BPlusTree: " + fname + " is not an index file");
+        }
+        keyType = header.getShort(6);
+        keyWidth = header.getInt(8);
+        root = header.getInt(12);
+        height = header.getInt(16);
+        numEntries = header.getLong(20);
+    }
+
+    /**
+     * @return name of the file of the index on the given attribute of the given table
+     */
+    public static String fileName(String tabname, String colname) {
+        return tabname + "." + colname + ".idx";
+    }
+
+    /**
+     * @return true if the index on the given attribute of the given table exists and was built from the
+     * current table file: the table has the number of pages and tuples, the length and the modification time
+     * recorded in the index
+     */
+    public static boolean isCurrent(String tabname, String colname) {
+        File idx = new File(fileName(tabname, colname));
+        File tbl = new File(tabname + ".tbl");
+        if (!idx.exists() || !PageFile.isPageFile(tbl.getPath())) {
+            return false;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(idx, "r");
+             RandomAccessFile tblin = new RandomAccessFile(tbl, "r")) {
+            ByteBuffer header = ByteBuffer.allocate(48);
+            in.getChannel().read(header, 0);
+            ByteBuffer tblheader = ByteBuffer.allocate(PageFile.HEADER_SIZE);
+            tblin.getChannel().read(tblheader, 0);
+            return header.getInt(0) == MAGIC && header.getShort(4) == VERSION
+                    && header.getLong(20) == tblheader.getLong(16) && header.getInt(28) == tblheader.getInt(12)
+                    && header.getLong(32) == tbl.length() && header.getLong(40) == tbl.lastModified();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return number of levels of the tree, 1 if the root is a leaf
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    public long getNumEntries() {
+        return numEntries;
+    }
+
+    public int getKeyType() {
+        return keyType;
+    }
+
+    public void close() throws IOException {
+        innerNodes.clear();
+        channel.close();
+        file.close();
+    }
+
+    /**
+     * Position in the leaves of the tree. next() has to be called before reading the first entry.
+     */
+    public final class Cursor {
+        private ByteBuffer leaf;
+        private int pos;        // Index in the leaf of the current entry
+
+        private Cursor(ByteBuffer leaf, int pos) {
+            this.leaf = leaf;
+            this.pos = pos;
+        }
+
+        /**
+         * Moves to the next entry
+         * @return false if there are no more entries
+         */
+        public boolean next() throws IOException {
+            pos++;
+            while (leaf != null && pos >= leaf.getShort(2)) {
+                int nextLeaf = leaf.getInt(4);
+                leaf = nextLeaf < 0 ? null : readNode(nextLeaf);
+                pos = 0;
+            }
+            return leaf != null;
+        }
+
+        public Object key() {
+            return decodeKey(leaf, leafEntryOffset(pos));
+        }
+
+        public int page() {
+            return leaf.getInt(leafEntryOffset(pos) + keyWidth);
+        }
+
+        public int slot() {
+            return leaf.getShort(leafEntryOffset(pos) + keyWidth + 4) & 0xFFFF;
+        }
+    }
+
+    /**
+     * @return a cursor positioned just before the first entry whose key is greater than or equal to
+     * the given key, or before the first entry of the index if the key is null
+     */
+    public Cursor find(Object key) throws IOException {
+        int nodeNo = root;
+        for (int level = 1; level < height; level++) {
+            ByteBuffer node = readInnerNode(nodeNo);
+            int count = node.getShort(2);
+            /* the entries equal to the key may start at the end of the child before the first separator equal to it */
+            int child = 0;
+            if (key != null) {
+                int lo = 0;
+                int hi = count;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (compareKeys(decodeKey(node, innerKeyOffset(mid)), key) < 0)
+                        lo = mid + 1;
+                    else
+                        hi = mid;
+                }
+                child = lo;
+            }
+            nodeNo = node.getInt(child == 0 ? NODE_HEADER_SIZE : innerKeyOffset(child - 1) + keyWidth);
+        }
+
+        ByteBuffer leaf = readNode(nodeNo);
+        int count = leaf.getShort(2);
+        int lo = 0;
+        if (key != null) {
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compareKeys(decodeKey(leaf, leafEntryOffset(mid)), key) < 0)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+        }
+        return new Cursor(leaf, lo - 1);
+    }
+
+    /**
+     * Compares two keys of the type of the index
+     */
+    @SuppressWarnings("unchecked")
+    public int compareKeys(Object k1, Object k2) {
+        return ((Comparable<Object>) k1).compareTo(k2);
+    }
+
+    /* =============================== BUILDING =============================== */
+
+    /**
+     * Builds the index on the given attribute of a table stored in the page format
+     * @return number of entries of the index
+     */
+    public static long build(String tblfile, Schema schema, int attrIndex, String idxfile) throws IOException {
+        int type = schema.typeOf(attrIndex);
+        File tbl = new File(tblfile);
+        long tblLength = tbl.length();
+        long tblModified = tbl.lastModified();
+
+        /* collect and sort the entries of the table */
+        ArrayList<Object[]> entries = new ArrayList<>();
+        int maxStringBytes = 0;
+        PageReader in = new PageReader(tblfile, schema);
+        int tblPages = in.getNumPages();
+        for (int page = 0; page < in.getNumPages(); page++) {
+            ArrayList<Tuple> tuples = in.readPage(page);
+            for (int slot = 0; slot < tuples.size(); slot++) {
+                Object key = tuples.get(slot).dataAt(attrIndex);
+                if (type == Attribute.STRING) {
+                    maxStringBytes = Math.max(maxStringBytes, ((String) key).getBytes(StandardCharsets.UTF_8).length);
+                }
+                entries.add(new Object[]{key, page, slot});
+            }
+        }
+        in.close();
+        Comparator<Object[]> order = (e1, e2) -> {
+            @SuppressWarnings("unchecked")
+            int c = ((Comparable<Object>) e1[0]).compareTo(e2[0]);
+            if (c != 0)
+                return c;
+            c = Integer.compare((Integer) e1[1], (Integer) e2[1]);
+            return c != 0 ? c : Integer.compare((Integer) e1[2], (Integer) e2[2]);
+        };
+        entries.sort(order);
+
+        int keyWidth;
+        switch (type) {
+            case Attribute.INT:
+            case Attribute.REAL:
+                keyWidth = 4;
+                break;
+            case Attribute.TIME:
+                keyWidth = 8;
+                break;
+            default:
+                keyWidth = 2 + maxStringBytes;
+                break;
+        }
+        int leafCapacity = (NODE_SIZE - NODE_HEADER_SIZE) / (keyWidth + 6);
+        int innerCapacity = (NODE_SIZE - NODE_HEADER_SIZE) / (keyWidth + 4);
+        if (leafCapacity < 2 || innerCapacity < 2) {
+            throw new IOException("BPlusTree: keys of " + idxfile + " are too long for " + NODE_SIZE + " bytes nodes");
+        }
+
+        RandomAccessFile out = new RandomAccessFile(idxfile, "rw");
+        out.setLength(0);
+        FileChannel channel = out.getChannel();
+        int nextNode = 1;
+
+        /* leaves, keeping the first key and the node number of each one for the level above */
+        ArrayList<Object> firstKeys = new ArrayList<>();
+        ArrayList<Integer> nodes = new ArrayList<>();
+        int numLeaves = Math.max(1, (entries.size() + leafCapacity - 1) / leafCapacity);
+        for (int l = 0; l < numLeaves; l++) {
+            int from = l * leafCapacity;
+            int to = Math.min(entries.size(), from + leafCapacity);
+            ByteBuffer node = ByteBuffer.allocate(NODE_SIZE);
+            node.put(0, LEAF);
+            node.putShort(2, (short) (to - from));
+            node.putInt(4, l == numLeaves - 1 ? -1 : nextNode + 1);
+            int pos = NODE_HEADER_SIZE;
+            for (int i = from; i < to; i++) {
+                Object[] e = entries.get(i);
+                encodeKey(node, pos, e[0], type, keyWidth);
+                node.putInt(pos + keyWidth, (Integer) e[1]);
+                node.putShort(pos + keyWidth + 4, (short) (int) (Integer) e[2]);
+                pos += keyWidth + 6;
+            }
+            writeNode(channel, nextNode, node);
+            firstKeys.add(from < to ? entries.get(from)[0] : null);
+            nodes.add(nextNode);
+            nextNode++;
+        }
+        long numEntries = entries.size();
+        entries = null;
+
+        /* inner levels, until a single node is left */
+        int height = 1;
+        while (nodes.size() > 1) {
+            ArrayList<Object> upperKeys = new ArrayList<>();
+            ArrayList<Integer> upperNodes = new ArrayList<>();
+            int fanout = innerCapacity + 1;
+            for (int from = 0; from < nodes.size(); from += fanout) {
+                int to = Math.min(nodes.size(), from + fanout);
+                ByteBuffer node = ByteBuffer.allocate(NODE_SIZE);
+                node.put(0, INNER);
+                node.putShort(2, (short) (to - from - 1));
+                node.putInt(NODE_HEADER_SIZE, nodes.get(from));
+                int pos = NODE_HEADER_SIZE + 4;
+                for (int i = from + 1; i < to; i++) {
+                    encodeKey(node, pos, firstKeys.get(i), type, keyWidth);
+                    node.putInt(pos + keyWidth, nodes.get(i));
+                    pos += keyWidth + 4;
+                }
+                writeNode(channel, nextNode, node);
+                upperKeys.add(firstKeys.get(from));
+                upperNodes.add(nextNode);
+                nextNode++;
+            }
+            firstKeys = upperKeys;
+            nodes = upperNodes;
+            height++;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(NODE_SIZE);
+        header.putInt(0, MAGIC);
+        header.putShort(4, VERSION);
+        header.putShort(6, (short) type);
+        header.putInt(8, keyWidth);
+        header.putInt(12, nodes.get(0));
+        header.putInt(16, height);
+        header.putLong(20, numEntries);
+        header.putInt(28, tblPages);
+        header.putLong(32, tblLength);
+        header.putLong(40, tblModified);
+        writeNode(channel, 0, header);
+        channel.close();
+        out.close();
+        return numEntries;
+    }
+
+    /* =============================== PRIVATE METHODS =============================== */
+
+    private static void writeNode(FileChannel channel, int nodeNo, ByteBuffer node) throws IOException {
+        node.clear();
+        long offset = (long) nodeNo * NODE_SIZE;
+        while (node.hasRemaining()) {
+            offset += channel.write(node, offset);
+        }
+    }
+
+    private ByteBuffer readNode(int nodeNo) throws IOException {
+        ByteBuffer node = ByteBuffer.allocate(NODE_SIZE);
+        long offset = (long) nodeNo * NODE_SIZE;
+        while (node.hasRemaining()) {
+            int n = channel.read(node, offset + node.position());
+            if (n < 0) {
+                throw new IOException("BPlusTree: node " + nodeNo + " out of range in " + fname);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Inner nodes are kept once read, as every search goes through them
+     */
+    private ByteBuffer readInnerNode(int nodeNo) throws IOException {
+        ByteBuffer node = innerNodes.get(nodeNo);
+        if (node == null) {
+            node = readNode(nodeNo);
+            innerNodes.put(nodeNo, node);
+        }
+        return node;
+    }
+
+    private int leafEntryOffset(int i) {
+        return NODE_HEADER_SIZE + i * (keyWidth + 6);
+    }
+
+    private int innerKeyOffset(int i) {
+        return NODE_HEADER_SIZE + 4 + i * (keyWidth + 4);
+    }
+
+    private static void encodeKey(ByteBuffer node, int pos, Object key, int type, int keyWidth) {
+        switch (type) {
+            case Attribute.INT:
+                node.putInt(pos, (Integer) key);
+                break;
+            case Attribute.REAL:
+                node.putFloat(pos, (Float) key);
+                break;
+            case Attribute.TIME:
+                node.putLong(pos, (Long) key);
+                break;
+            default:
+                byte[] bytes = ((String) key).getBytes(StandardCharsets.UTF_8);
+                node.putShort(pos, (short) bytes.length);
+                for (int i = 0; i < bytes.length; i++) {
+                    node.put(pos + 2 + i, bytes[i]);
+                }
+                break;
+        }
+    }
+
+    private Object decodeKey(ByteBuffer node, int pos) {
+        switch (keyType) {
+            case Attribute.INT:
+                return node.getInt(pos);
+            case Attribute.REAL:
+                return node.getFloat(pos);
+            case Attribute.TIME:
+                return node.getLong(pos);
+            default:
+                return PageFile.decodeString(node, pos + 2, node.getShort(pos) & 0xFFFF);
+        }
+    }
+}
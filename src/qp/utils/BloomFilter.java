@@ -0,0 +1,93 @@
+/**
+ * Bloom filter over the values of a join attribute. A value that was added is always reported as
+ * possibly present; a value that was not added is reported as absent, except for a small fraction
+ * of false positives that grows with the number of values added.
+ **/
+
+package qp.utils;
+
+public class BloomFilter {
+
+    public static final int DEFAULT_NUM_BITS = 1 << 20;    // 128KB, about 1% of false positives for 100000 values
+    public static final int BITS_PER_VALUE = 10;            // About 2% of false positives
+    private static final int NUM_HASHES = 3;
+
+    private final long[] bits;
+    private final int numBits;
+    private long numValues;                 // Number of values added
+
+    public BloomFilter() {
+        this(DEFAULT_NUM_BITS);
+    }
+
+    public BloomFilter(int numBits) {
+        this.numBits = Math.max(64, numBits);
+        bits = new long[(this.numBits + 63) / 64];
+    }
+
+    /**
+     * @return the number of bits of a filter over the given number of distinct values
+     */
+    public static int numBits(long numValues) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(64, numValues * BITS_PER_VALUE));
+    }
+
+    /**
+     * @return the number of pages of the given size taken by a filter of numBits bits
+     */
+    public static int numPages(long numBits, int pageSize) {
+        long bytes = (numBits + 7) / 8;
+        return (int) ((bytes + pageSize - 1) / pageSize);
+    }
+
+    public int getNumBits() {
+        return numBits;
+    }
+
+    /**
+     * Adds a value, values are compared with equals() so equal values have the same hashCode()
+     */
+    public void add(Object value) {
+        int h1 = mix(value.hashCode());
+        int h2 = mix(h1) | 1;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            int bit = ((h1 + i * h2) & 0x7fffffff) % numBits;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+        numValues++;
+    }
+
+    /**
+     * @return false if the value was certainly not added
+     */
+    public boolean mightContain(Object value) {
+        int h1 = mix(value.hashCode());
+        int h2 = mix(h1) | 1;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            int bit = ((h1 + i * h2) & 0x7fffffff) % numBits;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    public long getNumValues() {
+        return numValues;
+    }
+
+    /**
+     * @return expected fraction of false positives for the values added so far
+     */
+    public double falsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) NUM_HASHES * numValues / numBits), NUM_HASHES);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
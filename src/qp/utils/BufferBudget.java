@@ -0,0 +1,87 @@
+/**
+ * Buffers of a query that are not held by any of its operators. The operators that hold pages in memory get
+ * a Grant of buffers when the plan is prepared; an operator that is done gives its buffers back, and the
+ * operators still executing may then take more than they were granted, e.g. a sort to merge its runs in
+ * fewer passes once the joins below it are done.
+ **/
+
+package qp.utils;
+
+public final class BufferBudget {
+
+    private int spare;      // Buffers not held by any operator
+
+    public BufferBudget(int spare) {
+        this.spare = Math.max(0, spare);
+    }
+
+    public synchronized int getSpare() {
+        return spare;
+    }
+
+    /**
+     * @param numBuff, the buffers granted to the operator, already taken from the buffers of the query
+     * @param useful, the number of buffers beyond which the operator is not expected to run faster
+     * @return the grant of an operator of the query
+     */
+    public Grant grant(int numBuff, int useful) {
+        return new Grant(numBuff, useful);
+    }
+
+    /**
+     * Buffers held by one operator
+     */
+    public final class Grant {
+        private int held;
+        private final int useful;
+
+        private Grant(int held, int useful) {
+            this.held = held;
+            this.useful = useful;
+        }
+
+        public int getBuffers() {
+            synchronized (BufferBudget.this) {
+                return held;
+            }
+        }
+
+        public int getUseful() {
+            return useful;
+        }
+
+        /**
+         * Takes up to wanted more buffers among the spare buffers of the query
+         * @return the number of buffers added to the grant
+         */
+        public int extend(int wanted) {
+            synchronized (BufferBudget.this) {
+                int n = Math.min(Math.max(0, wanted), spare);
+                spare -= n;
+                held += n;
+                return n;
+            }
+        }
+
+        /**
+         * Gives n buffers of the grant back to the query
+         */
+        public void shrink(int n) {
+            synchronized (BufferBudget.this) {
+                n = Math.min(Math.max(0, n), held);
+                held -= n;
+                spare += n;
+            }
+        }
+
+        /**
+         * Gives all the buffers of the grant back to the query, once the operator is done
+         */
+        public void release() {
+            synchronized (BufferBudget.this) {
+                spare += held;
+                held = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/**
+ * Process-wide pool of page frames, through which PageReader reads the pages of the tables and of the
+ * temporary files. The pool has no frames unless it is sized with setNumFrames. A page stays in its frame after it is read, so the tables scanned again, by a later
+ * query or by the inner loop of a join, are read from memory.
+ *
+ * A page is pinned while it is decoded and unpinned afterwards; a pinned frame is never replaced. Frames are
+ * replaced with the CLOCK policy with usage counts: each hit increments the count of the frame (up to
+ * MAX_USAGE), and the clock hand decrements the counts of the frames it passes until it finds an unpinned
+ * frame with a count of 0. A page read once by a large scan is replaced before the pages of a small table
+ * read by every query.
+ **/
+
+package qp.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+public final class BufferPool {
+
+    public static final int DEFAULT_NUM_FRAMES = 0;     // No pool unless QueryMain or QueryServer is given one
+    private static final int MAX_USAGE = 5;
+
+    private static BufferPool pool = new BufferPool(DEFAULT_NUM_FRAMES);
+
+    private final Frame[] frames;
+    private final HashMap<PageId, Frame> table = new HashMap<>();
+    private int hand;           // Next frame examined by the clock
+    private long hits;
+    private long misses;
+
+    /**
+     * Reads a page of a file into a frame
+     */
+    public interface PageLoader {
+        void load(ByteBuffer frame) throws IOException;
+    }
+
+    /**
+     * A page of a version of a file: a file that is rewritten gets a new version
+     */
+    private static final class PageId {
+        private final String file;
+        private final String version;
+        private final int pageNo;
+
+        private PageId(String file, String version, int pageNo) {
+            this.file = file;
+            this.version = version;
+            this.pageNo = pageNo;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof PageId))
+                return false;
+            PageId other = (PageId) o;
+            return pageNo == other.pageNo && file.equals(other.file) && version.equals(other.version);
+        }
+
+        public int hashCode() {
+            return 31 * (31 * file.hashCode() + version.hashCode()) + pageNo;
+        }
+    }
+
+    /**
+     * A frame and the page it holds. The content of a pinned frame does not change.
+     */
+    public static final class Frame {
+        private ByteBuffer data;        // Allocated with the size of the first page loaded, larger ones replace it
+        private PageId page;            // null for a free frame
+        private int pins;
+        private int usage;
+        private boolean loaded;         // false while the page is read, the other readers of the page wait
+
+        /**
+         * @return a view of the page, with its own position and limit
+         */
+        public ByteBuffer getData() {
+            return data.duplicate();
+        }
+    }
+
+    public BufferPool(int numFrames) {
+        frames = new Frame[numFrames];
+        for (int i = 0; i < numFrames; i++) {
+            frames[i] = new Frame();
+        }
+    }
+
+    /**
+     * @return the pool shared by all the readers of the process
+     */
+    public static synchronized BufferPool get() {
+        return pool;
+    }
+
+    /**
+     * Replaces the shared pool by a pool of the given number of frames, 0 to read the pages without a pool.
+     * The pages pinned in the old pool are unpinned there.
+     */
+    public static synchronized void setNumFrames(int numFrames) {
+        pool = new BufferPool(Math.max(0, numFrames));
+    }
+
+    /**
+     * Forgets the pages of the file in the shared pool, when it is rewritten
+     */
+    public static void invalidate(String fname) {
+        get().invalidateFile(fileName(fname));
+    }
+
+    /**
+     * @return the name of the file in the pool
+     */
+    public static String fileName(String fname) {
+        return new File(fname).getAbsolutePath();
+    }
+
+    /**
+     * @return the version of the file in the pool, which changes when the file is modified
+     */
+    public static String version(String fname) {
+        File f = new File(fname);
+        return f.lastModified() + ":" + f.length();
+    }
+
+    public int getNumFrames() {
+        return frames.length;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Pins the page, reading it with the loader if it is not in the pool
+     * @param size, the size of the page
+     * @return the frame of the page, to unpin when the page is no longer used, or null if every frame is pinned
+     */
+    public Frame pin(String file, String version, int pageNo, int size, PageLoader loader) throws IOException {
+        PageId id = new PageId(file, version, pageNo);
+        Frame frame;
+        boolean load = false;
+        synchronized (this) {
+            frame = table.get(id);
+            if (frame != null) {
+                hits++;
+                frame.pins++;
+                frame.usage = Math.min(MAX_USAGE, frame.usage + 1);
+            } else {
+                frame = victim();
+                if (frame == null) {
+                    return null;
+                }
+                misses++;
+                if (frame.page != null && table.get(frame.page) == frame) {
+                    table.remove(frame.page);
+                }
+                frame.page = id;
+                frame.pins = 1;
+                frame.usage = 1;
+                frame.loaded = false;
+                table.put(id, frame);
+                load = true;
+            }
+        }
+
+        if (load) {
+            try {
+                if (frame.data == null || frame.data.capacity() < size) {
+                    frame.data = ByteBuffer.allocate(size);
+                }
+                frame.data.clear();
+                frame.data.limit(size);
+                loader.load(frame.data);
+                frame.data.rewind();
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    table.remove(id);
+                    frame.page = null;
+                    frame.pins = 0;
+                    frame.usage = 0;
+                }
+                synchronized (frame) {
+                    frame.loaded = true;
+                    frame.notifyAll();
+                }
+                throw e;
+            }
+            synchronized (frame) {
+                frame.loaded = true;
+                frame.notifyAll();
+            }
+        } else {
+            synchronized (frame) {
+                while (!frame.loaded) {
+                    try {
+                        frame.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("BufferPool: interrupted", e);
+                    }
+                }
+            }
+            boolean failed;
+            synchronized (this) {
+                failed = !id.equals(frame.page);
+            }
+            if (failed) {  // the read failed, try again
+                unpin(frame);
+                return pin(file, version, pageNo, size, loader);
+            }
+        }
+        return frame;
+    }
+
+    public synchronized void unpin(Frame frame) {
+        if (frame.pins > 0) {
+            frame.pins--;
+        }
+    }
+
+    /**
+     * @return the number of pages of the pool that are pinned
+     */
+    public synchronized int numPinned() {
+        int pinned = 0;
+        for (Frame frame : frames) {
+            if (frame.pins > 0)
+                pinned++;
+        }
+        return pinned;
+    }
+
+    /**
+     * Forgets all the pages that are not pinned
+     */
+    public synchronized void clear() {
+        for (Frame frame : frames) {
+            if (frame.pins == 0 && frame.page != null) {
+                table.remove(frame.page);
+                frame.page = null;
+                frame.usage = 0;
+            }
+        }
+    }
+
+    /* =============================== PRIVATE METHODS =============================== */
+
+    private synchronized void invalidateFile(String file) {
+        for (Frame frame : frames) {
+            if (frame.page != null && frame.page.file.equals(file)) {
+                if (table.get(frame.page) == frame) {
+                    table.remove(frame.page);
+                }
+                if (frame.pins == 0) {
+                    frame.page = null;
+                }
+                frame.usage = 0;
+            }
+        }
+    }
+
+    /**
+     * @return an unpinned frame with a usage count of 0, after decrementing the counts of the frames the clock
+     * hand passes, or null if every frame is pinned
+     */
+    private Frame victim() {
+        if (frames.length == 0) {
+            return null;
+        }
+        /* every unpinned frame reaches 0 after MAX_USAGE turns of the clock */
+        for (int step = 0; step < (MAX_USAGE + 1) * frames.length; step++) {
+            Frame frame = frames[hand];
+            hand = (hand + 1) % frames.length;
+            if (frame.pins > 0) {
+                continue;
+            }
+            if (frame.page == null || frame.usage == 0) {
+                return frame;
+            }
+            frame.usage--;
+        }
+        return null;
+    }
+}
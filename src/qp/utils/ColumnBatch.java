@@ -0,0 +1,324 @@
+/**
+ * Column-oriented page: the values of each attribute are stored in a primitive array
+ * (INT in an int[], REAL in a float[], TIME in a long[], STRING as codes into a dictionary
+ * local to the batch), and a selection vector tells which rows are part of the batch.
+ **/
+
+package qp.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Vector;
+
+public class ColumnBatch {
+
+    private final Schema schema;
+    private final int capacity;         // Number of rows the columns can hold
+    private final int[] types;          // Type of each column
+
+    private final int[][] intCols;      // Values of the INT columns, codes of the STRING columns
+    private final float[][] floatCols;  // Values of the REAL columns
+    private final long[][] longCols;    // Values of the TIME columns
+    private final Dictionary[] dicts;   // Dictionaries of the STRING columns
+
+    private int numRows;                // Number of rows stored in the columns
+    private int[] sel;                  // Selected rows, null if every row is selected
+    private int selSize;                // Number of selected rows when sel != null
+
+    /**
+     * Strings of a STRING column of a batch, each distinct string is stored once
+     */
+    public static final class Dictionary {
+        private final ArrayList<String> values = new ArrayList<>();
+        private final HashMap<String, Integer> codes = new HashMap<>();
+
+        int encode(String s) {
+            Integer code = codes.get(s);
+            if (code == null) {
+                code = values.size();
+                values.add(s);
+                codes.put(s, code);
+            }
+            return code;
+        }
+
+        /**
+         * @return the code of the string, -1 if it does not appear in the column
+         */
+        public int codeOf(String s) {
+            Integer code = codes.get(s);
+            return code == null ? -1 : code;
+        }
+
+        public String valueOf(int code) {
+            return values.get(code);
+        }
+
+        public int size() {
+            return values.size();
+        }
+    }
+
+    public ColumnBatch(Schema schema, int capacity) {
+        this.schema = schema;
+        this.capacity = capacity;
+        int numCols = schema.getNumCols();
+        types = new int[numCols];
+        intCols = new int[numCols][];
+        floatCols = new float[numCols][];
+        longCols = new long[numCols][];
+        dicts = new Dictionary[numCols];
+        for (int i = 0; i < numCols; i++) {
+            types[i] = schema.typeOf(i);
+            switch (types[i]) {
+                case Attribute.INT:
+                    intCols[i] = new int[capacity];
+                    break;
+                case Attribute.REAL:
+                    floatCols[i] = new float[capacity];
+                    break;
+                case Attribute.TIME:
+                    longCols[i] = new long[capacity];
+                    break;
+                default:
+                    intCols[i] = new int[capacity];
+                    dicts[i] = new Dictionary();
+                    break;
+            }
+        }
+        numRows = 0;
+        sel = null;
+    }
+
+    /**
+     * Batch sharing the given columns of another batch, used for projections
+     */
+    private ColumnBatch(ColumnBatch base, int[] colIndex, Schema schema) {
+        this.schema = schema;
+        this.capacity = base.capacity;
+        int numCols = colIndex.length;
+        types = new int[numCols];
+        intCols = new int[numCols][];
+        floatCols = new float[numCols][];
+        longCols = new long[numCols][];
+        dicts = new Dictionary[numCols];
+        for (int i = 0; i < numCols; i++) {
+            int j = colIndex[i];
+            types[i] = base.types[j];
+            intCols[i] = base.intCols[j];
+            floatCols[i] = base.floatCols[j];
+            longCols[i] = base.longCols[j];
+            dicts[i] = base.dicts[j];
+        }
+        numRows = base.numRows;
+        sel = base.sel;
+        selSize = base.selSize;
+    }
+
+    /**
+     * @return a column batch holding the tuples of the row batch
+     */
+    public static ColumnBatch fromBatch(Batch batch, Schema schema) {
+        ColumnBatch cols = new ColumnBatch(schema, Math.max(batch.capacity(), batch.size()));
+        for (int i = 0; i < batch.size(); i++) {
+            cols.add(batch.elementAt(i));
+        }
+        return cols;
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of rows stored in the columns, selected or not
+     */
+    public int numRows() {
+        return numRows;
+    }
+
+    /**
+     * @return number of selected rows
+     */
+    public int size() {
+        return sel == null ? numRows : selSize;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isFull() {
+        return numRows == capacity;
+    }
+
+    /**
+     * @return the index in the columns of the i-th selected row
+     */
+    public int rowAt(int i) {
+        return sel == null ? i : sel[i];
+    }
+
+    /**
+     * Restricts the batch to the given rows (indexes in the columns, in increasing order)
+     */
+    public void select(int[] rows, int count) {
+        sel = rows;
+        selSize = count;
+    }
+
+    public int typeOf(int col) {
+        return types[col];
+    }
+
+    public int getInt(int col, int row) {
+        return intCols[col][row];
+    }
+
+    public float getFloat(int col, int row) {
+        return floatCols[col][row];
+    }
+
+    public long getLong(int col, int row) {
+        return longCols[col][row];
+    }
+
+    /**
+     * @return the values of an INT column, or the codes of a STRING column
+     */
+    public int[] intColumn(int col) {
+        return intCols[col];
+    }
+
+    public float[] floatColumn(int col) {
+        return floatCols[col];
+    }
+
+    public long[] longColumn(int col) {
+        return longCols[col];
+    }
+
+    /**
+     * @return the dictionary code of a STRING value
+     */
+    public int getCode(int col, int row) {
+        return intCols[col][row];
+    }
+
+    public Dictionary getDictionary(int col) {
+        return dicts[col];
+    }
+
+    public String getString(int col, int row) {
+        return dicts[col].valueOf(intCols[col][row]);
+    }
+
+    /**
+     * @return the value of a column as the object stored in a Tuple
+     */
+    public Object valueAt(int col, int row) {
+        switch (types[col]) {
+            case Attribute.INT:
+                return intCols[col][row];
+            case Attribute.REAL:
+                return floatCols[col][row];
+            case Attribute.TIME:
+                return longCols[col][row];
+            default:
+                return getString(col, row);
+        }
+    }
+
+    /**
+     * Appends a row, rows must be added before any selection is set
+     */
+    public void add(Tuple t) {
+        int row = newRow();
+        for (int i = 0; i < types.length; i++) {
+            Object value = t.dataAt(i);
+            switch (types[i]) {
+                case Attribute.INT:
+                    intCols[i][row] = (Integer) value;
+                    break;
+                case Attribute.REAL:
+                    floatCols[i][row] = (Float) value;
+                    break;
+                case Attribute.TIME:
+                    longCols[i][row] = (Long) value;
+                    break;
+                default:
+                    intCols[i][row] = dicts[i].encode((String) value);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Appends the tuple stored at the given offset of a page of a PageFile
+     */
+    void addEncoded(ByteBuffer page, int offset) {
+        int row = newRow();
+        int pos = offset;
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+                case Attribute.INT:
+                    intCols[i][row] = page.getInt(pos);
+                    pos += 4;
+                    break;
+                case Attribute.REAL:
+                    floatCols[i][row] = page.getFloat(pos);
+                    pos += 4;
+                    break;
+                case Attribute.TIME:
+                    longCols[i][row] = page.getLong(pos);
+                    pos += 8;
+                    break;
+                default:
+                    int length = page.getShort(pos) & 0xFFFF;
+                    pos += 2;
+                    intCols[i][row] = dicts[i].encode(PageFile.decodeString(page, pos, length));
+                    pos += length;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return a batch made of the given columns of this one, sharing their values and the selection
+     */
+    public ColumnBatch project(int[] colIndex, Schema projected) {
+        return new ColumnBatch(this, colIndex, projected);
+    }
+
+    /**
+     * @return the i-th selected row as a Tuple
+     */
+    public Tuple tupleAt(int i) {
+        int row = rowAt(i);
+        Vector data = new Vector(types.length);
+        for (int col = 0; col < types.length; col++) {
+            data.add(valueAt(col, row));
+        }
+        return new Tuple(data);
+    }
+
+    /**
+     * @return the selected rows as a row batch
+     */
+    public Batch toBatch() {
+        Batch batch = new Batch(Math.max(capacity, size()));
+        for (int i = 0; i < size(); i++) {
+            batch.add(tupleAt(i));
+        }
+        return batch;
+    }
+
+    private int newRow() {
+        return numRows++;
+    }
+}
@@ -0,0 +1,293 @@
+/**
+ * Distribution of the values of one attribute of a table: the most common values with their number of
+ * occurrences, and an equi-depth histogram of the other values, each bucket holding about the same number
+ * of tuples. Used by PlanCost to estimate the selectivity of select conditions and the size of joins when
+ * the values are skewed. The histograms of a table are written by ConvertTxtToTbl in <tablename>.hist.
+ **/
+
+package qp.utils;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+
+public class Histogram implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int NUM_BUCKETS = 20;
+    public static final int NUM_MCV = 10;
+
+    private final String colName;
+    private final long numTuples;
+    private final long numDistinct;
+
+    private final Object[] mcv;         // Most common values
+    private final long[] mcvCount;      // Number of occurrences of each of them
+
+    private final Object[] lo;          // Smallest value of each bucket
+    private final Object[] hi;          // Largest value of each bucket
+    private final long[] count;         // Number of tuples of each bucket
+    private final long[] distinct;      // Number of distinct values of each bucket
+
+    private Histogram(String colName, long numTuples, long numDistinct, ArrayList<Object> mcvs, ArrayList<Long> mcvCounts,
+                      ArrayList<Object[]> buckets, ArrayList<long[]> bucketCounts) {
+        this.colName = colName;
+        this.numTuples = numTuples;
+        this.numDistinct = numDistinct;
+        mcv = mcvs.toArray();
+        mcvCount = new long[mcvs.size()];
+        for (int i = 0; i < mcvCount.length; i++) {
+            mcvCount[i] = mcvCounts.get(i);
+        }
+        lo = new Object[buckets.size()];
+        hi = new Object[buckets.size()];
+        count = new long[buckets.size()];
+        distinct = new long[buckets.size()];
+        for (int b = 0; b < lo.length; b++) {
+            lo[b] = buckets.get(b)[0];
+            hi[b] = buckets.get(b)[1];
+            count[b] = bucketCounts.get(b)[0];
+            distinct[b] = bucketCounts.get(b)[1];
+        }
+    }
+
+    /**
+     * @param values all the values of the attribute in the table, sorted in place
+     */
+    @SuppressWarnings("unchecked")
+    public static Histogram build(String colName, ArrayList<Object> values) {
+        Collections.sort((ArrayList) values);
+
+        /* the distinct values and their number of occurrences, in increasing order */
+        ArrayList<Object> keys = new ArrayList<>();
+        ArrayList<Long> occurrences = new ArrayList<>();
+        for (Object v : values) {
+            if (keys.isEmpty() || !keys.get(keys.size() - 1).equals(v)) {
+                keys.add(v);
+                occurrences.add(1L);
+            } else {
+                occurrences.set(occurrences.size() - 1, occurrences.get(occurrences.size() - 1) + 1);
+            }
+        }
+        long numTuples = values.size();
+        long numDistinct = keys.size();
+
+        /* the values occurring more often than the average value are candidates for the most common values */
+        ArrayList<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (occurrences.get(i) > 1 && occurrences.get(i) * numDistinct > numTuples)
+                candidates.add(i);
+        }
+        candidates.sort((i1, i2) -> Long.compare(occurrences.get(i2), occurrences.get(i1)));
+        boolean[] common = new boolean[keys.size()];
+        ArrayList<Object> mcvs = new ArrayList<>();
+        ArrayList<Long> mcvCounts = new ArrayList<>();
+        long restTuples = numTuples;
+        for (int i = 0; i < Math.min(NUM_MCV, candidates.size()); i++) {
+            int k = candidates.get(i);
+            common[k] = true;
+            mcvs.add(keys.get(k));
+            mcvCounts.add(occurrences.get(k));
+            restTuples -= occurrences.get(k);
+        }
+
+        /* the other values are split into buckets of about restTuples / NUM_BUCKETS tuples */
+        ArrayList<Object[]> buckets = new ArrayList<>();
+        ArrayList<long[]> bucketCounts = new ArrayList<>();
+        double depth = Math.max(1.0, (double) restTuples / NUM_BUCKETS);
+        long seen = 0;
+        Object[] bucket = null;
+        long[] bucketCount = null;
+        for (int i = 0; i < keys.size(); i++) {
+            if (common[i])
+                continue;
+            if (bucket == null) {
+                bucket = new Object[]{keys.get(i), keys.get(i)};
+                bucketCount = new long[2];
+            }
+            bucket[1] = keys.get(i);
+            bucketCount[0] += occurrences.get(i);
+            bucketCount[1]++;
+            seen += occurrences.get(i);
+            if (seen >= depth * (buckets.size() + 1)) {
+                buckets.add(bucket);
+                bucketCounts.add(bucketCount);
+                bucket = null;
+            }
+        }
+        if (bucket != null) {
+            buckets.add(bucket);
+            bucketCounts.add(bucketCount);
+        }
+        return new Histogram(colName, numTuples, numDistinct, mcvs, mcvCounts, buckets, bucketCounts);
+    }
+
+    /**
+     * @return name of the histograms file of the given table
+     */
+    public static String fileName(String tabname) {
+        return tabname + ".hist";
+    }
+
+    /**
+     * @return the histograms of the attributes of the given table, null if the table has none
+     */
+    public static Histogram[] read(String tabname) {
+        File f = new File(fileName(tabname));
+        if (!f.exists()) {
+            return null;
+        }
+        try {
+            ObjectInputStream in = new ObjectInputStream(new FileInputStream(f));
+            Histogram[] histograms = (Histogram[]) in.readObject();
+            in.close();
+            return histograms;
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Histogram: error in reading " + f.getName());
+            return null;
+        }
+    }
+
+    public static void write(Histogram[] histograms, String fname) throws IOException {
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(fname));
+        out.writeObject(histograms);
+        out.close();
+    }
+
+    public String getColName() {
+        return colName;
+    }
+
+    public long getNumTuples() {
+        return numTuples;
+    }
+
+    public long getNumDistinct() {
+        return numDistinct;
+    }
+
+    /**
+     * @param value constant of the condition, of the type of the attribute
+     * @return estimated fraction of the tuples whose value satisfies the comparison with the constant
+     */
+    public double selectivity(int exprtype, Object value) {
+        if (numTuples == 0) {
+            return 0;
+        }
+        double eq = equalFraction(value);
+        double less = lessFraction(value);
+        double sel;
+        switch (exprtype) {
+            case Condition.EQUAL:
+                sel = eq;
+                break;
+            case Condition.NOTEQUAL:
+                sel = 1 - eq;
+                break;
+            case Condition.LESSTHAN:
+                sel = less;
+                break;
+            case Condition.LTOE:
+                sel = less + eq;
+                break;
+            case Condition.GREATERTHAN:
+                sel = 1 - less - eq;
+                break;
+            case Condition.GTOE:
+                sel = 1 - less;
+                break;
+            default:
+                sel = 0.5;
+                break;
+        }
+        return Math.max(0, Math.min(1, sel));
+    }
+
+    /**
+     * Estimates the fraction of the pairs of tuples of the two tables with equal values, counting the
+     * most common values of each side against the other side, and assuming uniform distributions for
+     * the rest of the values.
+     * @return -1 if the values of the attributes cannot be compared
+     */
+    public static double joinSelectivity(Histogram r, Histogram s) {
+        if (r.numTuples == 0 || s.numTuples == 0) {
+            return 0;
+        }
+        try {
+            double size = 0;
+            long rRest = r.numTuples;
+            long sRest = s.numTuples;
+            for (int i = 0; i < r.mcv.length; i++) {
+                size += r.mcvCount[i] * s.equalFraction(r.mcv[i]) * s.numTuples;
+                rRest -= r.mcvCount[i];
+            }
+            for (int i = 0; i < s.mcv.length; i++) {
+                if (r.mcvIndex(s.mcv[i]) < 0)
+                    size += s.mcvCount[i] * r.equalFraction(s.mcv[i]) * r.numTuples;
+                sRest -= s.mcvCount[i];
+            }
+            long rDistinct = Math.max(1, r.numDistinct - r.mcv.length);
+            long sDistinct = Math.max(1, s.numDistinct - s.mcv.length);
+            size += (double) rRest * sRest / Math.max(rDistinct, sDistinct);
+            return Math.min(1, size / ((double) r.numTuples * s.numTuples));
+        } catch (ClassCastException e) {
+            return -1;
+        }
+    }
+
+    /* =============================== PRIVATE METHODS =============================== */
+
+    private int mcvIndex(Object value) {
+        for (int i = 0; i < mcv.length; i++) {
+            if (mcv[i].equals(value))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return fraction of the tuples equal to the value, the values of a bucket being assumed equally frequent
+     */
+    private double equalFraction(Object value) {
+        int m = mcvIndex(value);
+        if (m >= 0) {
+            return (double) mcvCount[m] / numTuples;
+        }
+        for (int b = 0; b < lo.length; b++) {
+            if (compare(lo[b], value) <= 0 && compare(value, hi[b]) <= 0)
+                return (double) count[b] / distinct[b] / numTuples;
+        }
+        return 0;
+    }
+
+    /**
+     * @return fraction of the tuples smaller than the value, interpolating linearly inside a bucket of numbers
+     */
+    private double lessFraction(Object value) {
+        double less = 0;
+        for (int i = 0; i < mcv.length; i++) {
+            if (compare(mcv[i], value) < 0)
+                less += mcvCount[i];
+        }
+        for (int b = 0; b < lo.length; b++) {
+            if (compare(hi[b], value) < 0) {
+                less += count[b];
+            } else if (compare(lo[b], value) < 0) {
+                double fraction = 0.5;
+                if (value instanceof Number) {
+                    double l = ((Number) lo[b]).doubleValue();
+                    double h = ((Number) hi[b]).doubleValue();
+                    fraction = (((Number) value).doubleValue() - l) / (h - l);
+                }
+                less += fraction * count[b];
+            }
+        }
+        return less / numTuples;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object v1, Object v2) {
+        return ((Comparable<Object>) v1).compareTo(v2);
+    }
+}
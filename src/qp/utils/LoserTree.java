@@ -0,0 +1,104 @@
+/**
+ * Tournament (loser) tree used to merge k sorted sources: after the smallest key is taken,
+ * the next key of the same source is compared against the losers on its path to the root,
+ * which takes ceil(log2 k) comparisons instead of k for a linear scan.
+ * Equal keys are returned in the order of their sources, so that merging is stable.
+ **/
+
+package qp.utils;
+
+import java.util.Comparator;
+
+final class LoserTree<T> {
+
+    private final Comparator<? super T> cmp;
+    private final int k;                // Number of sources
+    private final Object[] keys;        // Current key of each source, null once the source is exhausted
+    private final int[] tree;           // tree[0] is the winner, tree[1..k-1] the losers of the internal nodes
+
+    LoserTree(int k, Comparator<? super T> cmp) {
+        this.cmp = cmp;
+        this.k = k;
+        keys = new Object[k];
+        tree = new int[Math.max(1, k)];
+    }
+
+    /**
+     * Sets the first key of a source, before build() is called
+     */
+    void set(int source, T key) {
+        keys[source] = key;
+    }
+
+    /**
+     * Plays the initial tournament between the first keys of the sources
+     */
+    void build() {
+        if (k == 1) {
+            tree[0] = 0;
+            return;
+        }
+        /* nodes 1..k-1 are internal, node k+i is the leaf of source i */
+        int[] winners = new int[2 * k];
+        for (int i = 0; i < k; i++) {
+            winners[k + i] = i;
+        }
+        for (int node = k - 1; node >= 1; node--) {
+            int a = winners[2 * node];
+            int b = winners[2 * node + 1];
+            if (less(a, b)) {
+                winners[node] = a;
+                tree[node] = b;
+            } else {
+                winners[node] = b;
+                tree[node] = a;
+            }
+        }
+        tree[0] = winners[1];
+    }
+
+    /**
+     * @return the source of the smallest key
+     */
+    int winner() {
+        return tree[0];
+    }
+
+    /**
+     * @return the smallest key, null if every source is exhausted
+     */
+    @SuppressWarnings("unchecked")
+    T winnerKey() {
+        return (T) keys[tree[0]];
+    }
+
+    /**
+     * Replaces the smallest key by the next key of its source (null if the source is exhausted)
+     */
+    void replaceWinner(T next) {
+        int cur = tree[0];
+        keys[cur] = next;
+        for (int node = (k + cur) / 2; node >= 1; node /= 2) {
+            if (less(tree[node], cur)) {
+                int winner = tree[node];
+                tree[node] = cur;
+                cur = winner;
+            }
+        }
+        tree[0] = cur;
+    }
+
+    /**
+     * @return true if the key of source a comes before the key of source b, exhausted sources come last
+     */
+    @SuppressWarnings("unchecked")
+    private boolean less(int a, int b) {
+        Object ka = keys[a];
+        Object kb = keys[b];
+        if (ka == null || kb == null) {
+            return kb == null && (ka != null || a < b);
+        }
+        int c = cmp.compare((T) ka, (T) kb);
+        return c < 0 || (c == 0 && a < b);
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Binary page file format used for the base tables and the temporary files.
+ *
+ * A file starts with a HEADER_SIZE bytes header followed by fixed-size slotted pages:
+ *   header: magic (4) | version (2) | unused (2) | page size (4) | number of pages (4) | number of tuples (8) | unused
+ *   page:   number of slots (2) | start of tuple data (2) | slot offsets (2 each) ... free ... tuple data
+ * The tuple data grows from the end of the page towards the slot directory. Tuples are encoded according
+ * to the schema of the file: INT and REAL take 4 bytes, TIME 8 bytes, and STRING a 2 bytes length followed
+ * by the UTF-8 bytes of the string.
+ **/
+
+package qp.utils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.DataInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Vector;
+
+public final class PageFile {
+
+    public static final int MAGIC = 0x51504731;         // "QPG1"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    public static final int MAX_PAGE_SIZE = 65535;      // slot offsets are unsigned shorts
+
+    static final int PAGE_HEADER_SIZE = 4;
+    static final int SLOT_SIZE = 2;
+
+    private PageFile() {
+    }
+
+    /**
+     * @return true if the file starts with the magic number of this format, false for
+     * files written with an ObjectOutputStream (and for files that cannot be read)
+     */
+    public static boolean isPageFile(String fname) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(fname))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the page size used for temporary files, large enough for a page of the current Batch size
+     */
+    public static int tempPageSize() {
+        return Math.min(MAX_PAGE_SIZE, Math.max(DEFAULT_PAGE_SIZE, Batch.getPageSize()));
+    }
+
+    /**
+     * @return the byte offset of the given page in the file
+     */
+    public static long pageOffset(int pageNo, int pageSize) {
+        return HEADER_SIZE + (long) pageNo * pageSize;
+    }
+
+    /**
+     * @return number of bytes needed to encode the tuple
+     */
+    static int encodedSize(Tuple t, Schema schema) {
+        int size = 0;
+        for (int i = 0; i < schema.getNumCols(); i++) {
+            switch (schema.typeOf(i)) {
+                case Attribute.INT:
+                case Attribute.REAL:
+                    size += 4;
+                    break;
+                case Attribute.TIME:
+                    size += 8;
+                    break;
+                default:
+                    size += 2 + ((String) t.dataAt(i)).getBytes(StandardCharsets.UTF_8).length;
+                    break;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes the tuple at the given offset of the page
+     */
+    static void encode(ByteBuffer page, int offset, Tuple t, Schema schema) {
+        int pos = offset;
+        for (int i = 0; i < schema.getNumCols(); i++) {
+            Object value = t.dataAt(i);
+            switch (schema.typeOf(i)) {
+                case Attribute.INT:
+                    page.putInt(pos, (Integer) value);
+                    pos += 4;
+                    break;
+                case Attribute.REAL:
+                    page.putFloat(pos, (Float) value);
+                    pos += 4;
+                    break;
+                case Attribute.TIME:
+                    page.putLong(pos, (Long) value);
+                    pos += 8;
+                    break;
+                default:
+                    byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                    page.putShort(pos, (short) bytes.length);
+                    pos += 2;
+                    for (byte b : bytes) {
+                        page.put(pos++, b);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return the tuple stored at the given offset of the page
+     */
+    static Tuple decode(ByteBuffer page, int offset, Schema schema) {
+        int numCols = schema.getNumCols();
+        Vector data = new Vector(numCols);
+        int pos = offset;
+        for (int i = 0; i < numCols; i++) {
+            switch (schema.typeOf(i)) {
+                case Attribute.INT:
+                    data.add(page.getInt(pos));
+                    pos += 4;
+                    break;
+                case Attribute.REAL:
+                    data.add(page.getFloat(pos));
+                    pos += 4;
+                    break;
+                case Attribute.TIME:
+                    data.add(page.getLong(pos));
+                    pos += 8;
+                    break;
+                default:
+                    int length = page.getShort(pos) & 0xFFFF;
+                    pos += 2;
+                    data.add(decodeString(page, pos, length));
+                    pos += length;
+                    break;
+            }
+        }
+        return new Tuple(data);
+    }
+
+    static String decodeString(ByteBuffer page, int pos, int length) {
+        if (page.hasArray()) {
+            return new String(page.array(), page.arrayOffset() + pos, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer view = page.duplicate();
+        view.position(pos);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return number of tuples stored in the page
+     */
+    static int numSlots(ByteBuffer page) {
+        return page.getShort(0) & 0xFFFF;
+    }
+
+    /**
+     * @return offset in the page of the tuple stored in the given slot
+     */
+    static int slotOffset(ByteBuffer page, int slot) {
+        return page.getShort(PAGE_HEADER_SIZE + slot * SLOT_SIZE) & 0xFFFF;
+    }
+
+    /**
+     * Decodes every tuple of the page, in slot order
+     */
+    static void decodePage(ByteBuffer page, Schema schema, List<Tuple> out) {
+        int numSlots = numSlots(page);
+        for (int slot = 0; slot < numSlots; slot++) {
+            out.add(decode(page, slotOffset(page, slot), schema));
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ * Reads the tuples of a file in the PageFile format, either page by page or as Batches of a given size.
+ * The pages are read through the shared BufferPool, so that the pages read before are served from memory;
+ * a page is pinned while it is decoded. Without a pool, or when all its frames are pinned, pages are read
+ * into a buffer of the reader. In mapped mode, the file is memory-mapped and pages are decoded straight from
+ * the mapped region, bypassing the pool, so that repeated scans of a table are served from the OS page cache
+ * without any copy.
+ **/
+
+package qp.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+public class PageReader {
+
+    private static final int MAX_REGION_SIZE = 1 << 30;     // Largest region mapped at once
+
+    private final String fname;
+    private final Schema schema;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer page;          // Page buffer, null in mapped mode
+    private final boolean mapped;
+    private final BufferPool pool;          // Pool the pages are read through, null if there is none
+    private final String poolFile;          // Name and version of the file in the pool
+    private final String poolVersion;
+    private BufferPool.Frame frame;         // Frame of the page being decoded, pinned until released
+    private MappedByteBuffer region;        // Mapped pages, in mapped mode
+    private int regionStart;                // First page of region
+    private int regionPages;                // Number of pages in region
+
+    private final int pageSize;
+    private final int numPages;
+    private final long numTuples;
+
+    private int nextPage;                   // Next page read by readPage()
+    private ArrayList<Tuple> pending;       // Tuples of the last page read, not yet returned by readBatch
+    private int pcurs;                      // Cursor in pending
+    private ByteBuffer colPage;             // Page being decoded by readColumns
+    private int colSlot;                    // Next slot of colPage to decode
+    private BitSet pageFilter;              // Pages read by the sequential read methods, null to read them all
+
+    public PageReader(String fname, Schema schema) throws IOException {
+        this(fname, schema, false);
+    }
+
+    /**
+     * @param mapped true to memory-map the file instead of reading it page by page through the pool
+     */
+    public PageReader(String fname, Schema schema, boolean mapped) throws IOException {
+        this.fname = fname;
+        this.schema = schema;
+        BufferPool shared = BufferPool.get();
+        pool = !mapped && shared.getNumFrames() > 0 ? shared : null;
+        this.mapped = mapped;
+        poolFile = BufferPool.fileName(fname);
+        poolVersion = BufferPool.version(fname);
+        file = new RandomAccessFile(fname, "r");
+        channel = file.getChannel();
+
+        ByteBuffer header = ByteBuffer.allocate(PageFile.HEADER_SIZE);
+        readFully(header, 0);
+        if (header.getInt(0) != PageFile.MAGIC) {
+            close();
+            throw new IOException("PageReader: " + fname + " is not a page file");
+        }
+        pageSize = header.getInt(8);
+        numPages = header.getInt(12);
+        numTuples = header.getLong(16);
+
+        page = this.mapped ? null : ByteBuffer.allocate(pageSize);
+        regionStart = 0;
+        regionPages = 0;
+        nextPage = 0;
+        pending = new ArrayList<>();
+        pcurs = 0;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getNumPages() {
+        return numPages;
+    }
+
+    public long getNumTuples() {
+        return numTuples;
+    }
+
+    /**
+     * Restricts readPage(), readBatch() and readColumns() to the given pages, the other pages are skipped.
+     * readPage(pageNo) and readTuple() are not affected.
+     */
+    public void setPageFilter(BitSet pages) {
+        pageFilter = pages;
+    }
+
+    /**
+     * @return the tuples of the next page, null at the end of the file
+     */
+    public ArrayList<Tuple> readPage() throws IOException {
+        skipFilteredPages();
+        if (nextPage >= numPages) {
+            return null;
+        }
+        return readPage(nextPage++);
+    }
+
+    /**
+     * @return the tuples of the given page
+     */
+    public ArrayList<Tuple> readPage(int pageNo) throws IOException {
+        ArrayList<Tuple> tuples = new ArrayList<>();
+        try {
+            PageFile.decodePage(fetchPage(pageNo), schema, tuples);
+        } finally {
+            releasePage();
+        }
+        return tuples;
+    }
+
+    /**
+     * @return the tuple stored in the given slot of the given page
+     */
+    public Tuple readTuple(int pageNo, int slot) throws IOException {
+        try {
+            ByteBuffer buf = fetchPage(pageNo);
+            return PageFile.decode(buf, PageFile.slotOffset(buf, slot), schema);
+        } finally {
+            releasePage();
+        }
+    }
+
+    /**
+     * Positions the reader so that the next readPage() returns the given page
+     */
+    public void seekPage(int pageNo) {
+        nextPage = pageNo;
+        pending.clear();
+        pcurs = 0;
+        colPage = null;
+        releasePage();
+    }
+
+    /**
+     * Reads the next batchsize tuples, regardless of the pages they are stored in.
+     * Like ObjectInputStream.readObject(), an EOFException is thrown at the end of the file.
+     * @return a batch of batchsize tuples, or less for the last batch of the file
+     */
+    public Batch readBatch(int batchsize) throws IOException {
+        Batch batch = new Batch(batchsize);
+        while (!batch.isFull()) {
+            if (pcurs == pending.size()) {
+                ArrayList<Tuple> tuples = readPage();
+                if (tuples == null) {
+                    break;
+                }
+                pending = tuples;
+                pcurs = 0;
+                continue;
+            }
+            batch.add(pending.get(pcurs++));
+        }
+        if (batch.isEmpty()) {
+            throw new EOFException(fname);
+        }
+        return batch;
+    }
+
+    /**
+     * Reads the next batchsize tuples straight into the columns of a ColumnBatch.
+     * Must not be mixed with the other read methods on the same reader.
+     * Like readBatch(), an EOFException is thrown at the end of the file.
+     */
+    public ColumnBatch readColumns(int batchsize) throws IOException {
+        ColumnBatch batch = new ColumnBatch(schema, batchsize);
+        while (!batch.isFull()) {
+            if (colPage == null || colSlot == PageFile.numSlots(colPage)) {
+                colPage = null;
+                releasePage();
+                skipFilteredPages();
+                if (nextPage >= numPages) {
+                    break;
+                }
+                colPage = fetchPage(nextPage++);
+                colSlot = 0;
+                continue;
+            }
+            batch.addEncoded(colPage, PageFile.slotOffset(colPage, colSlot++));
+        }
+        if (batch.numRows() == 0) {
+            throw new EOFException(fname);
+        }
+        return batch;
+    }
+
+    public void close() throws IOException {
+        colPage = null;
+        releasePage();
+        region = null;      // the mapping itself is released once the buffer is garbage collected
+        channel.close();
+        file.close();
+    }
+
+    private void skipFilteredPages() {
+        if (pageFilter != null && nextPage < numPages && !pageFilter.get(nextPage)) {
+            int next = pageFilter.nextSetBit(nextPage);
+            nextPage = next < 0 ? numPages : next;
+        }
+    }
+
+    /**
+     * @return the page, pinned in the pool until releasePage() if it was read through the pool
+     */
+    private ByteBuffer fetchPage(int pageNo) throws IOException {
+        if (pageNo < 0 || pageNo >= numPages) {
+            throw new IOException("PageReader: page " + pageNo + " out of range in " + fname);
+        }
+        if (mapped) {
+            return mappedPage(pageNo);
+        }
+        long offset = PageFile.pageOffset(pageNo, pageSize);
+        if (pool != null) {
+            frame = pool.pin(poolFile, poolVersion, pageNo, pageSize, buf -> readFully(buf, offset));
+            if (frame != null) {
+                return frame.getData();
+            }
+        }
+        page.clear();
+        readFully(page, offset);
+        return page;
+    }
+
+    /**
+     * Unpins the page returned by the last fetchPage()
+     */
+    private void releasePage() {
+        if (frame != null) {
+            pool.unpin(frame);
+            frame = null;
+        }
+    }
+
+    /**
+     * @return a view of the given page in the mapped region, remapping the region if the page is not in it
+     */
+    private ByteBuffer mappedPage(int pageNo) throws IOException {
+        if (region == null || pageNo < regionStart || pageNo >= regionStart + regionPages) {
+            regionStart = pageNo;
+            regionPages = Math.min(numPages - pageNo, MAX_REGION_SIZE / pageSize);
+            region = channel.map(FileChannel.MapMode.READ_ONLY,
+                    PageFile.pageOffset(pageNo, pageSize), (long) regionPages * pageSize);
+        }
+        ByteBuffer view = region.duplicate();
+        view.position((pageNo - regionStart) * pageSize);
+        view.limit(view.position() + pageSize);
+        return view.slice();
+    }
+
+    /**
+     * Fills buf from its position to its limit with the bytes of the file starting at position
+     */
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0) {
+                throw new EOFException(fname);
+            }
+            position += n;
+        }
+        buf.rewind();
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Writes tuples to a file in the PageFile format, one page at a time
+ **/
+
+package qp.utils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+public class PageWriter {
+
+    private final String fname;
+    private final Schema schema;
+    private final int pageSize;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer page;     // The page being filled
+
+    private int numSlots;              // Number of tuples in the current page
+    private int dataStart;             // Offset of the first byte of tuple data in the current page
+    private int numPages;              // Number of pages written so far
+    private long numTuples;            // Number of tuples written so far
+
+    /**
+     * Creates (or truncates) the file, using the default temporary file page size
+     */
+    public PageWriter(String fname, Schema schema) throws IOException {
+        this(fname, schema, PageFile.tempPageSize());
+    }
+
+    public PageWriter(String fname, Schema schema, int pageSize) throws IOException {
+        if (pageSize > PageFile.MAX_PAGE_SIZE) {
+            throw new IOException("PageWriter: page size larger than " + PageFile.MAX_PAGE_SIZE);
+        }
+        this.fname = fname;
+        this.schema = schema;
+        this.pageSize = pageSize;
+        BufferPool.invalidate(fname);   // the pages read before are not the pages of the new file
+        file = new RandomAccessFile(fname, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        page = ByteBuffer.allocate(pageSize);
+        resetPage();
+    }
+
+    public String getFileName() {
+        return fname;
+    }
+
+    public int getNumPages() {
+        return numPages;
+    }
+
+    public long getNumTuples() {
+        return numTuples;
+    }
+
+    /**
+     * Appends the tuple to the current page, which is written out first if the tuple does not fit anymore
+     */
+    public void add(Tuple t) throws IOException {
+        int size = PageFile.encodedSize(t, schema);
+        if (!fits(size)) {
+            if (numSlots == 0) {
+                throw new IOException("PageWriter: tuple of " + size + " bytes does not fit in a page of " + fname);
+            }
+            flushPage();
+        }
+        dataStart -= size;
+        PageFile.encode(page, dataStart, t, schema);
+        page.putShort(PageFile.PAGE_HEADER_SIZE + numSlots * PageFile.SLOT_SIZE, (short) dataStart);
+        numSlots++;
+        numTuples++;
+    }
+
+    /**
+     * Appends every tuple of the batch
+     */
+    public void add(Batch b) throws IOException {
+        for (int i = 0; i < b.size(); i++) {
+            add(b.elementAt(i));
+        }
+    }
+
+    /**
+     * Writes the last page and the file header, and closes the file
+     */
+    public void close() throws IOException {
+        if (numSlots > 0) {
+            flushPage();
+        }
+        ByteBuffer header = ByteBuffer.allocate(PageFile.HEADER_SIZE);
+        header.putInt(PageFile.MAGIC);
+        header.putShort(PageFile.VERSION);
+        header.putShort((short) 0);
+        header.putInt(pageSize);
+        header.putInt(numPages);
+        header.putLong(numTuples);
+        header.rewind();
+        channel.write(header, 0);
+        channel.close();
+        file.close();
+    }
+
+    private boolean fits(int size) {
+        int slotsEnd = PageFile.PAGE_HEADER_SIZE + (numSlots + 1) * PageFile.SLOT_SIZE;
+        return slotsEnd <= dataStart - size;
+    }
+
+    private void flushPage() throws IOException {
+        page.putShort(0, (short) numSlots);
+        page.putShort(2, (short) dataStart);
+        page.rewind();
+        long position = PageFile.pageOffset(numPages, pageSize);
+        while (page.hasRemaining()) {
+            position += channel.write(page, position);
+        }
+        numPages++;
+        resetPage();
+    }
+
+    private void resetPage() {
+        Arrays.fill(page.array(), (byte) 0);
+        page.clear();
+        numSlots = 0;
+        dataStart = pageSize;
+    }
+}
@@ -1,16 +1,22 @@
-/* functions to get some random numbers, useful in random optimizer */
+/* functions to get some random numbers, useful in random optimizer. Each thread draws from its own
+   generator, so that plans can be searched in parallel without contention on a shared one */
 package qp.utils;
 
-import java.lang.Math;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class RandNumb {
     /* get a random number between a and b */
     public static int randInt(int a, int b) {
-        return ((int) (Math.floor(Math.random() * (b - a + 1)) + a));
+        return ThreadLocalRandom.current().nextInt(a, b + 1);
     }
 
     /* taking head/ toss */
     public static boolean flipCoin() {
-        return (Math.random() < 0.5);
+        return ThreadLocalRandom.current().nextBoolean();
+    }
+
+    /* get a random number between 0 (inclusive) and 1 (exclusive) */
+    public static double randDouble() {
+        return ThreadLocalRandom.current().nextDouble();
     }
 }
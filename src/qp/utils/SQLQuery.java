@@ -15,6 +15,7 @@ public class SQLQuery {
 
     Vector orderbyList;        //List of attributes in GROUP BY clause
     boolean isDistinct = false;   // Whether distinct key word appeared in select clause
+    int limit = -1;               // Number of rows in LIMIT clause, -1 if there is none
 
 
     public SQLQuery(Vector list1, Vector list2, Vector list3, Vector list4) {
@@ -95,6 +96,21 @@ public class SQLQuery {
         return orderbyList;
     }
 
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * @return maximum number of rows of the result, -1 if the query has no LIMIT clause
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean hasLimit() {
+        return limit >= 0;
+    }
+
     public int getNumJoin() {
         if (joinList == null)
             return 0;
@@ -2,31 +2,46 @@ package qp.utils;
 
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import qp.operators.Operator;
 
 public final class Sorter {
 	
+	/* Strategies used to generate the sorted runs */
+	public static final int SORTED_BLOCKS = 0;			// Blocks of numBuff pages are sorted in memory
+	public static final int REPLACEMENT_SELECTION = 1;	// Runs are built with a tournament over numBuff pages
+	
 	private final Operator base;				// The operator that generates the table to sort
+	private final Schema schema;				// The schema of the tuples to sort
 	private final int numBuff;					// The number of buffers that can be used 
 	private final int batchSize;				// The number of buffers that can be used
 	private final Comparator<Tuple> cmp;		// Defines how tuples are compared
 	
 	private int numPages;						// The number of pages of the materialized table
 	private String sortedName;					// The file-name of the materialized, sorted file
+	private BufferBudget.Grant grant;			// Buffers of the operator sorting, null if it has no grant
 	
-	private static int filenum = 0;				// To get unique filenum for this operation
+	private static final AtomicInteger filenum = new AtomicInteger();	// To get unique filenum for this operation
+	private static int parallelism = Runtime.getRuntime().availableProcessors();	// Number of worker threads
+	private static ForkJoinPool workers;		// Threads sorting and merging runs, created on first use
+	private static int runGeneration = SORTED_BLOCKS;	// Strategy used to generate the sorted runs
 	private LinkedList<String> runfNames;		// Sorted runs file-names
 	private LinkedList<String> filesCreated;	// Names of all the files created during sorting process
 	
+	private Batch inBatch;						// Page of base being read while generating the runs
+	private int inCursor;						// Next tuple of inBatch
+	
 	/* =============================== PUBLIC INTERFACE =============================== */ 
 	
 	/**
@@ -38,6 +53,7 @@ public final class Sorter {
 	 */
 	public Sorter(Operator base, int numBuff, int batchSize, Comparator<Tuple> cmp) {
 		this.base = base;
+		this.schema = base.getSchema();
 		this.numBuff = numBuff;
 		this.batchSize = batchSize;
 		this.cmp = cmp;
@@ -56,7 +72,7 @@ public final class Sorter {
 			boolean sorted = mergePhase();
 			if(sorted) {
 				sortedName = runfNames.removeFirst();
-				filesCreated.removeLast(); // sorted file should not be deleted in close()
+				filesCreated.remove(sortedName); // sorted file should not be deleted in close()
 				close();
 				return true;
 			} else {
@@ -67,6 +83,48 @@ public final class Sorter {
 		}
 	}
 	
+	/**
+	 * Sets the grant of the operator sorting: the merge phase takes the spare buffers of the query it needs to
+	 * merge the runs in one pass, and gives them back once the runs are merged
+	 */
+	public void setGrant(BufferBudget.Grant grant) {
+		this.grant = grant;
+	}
+	
+	/**
+	 * Sets the number of threads used to sort and merge the runs, 1 to sort on the calling thread only
+	 */
+	public static synchronized void setParallelism(int threads) {
+		parallelism = Math.max(1, threads);
+	}
+	
+	public static synchronized int getParallelism() {
+		return parallelism;
+	}
+	
+	/**
+	 * Sets the strategy used to generate the sorted runs, SORTED_BLOCKS or REPLACEMENT_SELECTION
+	 */
+	public static synchronized void setRunGeneration(int strategy) {
+		runGeneration = strategy;
+	}
+	
+	public static synchronized int getRunGeneration() {
+		return runGeneration;
+	}
+	
+	/**
+	 * @return the expected size (in pages) of the sorted runs created with numBuff buffers, on random input.
+	 * Replacement selection creates runs of twice the memory size on average, and less runs on input
+	 * that is already partially sorted.
+	 */
+	public static synchronized double expectedRunPages(int numBuff) {
+		if (runGeneration == REPLACEMENT_SELECTION) {
+			return 2.0 * numBuff;
+		}
+		return numBuff;
+	}
+	
 	/**
      * @return the number of pages of the materialized table
      */
@@ -89,10 +147,10 @@ public final class Sorter {
     	
     	try {
     		
-			ObjectInputStream in = new ObjectInputStream(new FileInputStream(fname));
+			PageReader in = new PageReader(fname, schema);
 			
 			for (int batchIndex = 0; batchIndex < numPages; batchIndex++) {
-					Batch nextBatch = (Batch) in.readObject();
+					Batch nextBatch = in.readBatch(batchSize);
 				
 					for (Tuple nextTuple: nextBatch.getTuples()) {
 						System.out.println("Tuple Nr. " + tupleNumber++);
@@ -123,45 +181,95 @@ public final class Sorter {
 	 * @return a new temporary-file-name
 	 */
 	private String temporaryFileName() {
-    	filenum++;
-        String filename = "SorterTemp-" + String.valueOf(filenum);
+        String filename = "SorterTemp-" + String.valueOf(filenum.incrementAndGet());
         filesCreated.add(filename);
     	return filename;
     }
 	
 	/**
-	 * Writes a block of pages to a file
-	 * @param out, the file
-	 * @param nextBlock, numBuff memory pages
+	 * @return the pool of worker threads, with the current parallelism
 	 */
-	private void writeBlockToFile(ObjectOutputStream out, Batch nextBlock) throws IOException {
-    	Batch outBatch = new Batch(batchSize);
-    	
-    	while (!nextBlock.isEmpty()) {
-    		if (outBatch.isFull()) {
-    			out.writeObject(outBatch);
-    			outBatch = new Batch(batchSize);
-    		}
-    		outBatch.add(nextBlock.head());
-    		nextBlock.removeHead();
-    	}
-		
-		if(!outBatch.isEmpty()) {
-			out.writeObject(outBatch);
+	private static synchronized ForkJoinPool workers() {
+		if (workers == null || workers.getParallelism() != parallelism) {
+			if (workers != null) {
+				workers.shutdown(); // running tasks are completed
+			}
+			workers = new ForkJoinPool(parallelism);
 		}
-    }
-   
+		return workers;
+	}
+	
+	/**
+	 * Waits for a task run by the workers
+	 * @param task, the task, or null
+	 */
+	private static void await(Future<?> task) throws IOException {
+		if (task == null) {
+			return;
+		}
+		try {
+			task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Sorter: interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	
 	/**
-	 * Creates the next sorted run and saves it in a temporary file
-	 * @param nextBlock
+	 * Creates the next sorted run and saves it in a temporary file. With several threads, slices of the
+	 * block are sorted in place by the workers, and merged with a loser tree while the run is written, so
+	 * that the block needs no other buffer.
+	 * @param nextBlock, the tuples of the run
 	 */
     private void nextSortedRun(Batch nextBlock) throws IOException {
-    	Collections.sort(nextBlock.getTuples(),cmp); 
     	String tmpfname = temporaryFileName();
-    	ObjectOutputStream tmpw = new ObjectOutputStream(new FileOutputStream(tmpfname));
-		writeBlockToFile(tmpw, nextBlock);
-		tmpw.close();
-		runfNames.add(tmpfname);
+    	runfNames.add(tmpfname);
+    	Tuple[] tuples = nextBlock.getTuples().toArray(new Tuple[0]);
+    	int numSlices = Math.max(1, Math.min(getParallelism(), tuples.length / batchSize));
+    	int[] bounds = new int[numSlices + 1];
+    	for (int i = 0; i <= numSlices; i++) {
+    		bounds[i] = (int) ((long) tuples.length * i / numSlices);
+    	}
+    	
+    	PageWriter out = new PageWriter(tmpfname, schema);
+    	if (numSlices == 1) {
+    		Arrays.sort(tuples, cmp);
+    		for (Tuple t: tuples) {
+    			out.add(t);
+    		}
+    		out.close();
+    		return;
+    	}
+    	
+    	List<Callable<Object>> slices = new ArrayList<>();
+    	for (int i = 0; i < numSlices; i++) {
+    		int from = bounds[i];
+    		int to = bounds[i + 1];
+    		slices.add(() -> {
+    			Arrays.sort(tuples, from, to, cmp);
+    			return null;
+    		});
+    	}
+    	runAll(slices);
+    	
+    	int[] cursors = Arrays.copyOf(bounds, numSlices);
+    	LoserTree<Tuple> tree = new LoserTree<>(numSlices, cmp);
+    	for (int i = 0; i < numSlices; i++) {
+    		tree.set(i, (cursors[i] < bounds[i + 1]) ? tuples[cursors[i]++] : null);
+    	}
+    	tree.build();
+    	Tuple minTuple;
+    	while ((minTuple = tree.winnerKey()) != null) {
+    		out.add(minTuple);
+    		int slice = tree.winner();
+    		tree.replaceWinner((cursors[slice] < bounds[slice + 1]) ? tuples[cursors[slice]++] : null);
+    	}
+    	out.close();
     }
     
     /**
@@ -175,27 +283,17 @@ public final class Sorter {
     	
     	runfNames = new LinkedList<>();
     	numPages = 0;
-    	Batch nextBlock = new Batch(numBuff*batchSize);
+    	inBatch = null;
+    	inCursor = 0;
     	
     	try {
-	    	Batch nextBatch;
-	        while ((nextBatch = base.next()) != null) {
-	        	if (nextBatch.size() > 0) { 
-	                if(nextBlock.isFull()) {
-	                	nextSortedRun(nextBlock);
-	            		nextBlock = new Batch(numBuff*batchSize);
-	                }
-	                
-	                for(Tuple nextTuple: nextBatch.getTuples()) { 
-	                	nextBlock.add(nextTuple);
-	                }
-	                numPages += 1;
-	        	}
-	        }
-	        
-	        nextSortedRun(nextBlock); 
+    		if (getRunGeneration() == REPLACEMENT_SELECTION) {
+    			replacementSelectionRuns();
+    		} else {
+    			sortedBlockRuns();
+    		}
     	} catch (IOException io) {
-            System.out.println("Sorter: temporary file RW error");
+            System.err.println("Sorter: temporary file RW error");
             return false;
     	}
         
@@ -207,129 +305,271 @@ public final class Sorter {
     }
     
     /**
-     * Finds the buffer-index in memory of the buffer that contains the smallest tuple
-     * @param inBatches, (numBuff-1) memory buffers, where we save the pages of runs to be merged
-     * @param numToRead, the number of valid memory buffers (valid: not from previous iteration)
-     * @return -1 if all the tuples were read, else the buffer-index
+     * @return the next tuple produced by base, null once base is exhausted
+     */
+    private Tuple nextInputTuple() {
+    	while (inBatch == null || inCursor == inBatch.size()) {
+    		inBatch = base.next();
+    		inCursor = 0;
+    		if (inBatch == null) {
+    			return null;
+    		}
+    		if (inBatch.size() > 0) {
+    			numPages += 1;
+    		}
+    	}
+    	return inBatch.elementAt(inCursor++);
+    }
+    
+    /**
+     * Creates runs by sorting blocks of numBuff pages in memory
+     */
+    private void sortedBlockRuns() throws IOException {
+    	Batch nextBlock = new Batch(numBuff*batchSize);
+    	
+    	Tuple nextTuple;
+    	while ((nextTuple = nextInputTuple()) != null) {
+    		if(nextBlock.isFull()) {
+    			nextSortedRun(nextBlock);
+    			nextBlock = new Batch(numBuff*batchSize);
+    		}
+    		nextBlock.add(nextTuple);
+    	}
+    	
+    	nextSortedRun(nextBlock);
+    }
+    
+    /**
+     * A tuple in the tournament of replacement selection, with the run it belongs to
      */
-    private int minTupleIndex(Batch[] inBatches, int numToRead) {
-    	Tuple minTuple = null;
-    	int minTupleIndex = -1;
+    private static final class RunEntry {
+    	int run;		// Run the tuple will be written to
+    	long seq;		// Arrival order of the tuple, so that equal tuples keep their order
+    	Tuple tuple;
+    }
+    
+    /**
+     * Creates runs by replacement selection: numBuff pages of tuples are kept in a loser tree, and the
+     * smallest one is repeatedly written to the current run and replaced by the next input tuple. A new
+     * tuple smaller than the last one written can only go to the next run. Runs are about twice as long
+     * as the memory on random input, and an input that is already sorted gives a single run.
+     */
+    private void replacementSelectionRuns() throws IOException {
+    	int capacity = Math.max(1, numBuff*batchSize);
+    	LoserTree<RunEntry> tree = new LoserTree<>(capacity, (e1, e2) -> {
+    		if (e1.run != e2.run) {
+    			return (e1.run < e2.run) ? -1 : 1;
+    		}
+    		int c = cmp.compare(e1.tuple, e2.tuple);
+    		return (c != 0) ? c : Long.compare(e1.seq, e2.seq);
+    	});
     	
-    	for (int batchIndex = 0; batchIndex < numToRead; batchIndex++) { 
-    		Batch nextBatch = inBatches[batchIndex];
+    	long seq = 0;
+    	Tuple nextTuple = null;
+    	for (int slot = 0; slot < capacity && (nextTuple = nextInputTuple()) != null; slot++) {
+    		RunEntry entry = new RunEntry();
+    		entry.run = 0;
+    		entry.seq = seq++;
+    		entry.tuple = nextTuple;
+    		tree.set(slot, entry);
+    	}
+    	tree.build();
+    	
+    	int currentRun = -1;
+    	PageWriter out = null;
+    	RunEntry winner;
+    	while ((winner = tree.winnerKey()) != null) {
+    		if (winner.run != currentRun) {
+    			if (out != null) {
+    				out.close();
+    			}
+    			currentRun = winner.run;
+    			String tmpfname = temporaryFileName();
+    			runfNames.add(tmpfname);
+    			out = new PageWriter(tmpfname, schema);
+    		}
+    		out.add(winner.tuple);
     		
-    		if(!nextBatch.isEmpty()) {
-    			Tuple nextTuple = nextBatch.head();
-    			
-    			if((minTupleIndex == -1) || (cmp.compare(nextTuple, minTuple) < 0)) {
-    				minTuple = nextTuple;
-    				minTupleIndex = batchIndex;
-    			} 
+    		nextTuple = (nextTuple == null) ? null : nextInputTuple();
+    		if (nextTuple == null) {
+    			tree.replaceWinner(null);
+    		} else {
+    			winner.run = (cmp.compare(nextTuple, winner.tuple) < 0) ? currentRun + 1 : currentRun;
+    			winner.seq = seq++;
+    			winner.tuple = nextTuple;
+    			tree.replaceWinner(winner);
     		}
     	}
     	
-    	return minTupleIndex;
+    	if (out == null) { // empty input, the sorted file is an empty run
+    		String tmpfname = temporaryFileName();
+    		runfNames.add(tmpfname);
+    		out = new PageWriter(tmpfname, schema);
+    	}
+    	out.close();
     }
     
     /**
-     * Loads the numToRead sorted runs into memory, and reads their first pages
-     * @param runFiles, array of file-pointers of the files that contain the runs to be merged
-     * @param inBatches, (numBuff-1) memory buffers
-     * @param numToRead, the number of runs to merge
+     * @return the next page of a run, an empty page at the end of the run
      */
-    private void writeRunsToMemory(ObjectInputStream[] runFiles, Batch[] inBatches, int numToRead) 
-    		throws IOException, ClassNotFoundException {
-
-    	for (int runIndex = 0; runIndex < numToRead; runIndex++) {
-			ObjectInputStream nextStream = new ObjectInputStream(new FileInputStream(runfNames.remove())); // closed later
-			inBatches[runIndex] = ((Batch) nextStream.readObject()); 
-			runFiles[runIndex] = nextStream;
-		}
+    private Batch readRunPage(PageReader run) throws IOException {
+    	try {
+    		return run.readBatch(batchSize);
+    	} catch (EOFException eof) {
+    		return new Batch(batchSize);
+    	}
     }
     
     /**
-     * Merge numToRead runs
-     * @param out, the temporary file where the merged runs are saved
-     * @param inBatches, (numBuff-1) memory buffers
-     * @param runSize, the current size (in pages) of a sorted run
-     * @param numToRead, the number of runs to merge
+     * Merges sorted runs into a single one, using one buffer per run and one output buffer.
+     * The smallest tuple is found with a loser tree over the current tuple of every run, and the
+     * buffers are consumed through cursors.
+     * @param runs, the file-names of the runs to merge
+     * @param outName, the file-name of the merged run
      */
-    private void mergeRuns(ObjectOutputStream out, Batch[] inBatches, int runSize, int numToRead) 
-    		throws IOException, ClassNotFoundException {
+    private void mergeRuns(List<String> runs, String outName) throws IOException {
+    	int numRuns = runs.size();
+    	PageReader[] runFiles = new PageReader[numRuns];
+    	Batch[] inBatches = new Batch[numRuns];
+    	int[] cursors = new int[numRuns];		// Next tuple of each buffer
+    	LoserTree<Tuple> tree = new LoserTree<>(numRuns, cmp);
     	
-    	ObjectInputStream[] runFiles = new ObjectInputStream[numToRead];
-		writeRunsToMemory(runFiles, inBatches, numToRead);
-		Batch outBatch = new Batch(batchSize);
-		
-    	for (int batchIndex = 0; batchIndex < (runSize*(numBuff-1)); batchIndex++) {
-			while(!outBatch.isFull()) {
-				int minIndex = minTupleIndex(inBatches, numToRead);
-				if (minIndex == -1) {
-					break;
-				}
-				
-				Batch minBatch = inBatches[minIndex];
-				Tuple minTuple = minBatch.head();
-				outBatch.add(minTuple);
-				minBatch.removeHead();
-				
-				if(minBatch.isEmpty()) {
-					try {
-						inBatches[minIndex] = (Batch) runFiles[minIndex].readObject();
-					} catch (EOFException eof) {
-						// Nothing should happen here
-					}
-				}
-			}
-			
-			if(!outBatch.isEmpty()) {
-				out.writeObject(outBatch);
-				outBatch = new Batch(batchSize);
-			} else {
-				break;
-			}
+    	for (int runIndex = 0; runIndex < numRuns; runIndex++) {
+    		runFiles[runIndex] = new PageReader(runs.get(runIndex), schema);
+    		inBatches[runIndex] = readRunPage(runFiles[runIndex]);
+    		tree.set(runIndex, nextTuple(runFiles, inBatches, cursors, runIndex));
+    	}
+    	tree.build();
+    	
+    	PageWriter out = new PageWriter(outName, schema);
+    	Tuple minTuple;
+    	while ((minTuple = tree.winnerKey()) != null) {
+			out.add(minTuple);
+			int minIndex = tree.winner();
+			tree.replaceWinner(nextTuple(runFiles, inBatches, cursors, minIndex));
 		}
+    	out.close();
     	
-    	for (ObjectInputStream nextStream: runFiles) {
+    	for (PageReader nextStream: runFiles) {
     		nextStream.close();
     	}
     }
     
     /**
-     * merge-part of Multi-way Merge-Sort
+     * @return the next tuple of a run being merged, reading its next page when its buffer is consumed.
+     * null at the end of the run
+     */
+    private Tuple nextTuple(PageReader[] runFiles, Batch[] inBatches, int[] cursors, int runIndex) 
+    		throws IOException {
+    	if (cursors[runIndex] == inBatches[runIndex].size()) {
+    		if (inBatches[runIndex].isEmpty()) {
+    			return null;
+    		}
+    		inBatches[runIndex] = readRunPage(runFiles[runIndex]);
+    		cursors[runIndex] = 0;
+    		if (inBatches[runIndex].isEmpty()) {
+    			return null;
+    		}
+    	}
+    	return inBatches[runIndex].elementAt(cursors[runIndex]++);
+    }
+    
+    /**
+     * Runs merge tasks, on the workers if there is more than one
+     */
+    private void runAll(List<Callable<Object>> tasks) throws IOException {
+    	if (tasks.size() == 1) {
+    		try {
+    			tasks.get(0).call();
+    		} catch (IOException | RuntimeException e) {
+    			throw e;
+    		} catch (Exception e) {
+    			throw new RuntimeException(e);
+    		}
+    		return;
+    	}
+    	for (Future<Object> task: workers().invokeAll(tasks)) {
+    		await(task);
+    	}
+    }
+    
+    /**
+     * @return the number of passes needed to merge the runs into one, fanIn runs at a time
+     */
+    private static int mergePasses(int numRuns, int fanIn) {
+    	int passes = 0;
+    	while (numRuns > 1) {
+    		numRuns = (numRuns + fanIn - 1) / fanIn;
+    		passes++;
+    	}
+    	return passes;
+    }
+    
+    /**
+     * merge-part of Multi-way Merge-Sort. While a pass has more runs than can be merged at once,
+     * independent groups of runs are merged in parallel, the buffers being shared among the groups. A pass
+     * is only split among groups when the smaller fan-in does not add a pass to the merge.
      * @return true if all the sorted runs were merged
      */
     private boolean mergePhase()  {
+    	/* the operators that produced the input are done, their buffers may be spare by now */
+    	int extra = 0;
+    	if (grant != null && runfNames.size() > numBuff - 1) {
+    		extra = grant.extend(runfNames.size() + 1 - numBuff);
+    	}
+    	int mergeBuff = numBuff + extra;
     	try { 
-	    	Batch[] inBatches = new Batch[numBuff-1]; 
-			
-	    	int runSize = numBuff; 
-			while (runSize < numPages) { 
+    		int maxFanIn = Math.max(2, mergeBuff-1);
+			while (runfNames.size() > 1) { 
+				int numRuns = runfNames.size();
 				
-				int leftToMerge = runfNames.size();
-				while (leftToMerge > 1) {
-					
-					int numToRead = (leftToMerge <= (numBuff-1))? leftToMerge : (numBuff-1);
-					
-					String mergedName = temporaryFileName(); 
-					ObjectOutputStream mergedRuns = new ObjectOutputStream(new FileOutputStream(mergedName));
-					mergeRuns(mergedRuns, inBatches, runSize, numToRead);
-					mergedRuns.close();
-					runfNames.add(mergedName); 
-					
-					leftToMerge -= numToRead;
+				int concurrent = 1;
+				int fanIn = maxFanIn;
+				int passes = mergePasses(numRuns, maxFanIn);
+				for (int c = Math.min(getParallelism(), mergeBuff/3); c > 1 && numRuns > maxFanIn; c--) {
+					int groupFanIn = mergeBuff/c - 1;
+					int groups = (numRuns + groupFanIn - 1) / groupFanIn;
+					if (groups >= c && 1 + mergePasses(groups, maxFanIn) <= passes) {
+						concurrent = c;
+						fanIn = groupFanIn;
+						break;
+					}
 				}
-				runSize = runSize*(numBuff-1);
+				
+				LinkedList<String> mergedNames = new LinkedList<>();
+				while (!runfNames.isEmpty()) {
+					List<Callable<Object>> wave = new ArrayList<>();
+					for (int g = 0; g < concurrent && !runfNames.isEmpty(); g++) {
+						List<String> group = new ArrayList<>();
+						while (group.size() < fanIn && !runfNames.isEmpty()) {
+							group.add(runfNames.removeFirst());
+						}
+						if (group.size() == 1) {
+							mergedNames.add(group.get(0)); // nothing to merge it with in this pass
+							continue;
+						}
+						String mergedName = temporaryFileName(); 
+						mergedNames.add(mergedName);
+						wave.add(() -> {
+							mergeRuns(group, mergedName);
+							return null;
+						});
+					}
+					if (!wave.isEmpty()) {
+						runAll(wave);
+					}
+				}
+				runfNames = mergedNames;
 			}
 			return true;
     	} catch (IOException io) {
-            System.out.println("Sorter: temporary file RW error");
-            return false;
-        } catch (ClassNotFoundException c) {
-            System.out.println("Sorter: deserialization error");
+            System.err.println("Sorter: temporary file RW error");
             return false;
-        } 
+        } finally {
+        	if (grant != null) {
+        		grant.shrink(extra);
+        	}
+        }
     }
     
     /**
@@ -74,9 +74,7 @@ public class Tuple implements Serializable {
 	}else if(leftdata instanceof Long){
 	    return ((Long)leftdata).compareTo((Long)rightdata);
 	}else{
-	    System.out.println("Tuple: Unknown comparision of the tuples");
-	    System.exit(1);
-	    return 0;
+	    throw new IllegalArgumentException("Tuple: Unknown comparision of the tuples");
 	}
     }
 }
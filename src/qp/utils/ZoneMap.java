@@ -0,0 +1,155 @@
+/**
+ * Zone map of a table stored in the page format: the smallest and largest value of every attribute in
+ * every page of the table file. A page whose range of values for an attribute cannot satisfy a select
+ * condition on it does not hold any matching tuple, so a scan with that condition can skip it.
+ * The zone map of a table is written by ConvertTxtToTbl in <tablename>.zm, as a serialized object, with the
+ * length and the modification time of the table file it describes.
+ **/
+
+package qp.utils;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+public class ZoneMap implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int numCols;
+    private final ArrayList<Object[]> min = new ArrayList<>();  // Smallest value of each attribute, per page
+    private final ArrayList<Object[]> max = new ArrayList<>();  // Largest value of each attribute, per page
+    private long numTuples;
+    private long tableLength;       // Length of the table file, when the zone map was written
+    private long tableModified;     // Modification time of the table file, when the zone map was written
+
+    public ZoneMap(int numCols) {
+        this.numCols = numCols;
+    }
+
+    /**
+     * @return name of the zone map file of the given table
+     */
+    public static String fileName(String tabname) {
+        return tabname + ".zm";
+    }
+
+    /**
+     * @return the zone map of the given table, null if the table has none
+     */
+    public static ZoneMap read(String tabname) {
+        File f = new File(fileName(tabname));
+        if (!f.exists()) {
+            return null;
+        }
+        try {
+            ObjectInputStream in = new ObjectInputStream(new FileInputStream(f));
+            ZoneMap zm = (ZoneMap) in.readObject();
+            in.close();
+            return zm;
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("ZoneMap: error in reading " + f.getName() + ", the pages of " + tabname + " are not skipped");
+            return null;
+        }
+    }
+
+    public void write(String fname) throws IOException {
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(fname));
+        out.writeObject(this);
+        out.close();
+    }
+
+    public int getNumPages() {
+        return min.size();
+    }
+
+    public long getNumTuples() {
+        return numTuples;
+    }
+
+    /**
+     * Records the table file the zone map describes, once it is written
+     */
+    public void setTable(String tblfile) {
+        File f = new File(tblfile);
+        tableLength = f.length();
+        tableModified = f.lastModified();
+    }
+
+    /**
+     * @return true if the table file was not modified since the zone map was written
+     */
+    public boolean isCurrent(String tblfile) {
+        File f = new File(tblfile);
+        return f.length() == tableLength && f.lastModified() == tableModified;
+    }
+
+    /**
+     * Widens the ranges of the given page to the values of the tuple. The tuples are added in the order
+     * they are written, so the page is either the last one or the next one.
+     */
+    @SuppressWarnings("unchecked")
+    public void add(int page, Tuple t) {
+        if (page == min.size()) {
+            Object[] lo = new Object[numCols];
+            Object[] hi = new Object[numCols];
+            for (int i = 0; i < numCols; i++) {
+                lo[i] = t.dataAt(i);
+                hi[i] = t.dataAt(i);
+            }
+            min.add(lo);
+            max.add(hi);
+        } else {
+            Object[] lo = min.get(page);
+            Object[] hi = max.get(page);
+            for (int i = 0; i < numCols; i++) {
+                Comparable<Object> v = (Comparable<Object>) t.dataAt(i);
+                if (v.compareTo(lo[i]) < 0)
+                    lo[i] = v;
+                if (v.compareTo(hi[i]) > 0)
+                    hi[i] = v;
+            }
+        }
+        numTuples++;
+    }
+
+    /**
+     * @param value constant of the condition, of the type of the attribute
+     * @return the pages that may hold tuples whose attribute satisfies the comparison with the value
+     */
+    @SuppressWarnings("unchecked")
+    public BitSet pagesMatching(int attrIndex, int exprtype, Object value) {
+        BitSet pages = new BitSet(min.size());
+        for (int p = 0; p < min.size(); p++) {
+            int lo = ((Comparable<Object>) min.get(p)[attrIndex]).compareTo(value);
+            int hi = ((Comparable<Object>) max.get(p)[attrIndex]).compareTo(value);
+            boolean match;
+            switch (exprtype) {
+                case Condition.LESSTHAN:
+                    match = lo < 0;
+                    break;
+                case Condition.GREATERTHAN:
+                    match = hi > 0;
+                    break;
+                case Condition.LTOE:
+                    match = lo <= 0;
+                    break;
+                case Condition.GTOE:
+                    match = hi >= 0;
+                    break;
+                case Condition.EQUAL:
+                    match = lo <= 0 && hi >= 0;
+                    break;
+                case Condition.NOTEQUAL:
+                    match = lo != 0 || hi != 0;
+                    break;
+                default:
+                    match = true;
+                    break;
+            }
+            if (match)
+                pages.set(p);
+        }
+        return pages;
+    }
+}
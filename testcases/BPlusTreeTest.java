@@ -0,0 +1,118 @@
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import qp.utils.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Vector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BPlusTreeTest {
+
+    @Rule
+    public TemporaryFolder saveFolder = new TemporaryFolder();
+
+    /* INT keys take 10 bytes per leaf entry, so a leaf holds 408 entries and every key spans several leaves */
+    private static final int NUM_KEYS = 10;
+    private static final int DUPLICATES = 1500;
+
+    private String tabname;
+    private Schema schema;
+    private BPlusTree index;
+
+    @Before
+    public void setUp() throws IOException {
+        tabname = new File(saveFolder.getRoot(), "T").getPath();
+        Vector<Attribute> attrs = new Vector<>();
+        attrs.add(new Attribute("T", "k", Attribute.INT));
+        attrs.add(new Attribute("T", "v", Attribute.INT));
+        schema = new Schema(attrs);
+        schema.setTupleSize(8);
+
+        /* the keys are written in a different order than the one of the index: key i % NUM_KEYS, value i */
+        writeTable(NUM_KEYS * DUPLICATES);
+        BPlusTree.build(tabname + ".tbl", schema, 0, BPlusTree.fileName(tabname, "k"));
+        index = new BPlusTree(BPlusTree.fileName(tabname, "k"));
+    }
+
+    @Test
+    public void testFindDuplicatesAcrossLeaves() throws IOException {
+        assertEquals(NUM_KEYS * DUPLICATES, index.getNumEntries());
+        assertTrue(index.getHeight() > 1);
+
+        PageReader in = new PageReader(tabname + ".tbl", schema);
+        for (int key = 0; key < NUM_KEYS; key++) {
+            BPlusTree.Cursor cursor = index.find(key);
+            int count = 0;
+            int lastValue = -1;
+            while (cursor.next() && (Integer) cursor.key() == key) {
+                Tuple t = in.readTuple(cursor.page(), cursor.slot());
+                assertEquals(key, (int) (Integer) t.dataAt(0));
+                /* equal keys are in the order of the table */
+                int value = (Integer) t.dataAt(1);
+                assertTrue(value > lastValue);
+                lastValue = value;
+                count++;
+            }
+            assertEquals(DUPLICATES, count);
+        }
+        in.close();
+    }
+
+    @Test
+    public void testRangeCursor() throws IOException {
+        /* 3 <= k <= 6 */
+        BPlusTree.Cursor cursor = index.find(3);
+        int count = 0;
+        int lastKey = 3;
+        while (cursor.next() && (Integer) cursor.key() <= 6) {
+            int key = (Integer) cursor.key();
+            assertTrue(key >= lastKey);
+            lastKey = key;
+            count++;
+        }
+        assertEquals(4 * DUPLICATES, count);
+
+        /* all the entries, from the first leaf to the last one */
+        cursor = index.find(null);
+        count = 0;
+        lastKey = Integer.MIN_VALUE;
+        while (cursor.next()) {
+            int key = (Integer) cursor.key();
+            assertTrue(key >= lastKey);
+            lastKey = key;
+            count++;
+        }
+        assertEquals(NUM_KEYS * DUPLICATES, count);
+
+        /* a key above all the keys of the index */
+        assertFalse(index.find(NUM_KEYS).next());
+    }
+
+    @Test
+    public void testStaleIndex() throws IOException {
+        assertTrue(BPlusTree.isCurrent(tabname, "k"));
+        index.close();
+
+        /* a rewritten table with fewer tuples does not match the index any more */
+        writeTable(NUM_KEYS * DUPLICATES / 2);
+        assertFalse(BPlusTree.isCurrent(tabname, "k"));
+        index = new BPlusTree(BPlusTree.fileName(tabname, "k"));
+    }
+
+    private void writeTable(int numTuples) throws IOException {
+        PageWriter out = new PageWriter(tabname + ".tbl", schema);
+        for (int i = 0; i < numTuples; i++) {
+            Vector<Object> data = new Vector<>();
+            data.add(i % NUM_KEYS);
+            data.add(i);
+            out.add(new Tuple(data));
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,61 @@
+import java.io.*;
+import qp.utils.*;
+/*
+  builds a B+-tree index on one attribute of a table, the table
+  must be stored in the binary page format (see ConvertTxtToTbl).
+  the index is written to <tablename>.<attribute>.idx, and the
+  attribute is marked as indexed in <tablename>.md so that the
+  optimizer considers index nested loop joins on it.
+*/
+
+public class BuildIndex {
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.out.println("usage: java BuildIndex <tablename> <attribute> \n creates <tablename>.<attribute>.idx");
+      System.exit(1);
+    }
+    String tblname = args[0];
+    String colname = args[1];
+    String mdfile = tblname + ".md";
+    String tblfile = tblname + ".tbl";
+
+    if (!PageFile.isPageFile(tblfile)) {
+      System.out.println(tblfile + " is not in the page format, convert it first with java ConvertTxtToTbl -fromtbl " + tblname);
+      System.exit(1);
+    }
+
+    Schema schema = readSchema(mdfile);
+    int index = schema.indexOf(new Attribute(tblname, colname));
+    if (index < 0) {
+      System.out.println("no attribute " + colname + " in table " + tblname);
+      System.exit(1);
+    }
+
+    String idxfile = BPlusTree.fileName(tblname, colname);
+    long numEntries = BPlusTree.build(tblfile, schema, index, idxfile);
+
+    /* record the index in the metadata of the table */
+    schema.getAttribute(index).setIndexed(true);
+    ObjectOutputStream outmd = new ObjectOutputStream(new FileOutputStream(mdfile));
+    outmd.writeObject(schema);
+    outmd.close();
+
+    BPlusTree tree = new BPlusTree(idxfile);
+    System.out.println(idxfile + ": " + numEntries + " entries, height " + tree.getHeight());
+    tree.close();
+  }
+
+  private static Schema readSchema(String mdfile) throws IOException {
+    Schema schema = null;
+    try {
+      ObjectInputStream ins = new ObjectInputStream(new FileInputStream(mdfile));
+      schema = (Schema) ins.readObject();
+      ins.close();
+    } catch (ClassNotFoundException ce) {
+      System.out.println("class not found exception --- error in schema object file");
+      System.exit(1);
+    }
+    return schema;
+  }
+}
@@ -7,25 +7,41 @@ import qp.utils.*;
   attributes of the relation. each subsequent line represents 1
   tuple of the relation. also assume that the fields of each line
   is delimited by tabs ("\t")
+
+  the table is written in the binary page format of qp.utils.PageFile.
+  the smallest and largest value of each attribute in each page are
+  written to <tablename>.zm (qp.utils.ZoneMap), and the distribution of
+  the values of each attribute to <tablename>.hist (qp.utils.Histogram).
+  with -fromtbl, an existing <tablename>.tbl file made of serialized
+  tuples is converted to the page format instead.
 */
 
 public class ConvertTxtToTbl {
 
   public static void main(String[] args) throws IOException {
     // check the arguments
-    if (args.length != 1) {
-      System.out.println("usage: java ConvertTxtToTbl <tablename> \n creats <tablename>.tbl files");
+    boolean fromtbl = args.length > 0 && args[0].equals("-fromtbl");
+    int argbase = fromtbl ? 1 : 0;
+    if (args.length < argbase + 1 || args.length > argbase + 2) {
+      System.out.println("usage: java ConvertTxtToTbl [-fromtbl] <tablename> [pagesize] \n creats <tablename>.tbl files");
       System.exit(1);
     }
-    String tblname= args[0];
+    String tblname= args[argbase];
     String mdfile = tblname+".md";
     String tblfile = tblname+".tbl";
+    int pagesize = PageFile.DEFAULT_PAGE_SIZE;
+    if (args.length == argbase + 2) {
+      pagesize = Integer.parseInt(args[argbase + 1]);
+    }
 
+    if (fromtbl) {
+      convertTbl(tblname, pagesize);
+      return;
+    }
 
 	/** open the input and output streams **/
     BufferedReader in = new BufferedReader(new FileReader(tblname+".txt"));
     //ObjectOutputStream outmd = new ObjectOutputStream(new FileOutputStream(mdfile));
-    ObjectOutputStream outtbl = new ObjectOutputStream(new FileOutputStream(tblfile));
 
     /** First Line is METADATA **/
     int linenum=0;
@@ -110,14 +126,10 @@ public class ConvertTxtToTbl {
 	int numCols = schema.getNumCols();
 
 	**/
-	Schema schema=null;
-try{
-   ObjectInputStream ins = new ObjectInputStream(new FileInputStream(mdfile));
-	 schema= (Schema) ins.readObject();
-}catch(ClassNotFoundException ce){
-	System.out.println("class not found exception --- error in schema object file");
-	System.exit(1);
-}
+	Schema schema = readSchema(mdfile);
+	PageWriter outtbl = new PageWriter(tblfile, schema, pagesize);
+	ZoneMap zonemap = new ZoneMap(schema.getNumCols());
+	ArrayList<Object>[] columns = newColumns(schema);
 
 	boolean flag=false;
 	StringTokenizer tokenizer;
@@ -154,12 +166,98 @@ try{
 		attrIndex++;
 	    }
 	    Tuple tuple = new Tuple(data);
-	    outtbl.writeObject(tuple);
+	    outtbl.add(tuple);
+	    zonemap.add(outtbl.getNumPages(), tuple);   // the tuple is in the page being filled
+	    addToColumns(columns, tuple);
 	}
 	outtbl.close();
+	zonemap.setTable(tblfile);
+	zonemap.write(ZoneMap.fileName(tblname));
+	writeHistograms(tblname, schema, columns);
 
 	in.close();
   }
+
+  private static Schema readSchema(String mdfile) throws IOException {
+    Schema schema = null;
+    try {
+      ObjectInputStream ins = new ObjectInputStream(new FileInputStream(mdfile));
+      schema = (Schema) ins.readObject();
+      ins.close();
+    } catch (ClassNotFoundException ce) {
+      System.out.println("class not found exception --- error in schema object file");
+      System.exit(1);
+    }
+    return schema;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ArrayList<Object>[] newColumns(Schema schema) {
+    ArrayList<Object>[] columns = new ArrayList[schema.getNumCols()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = new ArrayList<>();
+    }
+    return columns;
+  }
+
+  private static void addToColumns(ArrayList<Object>[] columns, Tuple tuple) {
+    for (int i = 0; i < columns.length; i++) {
+      columns[i].add(tuple.dataAt(i));
+    }
+  }
+
+  /**
+   * writes the most common values and the equi-depth histogram of every attribute
+   **/
+  private static void writeHistograms(String tblname, Schema schema, ArrayList<Object>[] columns) throws IOException {
+    Histogram[] histograms = new Histogram[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      histograms[i] = Histogram.build(schema.getAttribute(i).getColName(), columns[i]);
+      columns[i] = null;
+    }
+    Histogram.write(histograms, Histogram.fileName(tblname));
+  }
+
+  /**
+   * rewrites a <tablename>.tbl file of serialized tuples in the page format
+   **/
+  private static void convertTbl(String tblname, int pagesize) throws IOException {
+    String tblfile = tblname + ".tbl";
+    if (PageFile.isPageFile(tblfile)) {
+      System.out.println(tblfile + " is already in the page format");
+      return;
+    }
+    Schema schema = readSchema(tblname + ".md");
+    String tmpfile = tblfile + ".tmp";
+    ObjectInputStream in = new ObjectInputStream(new FileInputStream(tblfile));
+    PageWriter out = new PageWriter(tmpfile, schema, pagesize);
+    ZoneMap zonemap = new ZoneMap(schema.getNumCols());
+    ArrayList<Object>[] columns = newColumns(schema);
+    try {
+      while (true) {
+        Tuple tuple = (Tuple) in.readObject();
+        out.add(tuple);
+        zonemap.add(out.getNumPages(), tuple);
+        addToColumns(columns, tuple);
+      }
+    } catch (EOFException e) {
+      // end of the serialized tuples
+    } catch (ClassNotFoundException ce) {
+      System.out.println("class not found exception --- error in table file");
+      System.exit(1);
+    }
+    in.close();
+    out.close();
+    File f = new File(tblfile);
+    if (!f.delete() || !new File(tmpfile).renameTo(f)) {
+      System.out.println("could not replace " + tblfile);
+      System.exit(1);
+    }
+    zonemap.setTable(tblfile);
+    zonemap.write(ZoneMap.fileName(tblname));
+    writeHistograms(tblname, schema, columns);
+    System.out.println(tblfile + ": " + out.getNumTuples() + " tuples in " + out.getNumPages() + " pages");
+  }
 }
 
 
@@ -0,0 +1,54 @@
+import org.junit.Before;
+import org.junit.Test;
+import qp.operators.Operator;
+import qp.optimizer.BufferManager;
+import qp.optimizer.RandomOptimizer;
+import qp.utils.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DistinctOrderTest {
+
+    @Before
+    public void setUp() {
+        /* with small pages and the minimum number of buffers, the hash set of Distinct spills */
+        Batch.setPageSize(100);
+        new BufferManager(3, 0);
+    }
+
+    @Test
+    public void testDistinctOrderBy() {
+        ArrayList<Integer> all = run("SELECT CART.cid FROM CART");
+        ArrayList<Integer> distinct = run("SELECT DISTINCT CART.cid FROM CART ORDERBY CART.cid");
+        assertEquals(new ArrayList<>(new TreeSet<>(all)), distinct);
+    }
+
+    @Test
+    public void testDistinctOrderByLimit() {
+        ArrayList<Integer> all = run("SELECT CART.cid FROM CART");
+        ArrayList<Integer> expected = new ArrayList<>(new TreeSet<>(all));
+        expected = new ArrayList<>(expected.subList(0, Math.min(10, expected.size())));
+        ArrayList<Integer> distinct = run("SELECT DISTINCT CART.cid FROM CART ORDERBY CART.cid LIMIT 10");
+        assertEquals(expected, distinct);
+    }
+
+    private ArrayList<Integer> run(String text) {
+        SQLQuery query = QueryMain.parseSqlQuery(new ByteArrayInputStream(text.getBytes()));
+        Operator root = QueryMain.getExecPlan(query, false, false, RandomOptimizer.ITERATIVE_IMPROVEMENT);
+        assertTrue(root.open());
+        ArrayList<Integer> values = new ArrayList<>();
+        Batch batch;
+        while ((batch = root.next()) != null) {
+            for (int i = 0; i < batch.size(); i++) {
+                values.add((Integer) batch.elementAt(i).dataAt(0));
+            }
+        }
+        root.close();
+        return values;
+    }
+}
@@ -68,6 +68,12 @@ public class OutputTest {
         compareJoinResults();
     }
 
+    @Test
+    public void testHashJoin() throws Exception {
+        JoinType.setNumJoinTypes(4);
+        compareJoinResults();
+    }
+
     public void compareJoinResults() throws Exception {
         for (int i = 0; i < sqlQueries.size(); i++) {
             Debug.printBold((i+1) + "th iteration");
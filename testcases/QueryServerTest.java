@@ -0,0 +1,47 @@
+import org.junit.Before;
+import org.junit.Test;
+import qp.utils.Batch;
+
+import java.io.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QueryServerTest {
+
+    private QueryServer server;
+
+    @Before
+    public void setUp() {
+        Batch.setPageSize(1000);
+        server = new QueryServer(10, 30);
+    }
+
+    @Test
+    public void testQueryAfterFailedQuery() throws IOException {
+        String[] lines = serve(
+                "SELECT CUSTOMER.nosuch FROM CUSTOMER\n\n" +
+                "SELECT CUSTOMER.cid FROM CUSTOMER WHERE CUSTOMER.cid<\"10\"\n\nQUIT\n");
+        assertTrue(lines[0], lines[0].startsWith("ERROR"));
+        assertEquals("OK", lines[1]);
+        assertTrue(lines[lines.length - 1], lines[lines.length - 1].startsWith("END "));
+    }
+
+    @Test
+    public void testQueryAfterParseError() throws IOException {
+        String[] lines = serve(
+                "SELECT CUSTOMER.cid FROM CUSTOMER LIMIT \"x\"\n\n" +
+                "SELECT CUSTOMER.cid FROM CUSTOMER WHERE CUSTOMER.cid\n\n" +
+                "SELECT CUSTOMER.cid FROM CUSTOMER LIMIT 3\n\nQUIT\n");
+        assertEquals("ERROR the query cannot be parsed", lines[0]);
+        assertEquals("ERROR the query cannot be parsed", lines[1]);
+        assertEquals("OK", lines[2]);
+        assertEquals("END 3", lines[lines.length - 1].substring(0, 5));
+    }
+
+    private String[] serve(String queries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        server.serve(new ByteArrayInputStream(queries.getBytes()), out);
+        return out.toString().split("\n");
+    }
+}